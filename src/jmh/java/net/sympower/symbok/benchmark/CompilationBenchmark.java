@@ -0,0 +1,195 @@
+package net.sympower.symbok.benchmark;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compile-time cost of the javac handlers.
+ * <p>
+ * Generates a synthetic source tree per handler, with {@code classes} classes of {@code members} annotated members
+ * each, and compiles it through Lombok with the handlers of this project. The same tree without the annotations is
+ * the baseline, so the difference is the time spent in the handler and in compiling the code it generates.
+ * <p>
+ * Usage: {@code CompilationBenchmark [classes] [members] [iterations]}, with the processor path of Lombok and symbok in
+ * the {@code symbok.processorPath} system property.
+ */
+public class CompilationBenchmark {
+
+  private enum Scenario {
+    READ_WRITE_LOCK,
+    THREAD_NAMED,
+    GETTER2
+  }
+
+  public static void main(String[] args) throws IOException {
+    int classes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int members = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    String processorPath = System.getProperty("symbok.processorPath");
+    if (processorPath == null) {
+      throw new IllegalStateException("symbok.processorPath is not set");
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    Path workDir = Files.createTempDirectory("symbok-compilation");
+    try {
+      System.out.printf("%d classes with %d members each, median of %d compilations%n", classes, members, iterations);
+      System.out.printf("%-16s %10s %10s %10s %12s%n", "", "plain", "annotated", "handler", "per member");
+      for (Scenario scenario : Scenario.values()) {
+        long plainNanos = measure(compiler, processorPath, workDir, scenario, false, classes, members, iterations);
+        long annotatedNanos = measure(compiler, processorPath, workDir, scenario, true, classes, members, iterations);
+        long handlerNanos = annotatedNanos - plainNanos;
+        System.out.printf(
+            "%-16s %7d ms %7d ms %+7d ms %9.1f us%n",
+            scenario,
+            plainNanos / 1_000_000,
+            annotatedNanos / 1_000_000,
+            handlerNanos / 1_000_000,
+            handlerNanos / 1_000.0 / (classes * (long) members)
+        );
+      }
+    }
+    finally {
+      delete(workDir);
+    }
+  }
+
+  /**
+   * Returns the median time of compiling the source tree of a scenario, after one compilation to warm up javac and
+   * the handlers.
+   */
+  private static long measure(
+      JavaCompiler compiler,
+      String processorPath,
+      Path workDir,
+      Scenario scenario,
+      boolean annotated,
+      int classes,
+      int members,
+      int iterations
+  ) throws IOException {
+    String name = scenario.name().toLowerCase() + (annotated ? "-annotated" : "-plain");
+    Path outputDir = workDir.resolve(name + "-out");
+    List<String> sources = generateSources(scenario, annotated, workDir.resolve(name), classes, members);
+
+    compile(compiler, processorPath, sources, outputDir);
+    long[] nanos = new long[iterations];
+    for (int i = 0; i < iterations; i++) {
+      nanos[i] = compile(compiler, processorPath, sources, outputDir);
+    }
+    Arrays.sort(nanos);
+    return nanos[iterations / 2];
+  }
+
+  private static long compile(JavaCompiler compiler, String processorPath, List<String> sources, Path outputDir)
+      throws IOException {
+    delete(outputDir);
+    Files.createDirectories(outputDir);
+    List<String> args = new ArrayList<String>(Arrays.asList(
+        "-nowarn",
+        "-classpath", processorPath,
+        "-processorpath", processorPath,
+        "-d", outputDir.toString()
+    ));
+    args.addAll(sources);
+
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    long start = System.nanoTime();
+    int result = compiler.run(null, null, new PrintStream(errors, true, "UTF-8"), args.toArray(new String[0]));
+    long nanos = System.nanoTime() - start;
+    if (result != 0) {
+      throw new IllegalStateException("Compilation failed:" + System.lineSeparator()
+                                          + new String(errors.toByteArray(), StandardCharsets.UTF_8));
+    }
+    return nanos;
+  }
+
+  private static List<String> generateSources(
+      Scenario scenario,
+      boolean annotated,
+      Path sourceDir,
+      int classes,
+      int members
+  ) throws IOException {
+    Path packageDir = sourceDir.resolve("generated");
+    Files.createDirectories(packageDir);
+    List<String> sources = new ArrayList<String>();
+    for (int c = 0; c < classes; c++) {
+      String className = "Generated" + c;
+      StringBuilder source = new StringBuilder()
+          .append("package generated;\n\n")
+          .append("public class ").append(className).append(" {\n");
+      for (int m = 0; m < members; m++) {
+        appendMember(source, scenario, annotated, m);
+      }
+      source.append("}\n");
+
+      Path file = packageDir.resolve(className + ".java");
+      Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+      sources.add(file.toString());
+    }
+    return sources;
+  }
+
+  private static void appendMember(StringBuilder source, Scenario scenario, boolean annotated, int m) {
+    switch (scenario) {
+      case READ_WRITE_LOCK:
+        source.append("  private long value").append(m).append(";\n");
+        if (annotated) {
+          source.append("  @net.sympower.symbok.WriteLock(\"lock").append(m % 4).append("\")\n");
+        }
+        source.append("  public void setValue").append(m).append("(long value) { this.value").append(m)
+            .append(" = value; }\n");
+        if (annotated) {
+          source.append("  @net.sympower.symbok.ReadLock(\"lock").append(m % 4).append("\")\n");
+        }
+        source.append("  public long readValue").append(m).append("() { return this.value").append(m)
+            .append("; }\n");
+        break;
+      case THREAD_NAMED:
+        if (annotated) {
+          source.append("  @net.sympower.symbok.ThreadNamed(\"job %s #%d\")\n");
+        }
+        source.append("  public int run").append(m).append("(String name, int slot) { return slot + ").append(m)
+            .append("; }\n");
+        break;
+      default:
+        if (annotated) {
+          source.append("  @net.sympower.symbok.Getter2\n");
+        }
+        source.append("  private long value").append(m).append(";\n");
+        break;
+    }
+  }
+
+  private static void delete(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,81 @@
+package net.sympower.symbok.benchmark;
+
+import net.sympower.symbok.Atomic;
+import net.sympower.symbok.Counter;
+import net.sympower.symbok.WriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of a counter incremented by 4 threads, as {@code @Counter}, {@code @Atomic} and {@code @WriteLock} field
+ * and as {@link LongAdder}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CounterBenchmark {
+
+  public static class Generated {
+
+    @Counter
+    private long striped;
+
+    @Counter(lazy = true)
+    private long lazy;
+
+    @Atomic
+    private long atomic;
+
+    private long locked;
+
+    @WriteLock
+    public void incrementLocked() {
+      this.locked++;
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Shared {
+    final Generated generated = new Generated();
+    final LongAdder longAdder = new LongAdder();
+  }
+
+  @Benchmark
+  public void striped(Shared shared) {
+    shared.generated.incrementStriped();
+  }
+
+  @Benchmark
+  public void lazy(Shared shared) {
+    shared.generated.incrementLazy();
+  }
+
+  @Benchmark
+  public long atomic(Shared shared) {
+    return shared.generated.getAndIncrementAtomic();
+  }
+
+  @Benchmark
+  public void locked(Shared shared) {
+    shared.generated.incrementLocked();
+  }
+
+  @Benchmark
+  public void longAdder(Shared shared) {
+    shared.longAdder.increment();
+  }
+}
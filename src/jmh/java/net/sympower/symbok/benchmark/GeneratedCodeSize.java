@@ -0,0 +1,221 @@
+package net.sympower.symbok.benchmark;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bytecode size of the methods of the benchmark classes, compiled through Lombok with the handlers of this project,
+ * against the inlining thresholds of HotSpot: a method of up to {@code MaxInlineSize} bytes is inlined into any caller,
+ * and a method of up to {@code FreqInlineSize} bytes only into hot callers.
+ * <p>
+ * Reports the classes with members generated by the handlers, whose names start with {@code $}, and flags the methods
+ * above either threshold. The thresholds are read from the running JVM, so {@code -XX:MaxInlineSize} and
+ * {@code -XX:FreqInlineSize} apply.
+ * <p>
+ * Exits with status 1 if a method of these classes, other than a static initializer, is above {@code FreqInlineSize}
+ * and so is never inlined. Methods above {@code MaxInlineSize} are only reported, as hot callers still inline them.
+ * <p>
+ * Usage: {@code GeneratedCodeSize <class directory>...}
+ */
+public class GeneratedCodeSize {
+
+  private static final class MethodSize {
+    final String name;
+    final int size;
+
+    MethodSize(String name, int size) {
+      this.name = name;
+      this.size = size;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int maxInlineSize = vmOption("MaxInlineSize", 35);
+    int freqInlineSize = vmOption("FreqInlineSize", 325);
+    System.out.printf("MaxInlineSize = %d, FreqInlineSize = %d bytes%n", maxInlineSize, freqInlineSize);
+
+    int aboveMax = 0;
+    int aboveFreq = 0;
+    for (Path classFile : classFiles(args)) {
+      List<String> memberNames = new ArrayList<String>();
+      List<MethodSize> methods = new ArrayList<MethodSize>();
+      try (InputStream in = Files.newInputStream(classFile)) {
+        readClass(new DataInputStream(in), memberNames, methods);
+      }
+      if (memberNames.stream().noneMatch(name -> name.startsWith("$"))) {
+        continue;
+      }
+
+      System.out.printf("%n%s%n", classFile.getFileName());
+      for (MethodSize method : methods) {
+        String flag = "";
+        if (method.size > freqInlineSize && !method.name.startsWith("<clinit>")) {
+          flag = "  > FreqInlineSize";
+          aboveFreq++;
+        }
+        else if (method.size > maxInlineSize) {
+          flag = "  > MaxInlineSize";
+          aboveMax++;
+        }
+        System.out.printf("  %-60s %6d%s%n", method.name, method.size, flag);
+      }
+    }
+    System.out.printf("%n%d methods above MaxInlineSize, %d above FreqInlineSize%n", aboveMax, aboveFreq);
+    if (aboveFreq > 0) {
+      System.err.printf("%d methods are above FreqInlineSize and will never be inlined%n", aboveFreq);
+      System.exit(1);
+    }
+  }
+
+  private static int vmOption(String name, int defaultValue) {
+    try {
+      HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+      return Integer.parseInt(hotSpot.getVMOption(name).getValue());
+    }
+    catch (RuntimeException ex) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Returns the class files in the directories, except the ones generated by JMH.
+   */
+  private static List<Path> classFiles(String[] directories) throws IOException {
+    List<Path> classFiles = new ArrayList<Path>();
+    for (String directory : directories) {
+      Path root = Paths.get(directory);
+      if (!Files.isDirectory(root)) {
+        continue;
+      }
+      try (Stream<Path> files = Files.walk(root)) {
+        classFiles.addAll(files
+                              .filter(file -> file.toString().endsWith(".class"))
+                              .filter(file -> !file.toString().contains("jmh_generated"))
+                              .collect(Collectors.toList()));
+      }
+    }
+    Collections.sort(classFiles);
+    return classFiles;
+  }
+
+  /**
+   * Reads the names of the fields and methods of a class file, and the length of the code of its methods.
+   */
+  private static void readClass(DataInputStream in, List<String> memberNames, List<MethodSize> methods)
+      throws IOException {
+    if (in.readInt() != 0xCAFEBABE) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort();
+    in.readUnsignedShort();
+
+    int constantCount = in.readUnsignedShort();
+    String[] utf8 = new String[constantCount];
+    for (int i = 1; i < constantCount; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1:
+          utf8[i] = in.readUTF();
+          break;
+        case 5:
+        case 6:
+          in.readLong();
+          i++;
+          break;
+        case 3:
+        case 4:
+        case 9:
+        case 10:
+        case 11:
+        case 12:
+        case 17:
+        case 18:
+          in.readInt();
+          break;
+        case 15:
+          in.readUnsignedByte();
+          in.readUnsignedShort();
+          break;
+        case 7:
+        case 8:
+        case 16:
+        case 19:
+        case 20:
+          in.readUnsignedShort();
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    in.readUnsignedShort();
+    in.readUnsignedShort();
+    in.readUnsignedShort();
+    int interfaceCount = in.readUnsignedShort();
+    for (int i = 0; i < interfaceCount; i++) {
+      in.readUnsignedShort();
+    }
+
+    int fieldCount = in.readUnsignedShort();
+    for (int i = 0; i < fieldCount; i++) {
+      in.readUnsignedShort();
+      memberNames.add(utf8[in.readUnsignedShort()]);
+      in.readUnsignedShort();
+      skipAttributes(in);
+    }
+
+    int methodCount = in.readUnsignedShort();
+    for (int i = 0; i < methodCount; i++) {
+      in.readUnsignedShort();
+      String name = utf8[in.readUnsignedShort()];
+      String descriptor = utf8[in.readUnsignedShort()];
+      memberNames.add(name);
+      int attributeCount = in.readUnsignedShort();
+      for (int a = 0; a < attributeCount; a++) {
+        String attributeName = utf8[in.readUnsignedShort()];
+        int length = in.readInt();
+        if (attributeName.equals("Code")) {
+          in.readUnsignedShort();
+          in.readUnsignedShort();
+          int codeLength = in.readInt();
+          methods.add(new MethodSize(name + descriptor, codeLength));
+          skip(in, length - 8);
+        }
+        else {
+          skip(in, length);
+        }
+      }
+    }
+  }
+
+  private static void skipAttributes(DataInputStream in) throws IOException {
+    int attributeCount = in.readUnsignedShort();
+    for (int i = 0; i < attributeCount; i++) {
+      in.readUnsignedShort();
+      skip(in, in.readInt());
+    }
+  }
+
+  private static void skip(DataInputStream in, int length) throws IOException {
+    int remaining = length;
+    while (remaining > 0) {
+      int skipped = in.skipBytes(remaining);
+      if (skipped <= 0) {
+        throw new IOException("Unexpected end of class file");
+      }
+      remaining -= skipped;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package net.sympower.symbok.benchmark;
+
+import net.sympower.symbok.Memoize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache hits of a {@code @Memoize} method with a single {@code int} parameter against a hand-written
+ * {@code ConcurrentHashMap} cache, called by 4 threads for the same few keys. Run with {@code -prof gc} (the default of
+ * the {@code jmh} task) to see that the generated lookup does not box the key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MemoizeBenchmark {
+
+  private static final int KEYS = 64;
+
+  private final ConcurrentHashMap<Integer, Double> map = new ConcurrentHashMap<Integer, Double>();
+  private int next;
+
+  @Memoize
+  private double memoized(int key) {
+    return Math.sqrt(key) * Math.log(key + 1);
+  }
+
+  private double mapped(int key) {
+    Double value = this.map.get(key);
+    if (value == null) {
+      value = Math.sqrt(key) * Math.log(key + 1);
+      this.map.put(key, value);
+    }
+    return value;
+  }
+
+  @Benchmark
+  public double generatedMemoize() {
+    return memoized(1000 + (this.next++ & (KEYS - 1)));
+  }
+
+  @Benchmark
+  public double concurrentHashMap() {
+    return mapped(1000 + (this.next++ & (KEYS - 1)));
+  }
+}
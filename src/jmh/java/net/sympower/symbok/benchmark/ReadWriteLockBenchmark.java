@@ -0,0 +1,318 @@
+package net.sympower.symbok.benchmark;
+
+import net.sympower.symbok.CopyOnWrite;
+import net.sympower.symbok.LockMode;
+import net.sympower.symbok.ReadLock;
+import net.sympower.symbok.WriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Throughput of {@code @ReadLock} / {@code @WriteLock} methods against hand-written equivalents, with 3 readers per
+ * writer by default. Other read/write ratios and thread counts can be given with {@code -tg}, e.g.
+ * {@code -tg 7,1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteLockBenchmark {
+
+  private static final int KEYS = 64;
+
+  public static class Generated {
+
+    private long value;
+
+    @WriteLock
+    public void write() {
+      this.value++;
+    }
+
+    @ReadLock
+    public long read() {
+      return this.value;
+    }
+  }
+
+  public static class HandWritten {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long value;
+
+    public void write() {
+      this.lock.writeLock().lock();
+      try {
+        this.value++;
+      }
+      finally {
+        this.lock.writeLock().unlock();
+      }
+    }
+
+    public long read() {
+      this.lock.readLock().lock();
+      try {
+        return this.value;
+      }
+      finally {
+        this.lock.readLock().unlock();
+      }
+    }
+  }
+
+  public static class GeneratedOptimistic {
+
+    private long value;
+
+    @WriteLock
+    public void write() {
+      this.value++;
+    }
+
+    @ReadLock(mode = LockMode.OPTIMISTIC)
+    public long read() {
+      return this.value;
+    }
+  }
+
+  public static class HandWrittenOptimistic {
+
+    private final StampedLock lock = new StampedLock();
+    private long value;
+
+    public void write() {
+      long stamp = this.lock.writeLock();
+      try {
+        this.value++;
+      }
+      finally {
+        this.lock.unlockWrite(stamp);
+      }
+    }
+
+    public long read() {
+      long stamp = this.lock.tryOptimisticRead();
+      long result = this.value;
+      if (!this.lock.validate(stamp)) {
+        stamp = this.lock.readLock();
+        try {
+          result = this.value;
+        }
+        finally {
+          this.lock.unlockRead(stamp);
+        }
+      }
+      return result;
+    }
+  }
+
+  public static class GeneratedSequence {
+
+    private long value;
+
+    @WriteLock
+    public void write() {
+      this.value++;
+    }
+
+    @ReadLock(mode = LockMode.SEQUENCE)
+    public long read() {
+      return this.value;
+    }
+  }
+
+  public static class GeneratedTimed {
+
+    private long value;
+
+    @WriteLock(timeout = 1, unit = TimeUnit.SECONDS)
+    public void write() {
+      this.value++;
+    }
+
+    @ReadLock(timeout = 1, unit = TimeUnit.SECONDS)
+    public long read() {
+      return this.value;
+    }
+  }
+
+  public static class GeneratedStriped {
+
+    private final long[] values = new long[KEYS];
+
+    @WriteLock(stripeBy = "key")
+    public void write(int key) {
+      this.values[key]++;
+    }
+
+    @ReadLock(stripeBy = "key")
+    public long read(int key) {
+      return this.values[key];
+    }
+  }
+
+  @CopyOnWrite
+  public static class GeneratedCopyOnWrite {
+
+    private long value;
+
+    @WriteLock
+    public void write() {
+      this.value++;
+    }
+
+    @ReadLock
+    public long read() {
+      return this.value;
+    }
+  }
+
+  @State(Scope.Group)
+  public static class Shared {
+    final Generated generated = new Generated();
+    final HandWritten handWritten = new HandWritten();
+    final GeneratedOptimistic generatedOptimistic = new GeneratedOptimistic();
+    final HandWrittenOptimistic handWrittenOptimistic = new HandWrittenOptimistic();
+    final GeneratedSequence generatedSequence = new GeneratedSequence();
+    final GeneratedTimed generatedTimed = new GeneratedTimed();
+    final GeneratedStriped generatedStriped = new GeneratedStriped();
+    final GeneratedCopyOnWrite generatedCopyOnWrite = new GeneratedCopyOnWrite();
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    private int key;
+
+    int next() {
+      this.key = (this.key + 1) & (KEYS - 1);
+      return this.key;
+    }
+  }
+
+  @Benchmark
+  @Group("generated")
+  @GroupThreads(3)
+  public long generatedRead(Shared shared) {
+    return shared.generated.read();
+  }
+
+  @Benchmark
+  @Group("generated")
+  @GroupThreads(1)
+  public void generatedWrite(Shared shared) {
+    shared.generated.write();
+  }
+
+  @Benchmark
+  @Group("handWritten")
+  @GroupThreads(3)
+  public long handWrittenRead(Shared shared) {
+    return shared.handWritten.read();
+  }
+
+  @Benchmark
+  @Group("handWritten")
+  @GroupThreads(1)
+  public void handWrittenWrite(Shared shared) {
+    shared.handWritten.write();
+  }
+
+  @Benchmark
+  @Group("generatedOptimistic")
+  @GroupThreads(3)
+  public long generatedOptimisticRead(Shared shared) {
+    return shared.generatedOptimistic.read();
+  }
+
+  @Benchmark
+  @Group("generatedOptimistic")
+  @GroupThreads(1)
+  public void generatedOptimisticWrite(Shared shared) {
+    shared.generatedOptimistic.write();
+  }
+
+  @Benchmark
+  @Group("handWrittenOptimistic")
+  @GroupThreads(3)
+  public long handWrittenOptimisticRead(Shared shared) {
+    return shared.handWrittenOptimistic.read();
+  }
+
+  @Benchmark
+  @Group("handWrittenOptimistic")
+  @GroupThreads(1)
+  public void handWrittenOptimisticWrite(Shared shared) {
+    shared.handWrittenOptimistic.write();
+  }
+
+  @Benchmark
+  @Group("generatedSequence")
+  @GroupThreads(3)
+  public long generatedSequenceRead(Shared shared) {
+    return shared.generatedSequence.read();
+  }
+
+  @Benchmark
+  @Group("generatedSequence")
+  @GroupThreads(1)
+  public void generatedSequenceWrite(Shared shared) {
+    shared.generatedSequence.write();
+  }
+
+  @Benchmark
+  @Group("generatedTimed")
+  @GroupThreads(3)
+  public long generatedTimedRead(Shared shared) {
+    return shared.generatedTimed.read();
+  }
+
+  @Benchmark
+  @Group("generatedTimed")
+  @GroupThreads(1)
+  public void generatedTimedWrite(Shared shared) {
+    shared.generatedTimed.write();
+  }
+
+  @Benchmark
+  @Group("generatedStriped")
+  @GroupThreads(3)
+  public long generatedStripedRead(Shared shared, Keys keys) {
+    return shared.generatedStriped.read(keys.next());
+  }
+
+  @Benchmark
+  @Group("generatedStriped")
+  @GroupThreads(1)
+  public void generatedStripedWrite(Shared shared, Keys keys) {
+    shared.generatedStriped.write(keys.next());
+  }
+
+  @Benchmark
+  @Group("generatedCopyOnWrite")
+  @GroupThreads(3)
+  public long generatedCopyOnWriteRead(Shared shared) {
+    return shared.generatedCopyOnWrite.read();
+  }
+
+  @Benchmark
+  @Group("generatedCopyOnWrite")
+  @GroupThreads(1)
+  public void generatedCopyOnWriteWrite(Shared shared) {
+    shared.generatedCopyOnWrite.write();
+  }
+}
@@ -0,0 +1,78 @@
+package net.sympower.symbok.benchmark;
+
+import net.sympower.symbok.ThreadNameMode;
+import net.sympower.symbok.ThreadNamed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code @ThreadNamed} methods against a hand-written rename using {@code String.format}. Run with
+ * {@code -prof gc} (the default of the {@code jmh} task) to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThreadNamedBenchmark {
+
+  private final String name = "order";
+  private final int slot = 42;
+
+  @ThreadNamed("job %s #%d")
+  private int renamed(String name, int slot) {
+    return slot;
+  }
+
+  @ThreadNamed(value = "job %s #%d", mode = ThreadNameMode.LOGICAL)
+  private int logical(String name, int slot) {
+    return slot;
+  }
+
+  @ThreadNamed("job %s #%5d")
+  private int formatted(String name, int slot) {
+    return slot;
+  }
+
+  private int handWritten(String name, int slot) {
+    final Thread currentThread = Thread.currentThread();
+    final String oldThreadName = currentThread.getName();
+    currentThread.setName(String.format("job %s #%d", name, slot));
+    try {
+      return slot;
+    }
+    finally {
+      currentThread.setName(oldThreadName);
+    }
+  }
+
+  @Benchmark
+  public int generatedRename() {
+    return renamed(this.name, this.slot);
+  }
+
+  @Benchmark
+  public int generatedLogical() {
+    return logical(this.name, this.slot);
+  }
+
+  @Benchmark
+  public int generatedFormat() {
+    return formatted(this.name, this.slot);
+  }
+
+  @Benchmark
+  public int handWritten() {
+    return handWritten(this.name, this.slot);
+  }
+}
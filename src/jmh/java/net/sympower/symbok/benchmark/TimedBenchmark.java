@@ -0,0 +1,51 @@
+package net.sympower.symbok.benchmark;
+
+import net.sympower.symbok.Timed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of a {@code @Timed} method against the same method without timing, called by 4 threads that record into
+ * the same histogram. Run with {@code -prof gc} (the default of the {@code jmh} task) to see that recording does not
+ * allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TimedBenchmark {
+
+  private final int slot = 42;
+
+  @Timed
+  private int timed(int slot) {
+    return slot * 31;
+  }
+
+  private int untimed(int slot) {
+    return slot * 31;
+  }
+
+  @Benchmark
+  public int generatedTimed() {
+    return timed(this.slot);
+  }
+
+  @Benchmark
+  public int untimed() {
+    return untimed(this.slot);
+  }
+}
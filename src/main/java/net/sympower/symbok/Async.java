@@ -0,0 +1,42 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Runs the body of a method on another thread, by default a new virtual thread per call, through
+ * {@link net.sympower.symbok.runtime.VirtualThreads VirtualThreads}:
+ * <pre>
+ * CompletableFuture&lt;Result&gt; methodAnnotatedWithAsync(Request request) {
+ *   return VirtualThreads.submit(() -&gt; this.$async$methodAnnotatedWithAsync(request));
+ * }
+ *
+ * private CompletableFuture&lt;Result&gt; $async$methodAnnotatedWithAsync(Request request) {
+ *   // method body, e.g. blocking I/O
+ *   return CompletableFuture.completedFuture(result);
+ * }
+ * </pre>
+ * The annotated method returns a {@link java.util.concurrent.CompletableFuture CompletableFuture} or
+ * {@link java.util.concurrent.CompletionStage CompletionStage}, and the future returned to the caller completes like
+ * the stage returned by the body, or exceptionally with the exception thrown by the body. A {@code void} method is
+ * run without waiting for it, and an exception it throws goes to the uncaught exception handler of its thread.
+ * <p>
+ * The other annotations of the method, like {@link ThreadNamed @ThreadNamed}, {@link ReadLock @ReadLock} and
+ * {@link WriteLock @WriteLock}, apply to the body, so the thread name is set on the thread that runs it. The default
+ * executor starts a virtual thread per call on Java 21 and later, and falls back to a cached pool of daemon threads on
+ * older runtimes. {@code VirtualThreads} is a runtime class, so symbok has to be on the runtime classpath.
+ */
+@Target(METHOD)
+@Retention(SOURCE)
+public @interface Async {
+
+  /**
+   * Name of a field of type {@link java.util.concurrent.Executor Executor} that runs the body.
+   * <p>
+   * Defaults to the shared {@link net.sympower.symbok.runtime.VirtualThreads#executor() VirtualThreads.executor()}.
+   */
+  String executor() default "";
+}
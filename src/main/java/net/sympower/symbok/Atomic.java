@@ -0,0 +1,32 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates atomic accessors for an {@code int}, {@code long} or reference field, backed by a static
+ * {@code Atomic*FieldUpdater}, so the field needs no {@code AtomicLong} or {@code AtomicReference} object of its own:
+ * <pre>
+ * private volatile long count;
+ *
+ * private static final AtomicLongFieldUpdater&lt;Counter&gt; $countUpdater =
+ *     AtomicLongFieldUpdater.newUpdater(Counter.class, "count");
+ *
+ * public long getCount() { return this.count; }
+ * public void setCount(long count) { this.count = count; }
+ * public boolean compareAndSetCount(long expect, long update) { return $countUpdater.compareAndSet(this, expect, update); }
+ * public long getAndIncrementCount() { return $countUpdater.getAndIncrement(this); }
+ * public long updateAndGetCount(LongUnaryOperator updateFunction) { return $countUpdater.updateAndGet(this, updateFunction); }
+ * </pre>
+ * The field becomes {@code volatile} and must not be {@code final} or {@code static}. {@code getAndIncrement} is only
+ * generated for {@code int} and {@code long} fields.
+ */
+@Target({ ElementType.FIELD, ElementType.TYPE })
+@Retention(RetentionPolicy.SOURCE)
+public @interface Atomic {
+
+  lombok.AccessLevel value() default lombok.AccessLevel.PUBLIC;
+
+}
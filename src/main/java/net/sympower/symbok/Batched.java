@@ -0,0 +1,61 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Coalesces concurrent calls of a single-item method into calls of its batch method, through a
+ * {@link net.sympower.symbok.runtime.Batcher Batcher}:
+ * <pre>
+ * private final Batcher&lt;Item, Result&gt; $batcher$save =
+ *     new Batcher&lt;Item, Result&gt;(100, 1000000L, Batcher.Results.REQUIRED, items -&gt; this.saveAll(items));
+ *
+ * Result methodAnnotatedWithBatched(Item item) {
+ *   return this.$batcher$save.call(item);
+ * }
+ *
+ * List&lt;Result&gt; saveAll(List&lt;Item&gt; items) {
+ *   // batch method, returns the results in the order of the items
+ * }
+ * </pre>
+ * The annotated method has a single parameter, and its body, which is replaced, has to be empty or a single
+ * {@code throw} statement. For a {@code void} method the result of the batch method is ignored. Otherwise the batch
+ * method has to return a result per item, which can not be {@code null} for a method returning a primitive, or every
+ * caller of the batch gets an {@link IllegalStateException}.
+ * <p>
+ * The first caller of a batch waits until the batch has {@link #maxSize()} items or {@link #linger()} has passed, and
+ * then runs the batch method in its own thread, while the other callers wait for their result. An exception of the
+ * batch method is thrown to every caller of the batch. {@code Batcher} is a runtime class, so symbok has to be on the
+ * runtime classpath.
+ */
+@Target(METHOD)
+@Retention(SOURCE)
+public @interface Batched {
+
+  /**
+   * Name of the batch method, which takes a {@link java.util.List List} of items and returns a {@code List} of their
+   * results.
+   * <p>
+   * Defaults to the name of the annotated method followed by {@code All}, e.g. {@code saveAll} for {@code save}.
+   */
+  String value() default "";
+
+  /**
+   * Maximum number of items in a batch.
+   */
+  int maxSize() default 100;
+
+  /**
+   * Maximum time the first caller of a batch waits for more items, in {@link #unit()}.
+   */
+  long linger() default 1;
+
+  /**
+   * Unit of the {@link #linger()} time.
+   */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
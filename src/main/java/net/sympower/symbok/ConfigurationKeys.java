@@ -14,6 +14,42 @@ public class ConfigurationKeys implements ConfigurationKeysLoader {
           "Default lock field name for @ReadLock and @WriteLock"
       ) {};
 
+  public static final ConfigurationKey<String> READ_WRITE_LOCK_IMPLEMENTATION =
+      new ConfigurationKey<String>(
+          "symbok.readWriteLock.implementation",
+          "Lock created for @ReadLock and @WriteLock: reentrant (default), fair, stamped or a ReadWriteLock class name"
+      ) {};
+
+  public static final ConfigurationKey<Integer> READ_WRITE_LOCK_STRIPES =
+      new ConfigurationKey<Integer>(
+          "symbok.readWriteLock.stripes",
+          "Number of stripes of a lock created for @ReadLock(stripeBy) and @WriteLock(stripeBy) (default: 16)"
+      ) {};
+
+  public static final ConfigurationKey<LockStorage> READ_WRITE_LOCK_STORAGE =
+      new ConfigurationKey<LockStorage>(
+          "symbok.readWriteLock.storage",
+          "Where a lock created for @ReadLock and @WriteLock is stored: INSTANCE (default), LAZY or SHARED"
+      ) {};
+
+  public static final ConfigurationKey<Boolean> READ_WRITE_LOCK_FLIGHT_RECORDER =
+      new ConfigurationKey<Boolean>(
+          "symbok.readWriteLock.flightRecorder",
+          "Emit JDK Flight Recorder events for lock wait and hold times of @ReadLock and @WriteLock (default: false)"
+      ) {};
+
+  public static final ConfigurationKey<Boolean> READ_WRITE_LOCK_PADDED =
+      new ConfigurationKey<Boolean>(
+          "symbok.readWriteLock.padded",
+          "Pad lock fields created for @ReadLock and @WriteLock onto their own cache line (default: false)"
+      ) {};
+
+  public static final ConfigurationKey<ThreadNameMode> THREAD_NAMED_MODE =
+      new ConfigurationKey<ThreadNameMode>(
+          "symbok.threadNamed.mode",
+          "How @ThreadNamed names the thread: RENAME (default) or LOGICAL"
+      ) {};
+
   public static final ConfigurationKey<FlagUsageType> THREAD_NAMED_FLAG_USAGE =
       new ConfigurationKey<FlagUsageType>(
           "symbok.threadNamed.flagUsage",
@@ -25,4 +61,58 @@ public class ConfigurationKeys implements ConfigurationKeysLoader {
           "symbok.getter2.flagUsage",
           "Emit a warning or error if @Getter2 is used."
       ) {};
+
+  public static final ConfigurationKey<FlagUsageType> ATOMIC_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.atomic.flagUsage",
+          "Emit a warning or error if @Atomic is used."
+      ) {};
+
+  public static final ConfigurationKey<Integer> COUNTER_STRIPES =
+      new ConfigurationKey<Integer>(
+          "symbok.counter.stripes",
+          "Number of stripes of @Counter fields (default: the number of processors at runtime)"
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> COUNTER_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.counter.flagUsage",
+          "Emit a warning or error if @Counter is used."
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> TIMED_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.timed.flagUsage",
+          "Emit a warning or error if @Timed is used."
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> PADDED_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.padded.flagUsage",
+          "Emit a warning or error if @Padded is used."
+      ) {};
+
+  public static final ConfigurationKey<Integer> MEMOIZE_MAX_SIZE =
+      new ConfigurationKey<Integer>(
+          "symbok.memoize.maxSize",
+          "Maximum number of results cached by a @Memoize method (default: 1024)"
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> MEMOIZE_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.memoize.flagUsage",
+          "Emit a warning or error if @Memoize is used."
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> BATCHED_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.batched.flagUsage",
+          "Emit a warning or error if @Batched is used."
+      ) {};
+
+  public static final ConfigurationKey<FlagUsageType> ASYNC_FLAG_USAGE =
+      new ConfigurationKey<FlagUsageType>(
+          "symbok.async.flagUsage",
+          "Emit a warning or error if @Async is used."
+      ) {};
 }
@@ -0,0 +1,47 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Keeps the instance fields of a class in an immutable snapshot behind a {@code volatile} reference, for state that is
+ * read far more often than it is written.
+ * <pre>
+ * private final class $State {
+ *   // the instance fields of the class, other than lock fields
+ * }
+ *
+ * private volatile $State $state = new $State();
+ *
+ * T methodAnnotatedWithReadLock() {
+ *   return this.$state.$unlocked$methodAnnotatedWithReadLock();
+ * }
+ *
+ * T methodAnnotatedWithWriteLock() {
+ *   this.&lt;LOCK_NAME&gt;.writeLock().lock();
+ *   try {
+ *     final $State $copy = new $State(this.$state);
+ *     final T $result = $copy.$unlocked$methodAnnotatedWithWriteLock();
+ *     this.$state = $copy;
+ *     return $result;
+ *   } finally {
+ *     this.&lt;LOCK_NAME&gt;.writeLock().unlock();
+ *   }
+ * }
+ * </pre>
+ * The bodies of {@link ReadLock @ReadLock} and {@link WriteLock @WriteLock} methods, and of the constructors, move into
+ * the state class. {@code @ReadLock} methods take no lock and see a single snapshot; {@code @WriteLock} methods modify
+ * a shallow copy under the write lock and publish it when they return normally. Other methods can not use the fields.
+ * <p>
+ * Calls between these methods run on the state of the caller, without going through an override: a nested
+ * {@code @WriteLock} call modifies the copy of the outer one, which is published once, when the outermost write
+ * returns, and a nested {@code @ReadLock} call sees that copy. Calling a {@code @WriteLock} method from a
+ * {@code @ReadLock} method is an error, as the read would not see the write.
+ */
+@Target(TYPE)
+@Retention(SOURCE)
+public @interface CopyOnWrite {
+}
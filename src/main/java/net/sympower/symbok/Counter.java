@@ -0,0 +1,41 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Turns a {@code long} field into a striped counter that many threads can update without contending on one cache line,
+ * and generates its accessors:
+ * <pre>
+ * private final net.sympower.symbok.runtime.StripedCounter requests = new StripedCounter(&lt;STRIPES&gt;, &lt;LAZY&gt;);
+ *
+ * public void incrementRequests() { this.requests.increment(); }
+ * public void addRequests(long delta) { this.requests.add(delta); }
+ * public long sumRequests() { return this.requests.sum(); }
+ * public long sumThenResetRequests() { return this.requests.sumThenReset(); }
+ * </pre>
+ * The field must not have an initializer, counters start at zero. {@code StripedCounter} is a runtime class, so symbok
+ * has to be on the runtime classpath.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Counter {
+
+  lombok.AccessLevel value() default lombok.AccessLevel.PUBLIC;
+
+  /**
+   * Number of stripes, a power of two.
+   * <p>
+   * Defaults to {@code symbok.counter.stripes} from {@code lombok.config}, or the number of processors at runtime.
+   */
+  int stripes() default 0;
+
+  /**
+   * Allocate the stripes only once two threads update the counter at the same time, so counters that are never
+   * contended stay small.
+   */
+  boolean lazy() default false;
+
+}
@@ -0,0 +1,21 @@
+package net.sympower.symbok;
+
+/**
+ * Which entry a full {@link Memoize @Memoize} cache evicts to make room for a new one.
+ * <p>
+ * Both are approximations: the cache samples a few entries, cycling through its table, and evicts the coldest of
+ * them. Expired entries are always evicted first.
+ */
+public enum EvictionPolicy {
+
+  /**
+   * Evict the least recently used entry, for results that are asked for in bursts.
+   */
+  LRU,
+
+  /**
+   * Evict the least frequently used entry, for a stable set of hot arguments among many that are asked for once.
+   * Frequencies are halved whenever the eviction samples an entry, so results that stop being asked for age out.
+   */
+  LFU
+}
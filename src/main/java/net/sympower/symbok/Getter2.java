@@ -11,4 +11,24 @@ public @interface Getter2 {
 
   lombok.AccessLevel value() default lombok.AccessLevel.PUBLIC;
 
+  /**
+   * Compute the initializer of a {@code private final} field once, on first access of the getter, instead of in the
+   * constructor.
+   * <p>
+   * The initialization is double-checked on a {@code volatile} flag and synchronized on a generated private lock
+   * object, not on {@code this}. The field keeps its type, so primitive fields are not boxed, and must only be read
+   * through the getter.
+   */
+  boolean lazy() default false;
+
+  /**
+   * Name of a lock field to read the field under, typically the lock of the {@link WriteLock @WriteLock} methods
+   * changing it.
+   * <p>
+   * The lock is created like for {@link ReadLock @ReadLock} if it does not exist. A
+   * {@link java.util.concurrent.locks.StampedLock StampedLock} is read optimistically, and only takes the read lock if
+   * a write interfered; other locks take their read lock.
+   */
+  String lock() default "";
+
 }
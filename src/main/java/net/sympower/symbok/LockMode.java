@@ -0,0 +1,56 @@
+package net.sympower.symbok;
+
+/**
+ * How a {@link ReadLock @ReadLock} method acquires its lock.
+ */
+public enum LockMode {
+
+  /**
+   * Always acquire the shared read lock before running the method body.
+   */
+  PESSIMISTIC,
+
+  /**
+   * Run the method body under {@link java.util.concurrent.locks.StampedLock#tryOptimisticRead() tryOptimisticRead()}
+   * and return its result if the stamp still {@link java.util.concurrent.locks.StampedLock#validate(long) validates};
+   * otherwise run it again under the read lock.
+   * <p>
+   * The lock field has to be a {@link java.util.concurrent.locks.StampedLock StampedLock}. If symbok creates the field,
+   * it creates a {@code StampedLock} as soon as one method uses this mode, and {@link WriteLock @WriteLock} methods on
+   * the same field use its write lock.
+   * <p>
+   * The method body may run more than once and may observe inconsistent state, so it must only read fields and must
+   * not have side effects.
+   */
+  OPTIMISTIC,
+
+  /**
+   * Read like a sequence lock: run the method body under
+   * {@link java.util.concurrent.locks.StampedLock#tryOptimisticRead() tryOptimisticRead()} and retry it until the
+   * stamp {@link java.util.concurrent.locks.StampedLock#validate(long) validates}, without ever taking the read lock.
+   * {@link WriteLock @WriteLock} methods change the stamp when they take and release the write lock.
+   * <p>
+   * Readers never block writers, but spin while writes interfere, so this suits small state such as a few
+   * {@code long} or {@code double} fields, copied into locals or a result by short methods. Like
+   * {@link #OPTIMISTIC} it needs a {@link java.util.concurrent.locks.StampedLock StampedLock}, and the method body
+   * must only read fields and must not have side effects. It can not have a timeout.
+   */
+  SEQUENCE,
+
+  /**
+   * Acquire the shared read lock, and promote it to the write lock where the method body calls
+   * {@link net.sympower.symbok.runtime.LockUpgrade#toWriteLock() LockUpgrade.toWriteLock()}, for check-then-act
+   * methods that mostly only check.
+   * <p>
+   * The read lock is converted with
+   * {@link java.util.concurrent.locks.StampedLock#tryConvertToWriteLock(long) tryConvertToWriteLock}. If that fails
+   * because other readers hold the lock, it is released, the write lock is acquired, and the method body starts over
+   * under the write lock, so the checks before the upgrade see the current state. The body must therefore not have
+   * side effects before the upgrade, and must not assign its parameters.
+   * <p>
+   * Like {@link #OPTIMISTIC} it needs a {@link java.util.concurrent.locks.StampedLock StampedLock}, which is not
+   * reentrant: after the upgrade the body must not call {@link WriteLock @WriteLock} methods on the same lock. It can
+   * not have a timeout.
+   */
+  UPGRADABLE
+}
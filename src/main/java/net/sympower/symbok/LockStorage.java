@@ -0,0 +1,47 @@
+package net.sympower.symbok;
+
+/**
+ * Where the lock created for {@link ReadLock @ReadLock} and {@link WriteLock @WriteLock} methods is stored.
+ */
+public enum LockStorage {
+
+  /**
+   * A {@code final} field of each instance, holding a lock created with the instance.
+   */
+  INSTANCE,
+
+  /**
+   * A {@code volatile} field of each instance, holding a lock created on first use and published with
+   * {@code compareAndSet}, so instances that are never locked do not carry a lock object:
+   * <pre>
+   * private volatile ReentrantReadWriteLock &lt;LOCK_NAME&gt;;
+   *
+   * private ReentrantReadWriteLock &lt;LOCK_NAME&gt;() {
+   *   ReentrantReadWriteLock $lock = this.&lt;LOCK_NAME&gt;;
+   *   if ($lock == null) {
+   *     $&lt;LOCK_NAME&gt;$updater.compareAndSet(this, null, new ReentrantReadWriteLock());
+   *     $lock = this.&lt;LOCK_NAME&gt;;
+   *   }
+   *   return $lock;
+   * }
+   * </pre>
+   * The class needs to be able to declare the static {@code AtomicReferenceFieldUpdater}, so it can not be an inner
+   * class. Striped locks can not be lazy.
+   */
+  LAZY,
+
+  /**
+   * A static pool of locks shared by all instances of the class, each instance using the lock selected by its
+   * {@link System#identityHashCode(Object) identity hash code}. Instances take no memory for locks at all, but
+   * instances that share a lock contend with each other, and a method holding the lock of one instance that calls a
+   * method of another instance may find that lock held. Such a call deadlocks if it needs the write lock under the read
+   * lock, which a {@code ReentrantReadWriteLock} never grants either, or on a non-reentrant {@code StampedLock}. Calls
+   * between instances on different locks of the pool can deadlock when two threads take them in opposite order. A
+   * warning is reported for calls to locked methods on other instances of the class.
+   * <p>
+   * The number of locks is set by {@code stripes}, and defaults to {@code symbok.readWriteLock.stripes} from
+   * {@code lombok.config}, or {@code 16}. The class can not be an inner class, and shared locks can not be combined with
+   * {@code stripeBy}.
+   */
+  SHARED
+}
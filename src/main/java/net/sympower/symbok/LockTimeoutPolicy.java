@@ -0,0 +1,23 @@
+package net.sympower.symbok;
+
+/**
+ * What a {@link ReadLock @ReadLock} or {@link WriteLock @WriteLock} method with a {@code timeout} does when the lock
+ * could not be acquired in time, or the waiting thread has been interrupted.
+ */
+public enum LockTimeoutPolicy {
+
+  /**
+   * Throw a {@link net.sympower.symbok.runtime.LockTimeoutException LockTimeoutException}.
+   */
+  THROW,
+
+  /**
+   * Return the default value of the return type: {@code null}, {@code 0} or {@code false}.
+   */
+  RETURN_DEFAULT,
+
+  /**
+   * Return the result of the {@code fallback} method, which is called with the same arguments.
+   */
+  FALLBACK
+}
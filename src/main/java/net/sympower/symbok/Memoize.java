@@ -0,0 +1,61 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Caches the results of a method by its arguments, in a bounded {@link net.sympower.symbok.runtime.MemoCache
+ * MemoCache} per instance, or per class for static methods:
+ * <pre>
+ * private final MemoCache&lt;T&gt; $memo$method = new MemoCache&lt;T&gt;(1024, EvictionPolicy.LRU, 0L);
+ *
+ * T methodAnnotatedWithMemoize(A a, B b) {
+ *   final Object $key = MemoCache.key(a, b);
+ *   final MemoCache.Entry&lt;T&gt; $entry = this.$memo$method.get($key);
+ *   if ($entry != null) {
+ *     return $entry.getValue();
+ *   }
+ *   final T $value = this.$memoized$method(a, b);
+ *   this.$memo$method.put($key, $value);
+ *   return $value;
+ * }
+ * </pre>
+ * A single reference parameter is the key itself, and a single primitive parameter is looked up as a {@code long}
+ * without boxing. Arguments are compared with {@code equals}, so arrays are compared by identity.
+ * <p>
+ * The method must be pure: concurrent calls for the same arguments may both run the method body, and exceptions are
+ * not cached. Each cache allocates a table of two to four times {@link #maxSize()} slots once its first result is
+ * added, which adds up for per-instance caches of many instances. {@code MemoCache} is a runtime class, so symbok has
+ * to be on the runtime classpath.
+ */
+@Target(METHOD)
+@Retention(SOURCE)
+public @interface Memoize {
+
+  /**
+   * Maximum number of cached results. A full cache evicts an entry chosen by {@link #eviction()} for each new one.
+   * <p>
+   * Defaults to {@code symbok.memoize.maxSize} from {@code lombok.config}, or {@code 1024}.
+   */
+  int maxSize() default 0;
+
+  /**
+   * Which entry a full cache evicts, see {@link EvictionPolicy}.
+   */
+  EvictionPolicy eviction() default EvictionPolicy.LRU;
+
+  /**
+   * Time after which a cached result expires, in {@link #unit()}, counted from when it was computed. A negative value
+   * keeps results until they are evicted.
+   */
+  long ttl() default -1;
+
+  /**
+   * Unit of the {@link #ttl()}.
+   */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
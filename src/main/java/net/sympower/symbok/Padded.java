@@ -0,0 +1,28 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Keeps a frequently written instance field on its own cache line, so writes to it do not slow down threads using
+ * neighbouring fields of the same object (false sharing), and the other way around:
+ * <pre>
+ * private long $pad$hits$0, ... $pad$hits$6;
+ * private volatile long hits;
+ * private long $pad$hits$7, ... $pad$hits$13;
+ * </pre>
+ * The JVM lays out fields grouped by size, in declaration order within a group, so the field is surrounded by 64 bytes
+ * of padding fields of its own size: {@code long} for {@code long} and {@code double} fields, {@code int} for
+ * {@code int} and {@code float} fields, and {@code Object} for references. This needs neither
+ * {@code @sun.misc.Contended} nor {@code -XX:-RestrictContended}, but makes every instance about 128 bytes larger.
+ * <p>
+ * Lock fields created by {@link ReadLock @ReadLock} and {@link WriteLock @WriteLock} are padded like this with
+ * {@code symbok.readWriteLock.padded=true} in {@code lombok.config}.
+ */
+@Target(FIELD)
+@Retention(SOURCE)
+public @interface Padded {
+}
@@ -2,6 +2,7 @@ package net.sympower.symbok;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.RetentionPolicy.SOURCE;
@@ -31,4 +32,75 @@ public @interface ReadLock {
    * will be created, using this name.
    */
   String value() default "";
+
+  /**
+   * Implementation of the lock, if it has to be created.
+   * <ul>
+   * <li>{@code reentrant} - a non-fair {@link java.util.concurrent.locks.ReentrantReadWriteLock ReentrantReadWriteLock}</li>
+   * <li>{@code fair} - a fair {@link java.util.concurrent.locks.ReentrantReadWriteLock ReentrantReadWriteLock}</li>
+   * <li>{@code stamped} - a {@link java.util.concurrent.locks.StampedLock StampedLock}</li>
+   * <li>{@code async} - a {@link net.sympower.symbok.runtime.AsyncReadWriteLock AsyncReadWriteLock}, held until the
+   * {@link java.util.concurrent.CompletionStage CompletionStage} returned by the method completes, for methods that
+   * return one</li>
+   * <li>the fully qualified name of a {@link java.util.concurrent.locks.ReadWriteLock ReadWriteLock} implementation
+   * with a public no-args constructor</li>
+   * </ul>
+   * Defaults to {@code symbok.readWriteLock.implementation} from {@code lombok.config}, or {@code reentrant}.
+   */
+  String implementation() default "";
+
+  /**
+   * How the lock is acquired, see {@link LockMode}.
+   */
+  LockMode mode() default LockMode.PESSIMISTIC;
+
+  /**
+   * Maximum time to wait for the lock, in {@link #unit()}. A negative value waits without limit.
+   * <p>
+   * With a timeout the lock is acquired using {@code tryLock}, and {@link #onTimeout()} decides what happens if it
+   * could not be acquired in time. An interrupt while waiting is handled like a timeout, with the interrupt status of
+   * the thread restored.
+   */
+  long timeout() default -1;
+
+  /**
+   * Unit of the {@link #timeout()}.
+   */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+  /**
+   * What to do if the lock could not be acquired within the {@link #timeout()}, see {@link LockTimeoutPolicy}.
+   */
+  LockTimeoutPolicy onTimeout() default LockTimeoutPolicy.THROW;
+
+  /**
+   * Name of the method called with the same arguments if {@link #onTimeout()} is
+   * {@link LockTimeoutPolicy#FALLBACK FALLBACK}.
+   */
+  String fallback() default "";
+
+  /**
+   * Name of a parameter to stripe the lock by.
+   * <p>
+   * The lock field becomes an array of {@link #stripes()} locks, and each call only locks the stripe selected by the
+   * hash code of the parameter. Calls for keys in different stripes do not contend, calls for equal keys always use
+   * the same stripe. All methods using a striped lock field need a {@code stripeBy} parameter.
+   */
+  String stripeBy() default "";
+
+  /**
+   * Number of stripes if {@link #stripeBy()} is set, or of locks in the pool of {@link LockStorage#SHARED SHARED}
+   * storage, a power of two.
+   * <p>
+   * Defaults to {@code symbok.readWriteLock.stripes} from {@code lombok.config}, or {@code 16}.
+   */
+  int stripes() default 0;
+
+  /**
+   * Where the lock is stored, if it has to be created, see {@link LockStorage}.
+   * <p>
+   * Defaults to {@code symbok.readWriteLock.storage} from {@code lombok.config}, or
+   * {@link LockStorage#INSTANCE INSTANCE}.
+   */
+  LockStorage storage() default LockStorage.INSTANCE;
 }
@@ -0,0 +1,23 @@
+package net.sympower.symbok;
+
+/**
+ * How a {@link ThreadNamed @ThreadNamed} method or constructor names the thread it runs in.
+ */
+public enum ThreadNameMode {
+
+  /**
+   * Rename the thread using {@link Thread#setName(String)}, and restore the old name afterwards.
+   * <p>
+   * The name shows up in thread dumps, profilers and OS tools, but each call renames the thread twice, which goes
+   * down to a native call on most platforms.
+   */
+  RENAME,
+
+  /**
+   * Only record the name in a per-thread context, readable through
+   * {@link net.sympower.symbok.runtime.ThreadNames#current() ThreadNames.current()}, e.g. from a logging layout.
+   * <p>
+   * The thread itself keeps its name, so this is cheap enough for methods that run in microseconds.
+   */
+  LOGICAL
+}
@@ -36,8 +36,23 @@ public @interface ThreadNamed {
      * }</pre> when called with {@code "apple", 2, 3.14159} will set the current
      * thread name to
      * "Foo #2" while {@code doFoo} executes.
+     * <p>
+     * Formats using only {@code %s}, {@code %d} (with integral parameters),
+     * their positional forms and {@code %%} are turned into a plain string
+     * concatenation at compile time, so renaming does not parse the format or
+     * box parameters on every call.  {@code %d} is then not localized and
+     * {@link java.util.Formattable} parameters are appended using
+     * {@code toString()}.  Any other format is passed to {@code
+     * String.format} at runtime.
      *
      * @see Formatter
      */
     String value();
+
+    /**
+     * Whether the thread is really renamed, or only gets a logical name, see
+     * {@link ThreadNameMode}.  Defaults to {@code symbok.threadNamed.mode}
+     * from {@code lombok.config}, or {@link ThreadNameMode#RENAME RENAME}.
+     */
+    ThreadNameMode mode() default ThreadNameMode.RENAME;
 }
@@ -0,0 +1,41 @@
+package net.sympower.symbok;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.CONSTRUCTOR;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Records the wall-clock duration of every call in a {@link net.sympower.symbok.runtime.LatencyHistogram
+ * LatencyHistogram}:
+ * <pre>
+ * private static final LatencyHistogram $timed$method = LatencyHistogram.register("com.example.Type.method");
+ *
+ * void methodAnnotatedWithTimed() {
+ *   final long $start = System.nanoTime();
+ *   try {
+ *
+ *     // method body
+ *
+ *   } finally {
+ *     $timed$method.record(System.nanoTime() - $start);
+ *   }
+ * }
+ * </pre>
+ * Calls to sibling or super constructors are not timed. {@code LatencyHistogram} is a runtime class, so symbok has to
+ * be on the runtime classpath.
+ */
+@Target({ METHOD, CONSTRUCTOR })
+@Retention(SOURCE)
+public @interface Timed {
+
+  /**
+   * Name of the histogram.
+   * <p>
+   * Defaults to the qualified name of the type, followed by the name of the method or {@code <init>}, e.g.
+   * {@code com.example.Type.method}. Methods with the same name, such as overloads, share a histogram.
+   */
+  String value() default "";
+}
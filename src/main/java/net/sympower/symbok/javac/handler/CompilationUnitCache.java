@@ -0,0 +1,136 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.util.Name;
+import lombok.core.configuration.CheckerFrameworkVersion;
+import lombok.core.configuration.ConfigurationKey;
+import lombok.core.configuration.FlagUsageType;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
+
+/**
+ * Configuration values and type names resolved once per compilation unit, instead of once per annotated member.
+ * <p>
+ * Handlers run for every annotation of a compilation unit, and each of them used to read the same
+ * {@code lombok.config} keys and split and intern the same fully qualified class names again.
+ */
+final class CompilationUnitCache {
+
+  private static final Object NULL = new Object();
+
+  private static final Map<Object, CompilationUnitCache> CACHES = new WeakHashMap<Object, CompilationUnitCache>();
+
+  private final Map<ConfigurationKey<?>, Object> configuration = new HashMap<ConfigurationKey<?>, Object>();
+  private final Map<String, Name[]> typeNames = new HashMap<String, Name[]>();
+  private final Map<String, String[]> javaLangTypeNames = new HashMap<String, String[]>();
+  private final Map<Object, Object> computed = new IdentityHashMap<Object, Object>();
+
+  private CompilationUnitCache() {
+  }
+
+  static CompilationUnitCache of(JavacNode node) {
+    Object compilationUnit = node.top().get();
+    synchronized (CACHES) {
+      CompilationUnitCache cache = CACHES.get(compilationUnit);
+      if (cache == null) {
+        cache = new CompilationUnitCache();
+        CACHES.put(compilationUnit, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Same as {@code node.getAst().readConfiguration(key)}.
+   */
+  static <T> T readConfiguration(JavacNode node, ConfigurationKey<T> key) {
+    return of(node).read(node, key);
+  }
+
+  /**
+   * Same as {@link lombok.core.handlers.HandlerUtil#handleFlagUsage(lombok.core.LombokNode, ConfigurationKey, String)},
+   * which only has to be called if the flag is configured.
+   */
+  static void handleFlagUsage(JavacNode node, ConfigurationKey<FlagUsageType> key, String featureName) {
+    if (readConfiguration(node, key) != null) {
+      lombok.core.handlers.HandlerUtil.handleFlagUsage(node, key, featureName);
+    }
+  }
+
+  /**
+   * Same as {@link lombok.javac.handlers.JavacHandlerUtil#getCheckerFrameworkVersion(JavacNode)}.
+   */
+  static CheckerFrameworkVersion getCheckerFrameworkVersion(JavacNode node) {
+    CheckerFrameworkVersion version = readConfiguration(node, lombok.ConfigurationKeys.CHECKER_FRAMEWORK);
+    return version != null ? version : CheckerFrameworkVersion.NONE;
+  }
+
+  /**
+   * Same as {@link lombok.javac.handlers.JavacHandlerUtil#genTypeRef(JavacNode, String)}.
+   */
+  static JCExpression genTypeRef(JavacNode node, String complexName) {
+    return of(node).typeRef(node, complexName);
+  }
+
+  /**
+   * Returns the value computed for a tree of the compilation unit, computing it on first use.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> V computeIfAbsent(JavacNode node, K tree, Function<K, V> compute) {
+    Map<Object, Object> computed = of(node).computed;
+    V value = (V) computed.get(tree);
+    if (value == null) {
+      value = compute.apply(tree);
+      computed.put(tree, value);
+    }
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T read(JavacNode node, ConfigurationKey<T> key) {
+    Object value = configuration.get(key);
+    if (value == null) {
+      value = node.getAst().readConfiguration(key);
+      configuration.put(key, value == null ? NULL : value);
+    }
+    return value == NULL ? null : (T) value;
+  }
+
+  private JCExpression typeRef(JavacNode node, String complexName) {
+    String[] javaLangNames = javaLangTypeNames.get(complexName);
+    if (javaLangNames != null) {
+      return genJavaLangTypeRef(node, javaLangNames);
+    }
+
+    Name[] names = typeNames.get(complexName);
+    if (names == null) {
+      String[] parts = complexName.split("\\.");
+      if (parts.length > 2 && parts[0].equals("java") && parts[1].equals("lang")) {
+        javaLangNames = Arrays.copyOfRange(parts, 2, parts.length);
+        javaLangTypeNames.put(complexName, javaLangNames);
+        return genJavaLangTypeRef(node, javaLangNames);
+      }
+      names = new Name[parts.length];
+      for (int i = 0; i < parts.length; i++) {
+        names[i] = node.toName(parts[i]);
+      }
+      typeNames.put(complexName, names);
+    }
+
+    JavacTreeMaker maker = node.getTreeMaker();
+    JCExpression typeRef = maker.Ident(names[0]);
+    for (int i = 1; i < names.length; i++) {
+      typeRef = maker.Select(typeRef, names[i]);
+    }
+    return typeRef;
+  }
+}
@@ -0,0 +1,121 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.core.HandlerPriority;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
+import net.sympower.symbok.Async;
+import org.kohsuke.MetaInfServices;
+
+import static lombok.javac.Javac.CTC_BOT;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static net.sympower.symbok.ConfigurationKeys.ASYNC_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.callWithParams;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.createUnlockedMethod;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.returnsCompletionStage;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.returnsVoid;
+
+/**
+ * Handles the {@link Async} annotation for javac.
+ * <p>
+ * Runs after the {@code @ThreadNamed}, {@code @ReadLock}, {@code @WriteLock} and {@code @Memoize} handlers, so the
+ * body they wrap, including the thread name, moves onto the thread that runs it.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+@HandlerPriority(64)
+public class HandleAsync extends JavacAnnotationHandler<Async> {
+
+  private static final String VIRTUAL_THREADS_CLASS_NAME = "net.sympower.symbok.runtime.VirtualThreads";
+
+  private static final String ASYNC_PREFIX = "$async$";
+
+  @Override
+  public void handle(AnnotationValues<Async> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, ASYNC_FLAG_USAGE, "@Async");
+
+    deleteAnnotationIfNeccessary(annotationNode, Async.class);
+    JavacNode methodNode = annotationNode.up();
+    if (methodNode == null || methodNode.getKind() != Kind.METHOD || !(methodNode.get() instanceof JCMethodDecl)) {
+      annotationNode.addError("@Async is legal only on methods.");
+      return;
+    }
+
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    if ((method.mods.flags & Flags.ABSTRACT) != 0) {
+      annotationNode.addError("@Async is legal only on concrete methods.");
+      return;
+    }
+    if (method.restype == null || !returnsVoid(method) && !returnsCompletionStage(method)) {
+      annotationNode.addError(
+          "@Async is legal only on methods returning void, a CompletableFuture or a CompletionStage.");
+      return;
+    }
+
+    JavacNode typeNode = methodNode.up();
+    if ((((JCClassDecl) typeNode.get()).mods.flags & Flags.INTERFACE) != 0) {
+      annotationNode.addError("@Async is not supported in interfaces, which can not hold the private body method.");
+      return;
+    }
+
+    String executorField = annotation.getInstance().executor();
+    if (!executorField.isEmpty() && fieldExists(executorField, typeNode) == MemberExistsResult.NOT_EXISTS) {
+      annotationNode.addError("@Async executor field " + executorField + " does not exist.");
+      return;
+    }
+
+    if (method.body == null) {
+      return;
+    }
+
+    JavacTreeMaker maker = methodNode.getTreeMaker().at(ast.pos);
+    Context context = methodNode.getContext();
+    boolean isStatic = (method.mods.flags & Flags.STATIC) != 0;
+    Name receiverName = isStatic ? ((JCClassDecl) typeNode.get()).name : methodNode.toName("this");
+
+    // the original body moves into $async$<method>, run by the executor
+    Name asyncName = methodNode.toName(ASYNC_PREFIX + method.name);
+    injectMethod(typeNode, createUnlockedMethod(maker, methodNode, asyncName, Flags.PRIVATE, ast));
+
+    // return VirtualThreads.submit(() -> this.$async$method(params));
+    // or, for void methods and an executor field
+    // VirtualThreads.execute(this.executor, () -> { this.$async$method(params); return null; });
+    JCExpression asyncCall = callWithParams(maker, methodNode, maker.Ident(receiverName), asyncName);
+    boolean returnsVoid = returnsVoid(method);
+    JCTree lambdaBody = returnsVoid
+        ? maker.Block(0, List.of(maker.Exec(asyncCall), maker.Return(maker.Literal(CTC_BOT, null))))
+        : asyncCall;
+    JCExpression task = maker.getUnderlyingTreeMaker().Lambda(List.<JCVariableDecl>nil(), lambdaBody);
+    // javac 9 and later cache the attribution of method arguments by position, and all generated trees share the
+    // position of the annotation, so the executor is passed as a plain field access or not at all
+    List<JCExpression> args = executorField.isEmpty()
+        ? List.of(task)
+        : List.of(maker.Select(maker.Ident(receiverName), methodNode.toName(executorField)), task);
+    JCExpression call = maker.Apply(
+        List.<JCExpression>nil(),
+        genTypeRef(methodNode, VIRTUAL_THREADS_CLASS_NAME + (returnsVoid ? ".execute" : ".submit")),
+        args
+    );
+    JCStatement statement = returnsVoid ? maker.Exec(call) : maker.Return(call);
+    method.body = recursiveSetGeneratedBy(maker.Block(0, List.of(statement)), ast, context);
+    methodNode.rebuild();
+  }
+}
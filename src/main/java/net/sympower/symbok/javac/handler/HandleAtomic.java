@@ -0,0 +1,450 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCArrayTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCModifiers;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCTypeApply;
+import com.sun.tools.javac.tree.JCTree.JCTypeParameter;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import com.sun.tools.javac.util.Name;
+import lombok.AccessLevel;
+import lombok.ConfigurationKeys;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import net.sympower.symbok.Atomic;
+import org.kohsuke.MetaInfServices;
+
+import javax.lang.model.type.TypeKind;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static lombok.core.handlers.HandlerUtil.buildAccessorName;
+import static lombok.javac.Javac.CTC_BOOLEAN;
+import static lombok.javac.Javac.CTC_VOID;
+import static lombok.javac.handlers.JavacHandlerUtil.addAnnotation;
+import static lombok.javac.handlers.JavacHandlerUtil.cloneType;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteImportFromCompilationUnit;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static lombok.javac.handlers.JavacHandlerUtil.toGetterName;
+import static lombok.javac.handlers.JavacHandlerUtil.toJavacModifier;
+import static lombok.javac.handlers.JavacHandlerUtil.toSetterName;
+import static net.sympower.symbok.ConfigurationKeys.ATOMIC_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
+import static net.sympower.symbok.javac.handler.HandleTimed.qualifiedTypeName;
+
+/**
+ * Handles the {@link Atomic} annotation for javac.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+public class HandleAtomic extends JavacAnnotationHandler<Atomic> {
+
+  /**
+   * The field updater and functional interface used for a field type.
+   */
+  private enum UpdaterKind {
+    INT("java.util.concurrent.atomic.AtomicIntegerFieldUpdater", "java.util.function.IntUnaryOperator", true),
+    LONG("java.util.concurrent.atomic.AtomicLongFieldUpdater", "java.util.function.LongUnaryOperator", true),
+    REFERENCE("java.util.concurrent.atomic.AtomicReferenceFieldUpdater", "java.util.function.UnaryOperator", false);
+
+    final String updaterClass;
+    final String operatorClass;
+    final boolean numeric;
+
+    UpdaterKind(String updaterClass, String operatorClass, boolean numeric) {
+      this.updaterClass = updaterClass;
+      this.operatorClass = operatorClass;
+      this.numeric = numeric;
+    }
+  }
+
+  @Override
+  public void handle(AnnotationValues<Atomic> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, ATOMIC_FLAG_USAGE, "@Atomic");
+
+    Collection<JavacNode> fields = annotationNode.upFromAnnotationToFields();
+    deleteAnnotationIfNeccessary(annotationNode, Atomic.class);
+    deleteImportFromCompilationUnit(annotationNode, "lombok.AccessLevel");
+    JavacNode node = annotationNode.up();
+    AccessLevel level = annotation.getInstance().value();
+
+    if (level == AccessLevel.NONE || node == null) {
+      return;
+    }
+
+    switch (node.getKind()) {
+      case FIELD:
+        if (!canHoldUpdaters(node.up(), annotationNode)) {
+          return;
+        }
+        for (JavacNode fieldNode : fields) {
+          createAtomicAccessors(level, fieldNode, annotationNode, true);
+        }
+        break;
+      case TYPE:
+        JCClassDecl typeDecl = node.get() instanceof JCClassDecl ? (JCClassDecl) node.get() : null;
+        if (typeDecl == null || (typeDecl.mods.flags & (Flags.INTERFACE | Flags.ANNOTATION)) != 0) {
+          annotationNode.addError("@Atomic is only supported on a class, an enum, or a field.");
+          return;
+        }
+        if (!canHoldUpdaters(node, annotationNode)) {
+          return;
+        }
+        for (JavacNode fieldNode : node.down()) {
+          if (fieldQualifiesForAtomicAccessors(fieldNode)) {
+            createAtomicAccessors(level, fieldNode, annotationNode, false);
+          }
+        }
+        break;
+    }
+  }
+
+  /**
+   * Whether the type can declare the static updater fields, which inner, local and anonymous classes can not.
+   */
+  private static boolean canHoldUpdaters(JavacNode typeNode, JavacNode annotationNode) {
+    if (qualifiedTypeName(typeNode) == null) {
+      annotationNode.addError(
+          "@Atomic is not supported in inner classes, local classes or anonymous classes, which can not hold the "
+              + "static updater field.");
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean fieldQualifiesForAtomicAccessors(JavacNode field) {
+    if (field.getKind() != Kind.FIELD) {
+      return false;
+    }
+    JCVariableDecl fieldDecl = (JCVariableDecl) field.get();
+    //Skip fields that start with $
+    if (fieldDecl.name.toString().startsWith("$")) {
+      return false;
+    }
+    //Skip static and final fields.
+    return (fieldDecl.mods.flags & (Flags.STATIC | Flags.FINAL)) == 0;
+  }
+
+  private void createAtomicAccessors(AccessLevel level, JavacNode fieldNode, JavacNode source, boolean whineIfExists) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+
+    if ((fieldDecl.mods.flags & Flags.STATIC) != 0) {
+      source.addError("@Atomic is not supported for static fields.");
+      return;
+    }
+    if ((fieldDecl.mods.flags & Flags.FINAL) != 0) {
+      source.addError("@Atomic requires the field to be non-final.");
+      return;
+    }
+
+    UpdaterKind kind = updaterKind(fieldDecl);
+    if (kind == null) {
+      source.addError("@Atomic is only supported for int, long and reference fields.");
+      return;
+    }
+    if (usesTypeVariable(fieldNode.up(), fieldDecl.vartype)) {
+      source.addError("@Atomic is not supported for fields whose type uses a type variable of the class.");
+      return;
+    }
+
+    JavacTreeMaker maker = fieldNode.getTreeMaker();
+    Context context = fieldNode.getContext();
+    JCTree ast = source.get();
+
+    // field updaters require a volatile field
+    fieldDecl.mods.flags |= Flags.VOLATILE;
+
+    Name updaterName = fieldNode.toName("$" + fieldDecl.name + "Updater");
+    injectFieldAndMarkGenerated(
+        fieldNode.up(),
+        recursiveSetGeneratedBy(createUpdaterField(maker, fieldNode, kind, updaterName, ast), ast, context)
+    );
+
+    long access = toJavacModifier(level);
+    String fieldName = fieldDecl.name.toString();
+    Name thisName = fieldNode.toName("this");
+    JCExpression fieldAccess = maker.Select(maker.Ident(thisName), fieldDecl.name);
+
+    // T getField() { return this.field; }
+    String getterName = toGetterName(fieldNode);
+    if (canInject(getterName, fieldNode, source, whineIfExists)) {
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(getterName),
+          cloneType(maker, fieldDecl.vartype, ast, context),
+          List.<JCTypeParameter>nil(),
+          List.<JCVariableDecl>nil(),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(maker.Return(fieldAccess))),
+          null
+      ));
+    }
+
+    // void setField(T field) { this.field = field; }
+    String setterName = toSetterName(fieldNode);
+    if (canInject(setterName, fieldNode, source, whineIfExists)) {
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(setterName),
+          maker.TypeIdent(CTC_VOID),
+          List.<JCTypeParameter>nil(),
+          List.of(parameter(maker, fieldNode, fieldDecl.name, fieldDecl.vartype, ast)),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(maker.Exec(maker.Assign(
+              maker.Select(maker.Ident(thisName), fieldDecl.name), maker.Ident(fieldDecl.name))))),
+          null
+      ));
+    }
+
+    // boolean compareAndSetField(T expect, T update) { return $fieldUpdater.compareAndSet(this, expect, update); }
+    String compareAndSetName = buildAccessorName("compareAndSet", fieldName);
+    if (canInject(compareAndSetName, fieldNode, source, whineIfExists)) {
+      Name expectName = fieldNode.toName("expect");
+      Name updateName = fieldNode.toName("update");
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(compareAndSetName),
+          maker.TypeIdent(CTC_BOOLEAN),
+          List.<JCTypeParameter>nil(),
+          List.of(
+              parameter(maker, fieldNode, expectName, fieldDecl.vartype, ast),
+              parameter(maker, fieldNode, updateName, fieldDecl.vartype, ast)
+          ),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(maker.Return(callUpdater(
+              maker, fieldNode, updaterName, "compareAndSet", maker.Ident(expectName), maker.Ident(updateName))))),
+          null
+      ));
+    }
+
+    // T getAndIncrementField() { return $fieldUpdater.getAndIncrement(this); }
+    String getAndIncrementName = buildAccessorName("getAndIncrement", fieldName);
+    if (kind.numeric && canInject(getAndIncrementName, fieldNode, source, whineIfExists)) {
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(getAndIncrementName),
+          cloneType(maker, fieldDecl.vartype, ast, context),
+          List.<JCTypeParameter>nil(),
+          List.<JCVariableDecl>nil(),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(maker.Return(
+              callUpdater(maker, fieldNode, updaterName, "getAndIncrement")))),
+          null
+      ));
+    }
+
+    // T updateAndGetField(UnaryOperator<T> updateFunction) { return $fieldUpdater.updateAndGet(this, updateFunction); }
+    String updateAndGetName = buildAccessorName("updateAndGet", fieldName);
+    if (canInject(updateAndGetName, fieldNode, source, whineIfExists)) {
+      Name functionName = fieldNode.toName("updateFunction");
+      JCExpression operatorType = genTypeRef(fieldNode, kind.operatorClass);
+      if (!kind.numeric) {
+        operatorType = maker.TypeApply(operatorType, List.of(cloneType(maker, fieldDecl.vartype, ast, context)));
+      }
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(updateAndGetName),
+          cloneType(maker, fieldDecl.vartype, ast, context),
+          List.<JCTypeParameter>nil(),
+          List.of(maker.at(ast.pos).VarDef(
+              maker.Modifiers(Flags.FINAL | Flags.PARAMETER), functionName, operatorType, null)),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(maker.Return(
+              callUpdater(maker, fieldNode, updaterName, "updateAndGet", maker.Ident(functionName))))),
+          null
+      ));
+    }
+  }
+
+  private static UpdaterKind updaterKind(JCVariableDecl fieldDecl) {
+    if (!(fieldDecl.vartype instanceof JCPrimitiveTypeTree)) {
+      return UpdaterKind.REFERENCE;
+    }
+    TypeKind typeKind = ((JCPrimitiveTypeTree) fieldDecl.vartype).getPrimitiveTypeKind();
+    if (typeKind == TypeKind.INT) {
+      return UpdaterKind.INT;
+    }
+    if (typeKind == TypeKind.LONG) {
+      return UpdaterKind.LONG;
+    }
+    return null;
+  }
+
+  /**
+   * Whether the type uses a type variable of the class, which the static updater can not refer to.
+   */
+  private static boolean usesTypeVariable(JavacNode typeNode, JCExpression type) {
+    if (!(typeNode.get() instanceof JCClassDecl)) {
+      return false;
+    }
+    final Set<Name> typeVariables = new HashSet<Name>();
+    for (JCTypeParameter typeParameter : ((JCClassDecl) typeNode.get()).typarams) {
+      typeVariables.add(typeParameter.name);
+    }
+    final boolean[] found = new boolean[1];
+    new TreeScanner() {
+      @Override
+      public void visitIdent(JCIdent ident) {
+        found[0] |= typeVariables.contains(ident.name);
+      }
+    }.scan(type);
+    return found[0];
+  }
+
+  /**
+   * Creates the updater field:
+   * <pre>
+   * private static final AtomicLongFieldUpdater&lt;Type&gt; $fieldUpdater =
+   *     AtomicLongFieldUpdater.newUpdater(Type.class, "field");
+   * private static final AtomicReferenceFieldUpdater&lt;Type, T&gt; $fieldUpdater =
+   *     (AtomicReferenceFieldUpdater) AtomicReferenceFieldUpdater.newUpdater(Type.class, T.class, "field");
+   * </pre>
+   * The raw cast is only needed for parameterized field types.
+   */
+  private static JCVariableDecl createUpdaterField(
+      JavacTreeMaker maker,
+      JavacNode fieldNode,
+      UpdaterKind kind,
+      Name updaterName,
+      JCTree source
+  ) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+    Name typeName = ((JCClassDecl) fieldNode.up().get()).name;
+    Name className = fieldNode.toName("class");
+
+    List<JCExpression> typeArguments = List.<JCExpression>of(maker.Ident(typeName));
+    List<JCExpression> arguments = List.<JCExpression>of(maker.Literal(fieldDecl.name.toString()));
+    if (kind == UpdaterKind.REFERENCE) {
+      typeArguments = typeArguments.append(cloneType(maker, fieldDecl.vartype, fieldDecl, fieldNode.getContext()));
+      JCExpression fieldClass = cloneType(maker, erasure(maker, fieldDecl.vartype), fieldDecl, fieldNode.getContext());
+      arguments = arguments.prepend(maker.Select(fieldClass, className));
+    }
+    arguments = arguments.prepend(maker.Select(maker.Ident(typeName), className));
+
+    JCExpression newUpdater = maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(genTypeRef(fieldNode, kind.updaterClass), fieldNode.toName("newUpdater")),
+        arguments
+    );
+    JCModifiers mods = maker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL);
+    if (kind == UpdaterKind.REFERENCE && !isErased(fieldDecl.vartype)) {
+      // newUpdater returns a raw updater for a parameterized field type, the unchecked cast is suppressed on the
+      // generated field, where the user can not suppress it
+      newUpdater = maker.TypeCast(genTypeRef(fieldNode, kind.updaterClass), newUpdater);
+      ListBuffer<JCExpression> suppressions = new ListBuffer<JCExpression>();
+      if (!Boolean.FALSE.equals(readConfiguration(fieldNode, ConfigurationKeys.ADD_SUPPRESSWARNINGS_ANNOTATIONS))) {
+        suppressions.add(maker.Literal("all"));
+      }
+      suppressions.add(maker.Literal("unchecked"));
+      addAnnotation(
+          mods,
+          fieldNode,
+          source.pos,
+          source,
+          fieldNode.getContext(),
+          "java.lang.SuppressWarnings",
+          maker.NewArray(null, List.<JCExpression>nil(), suppressions.toList())
+      );
+    }
+
+    return maker.VarDef(
+        mods,
+        updaterName,
+        maker.TypeApply(genTypeRef(fieldNode, kind.updaterClass), typeArguments),
+        newUpdater
+    );
+  }
+
+  private static JCExpression erasure(JavacTreeMaker maker, JCExpression type) {
+    if (type instanceof JCTypeApply) {
+      return erasure(maker, ((JCTypeApply) type).clazz);
+    }
+    if (type instanceof JCArrayTypeTree) {
+      return maker.TypeArray(erasure(maker, ((JCArrayTypeTree) type).elemtype));
+    }
+    return type;
+  }
+
+  private static boolean isErased(JCExpression type) {
+    if (type instanceof JCTypeApply) {
+      return false;
+    }
+    if (type instanceof JCArrayTypeTree) {
+      return isErased(((JCArrayTypeTree) type).elemtype);
+    }
+    return true;
+  }
+
+  private static JCExpression callUpdater(
+      JavacTreeMaker maker,
+      JavacNode fieldNode,
+      Name updaterName,
+      String method,
+      JCExpression... arguments
+  ) {
+    return maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Ident(updaterName), fieldNode.toName(method)),
+        List.from(arguments).prepend(maker.Ident(fieldNode.toName("this")))
+    );
+  }
+
+  private static JCVariableDecl parameter(
+      JavacTreeMaker maker,
+      JavacNode fieldNode,
+      Name name,
+      JCExpression type,
+      JCTree source
+  ) {
+    return maker.at(source.pos).VarDef(
+        maker.Modifiers(Flags.FINAL | Flags.PARAMETER),
+        name,
+        cloneType(maker, type, source, fieldNode.getContext()),
+        null
+    );
+  }
+
+  private static boolean canInject(String methodName, JavacNode fieldNode, JavacNode source, boolean whineIfExists) {
+    if (methodName == null) {
+      source.addWarning("Not generating atomic accessors for this field: It does not fit your @Accessors prefix list.");
+      return false;
+    }
+    switch (methodExists(methodName, fieldNode, false, -1)) {
+      case EXISTS_BY_LOMBOK:
+        return false;
+      case EXISTS_BY_USER:
+        if (whineIfExists) {
+          source.addWarning(String.format("Not generating %s(): A method with that name already exists", methodName));
+        }
+        return false;
+      default:
+      case NOT_EXISTS:
+        return true;
+    }
+  }
+
+  private static void inject(JavacNode fieldNode, JCTree source, JCMethodDecl method) {
+    injectMethod(fieldNode.up(), recursiveSetGeneratedBy(method, source, fieldNode.getContext()));
+  }
+}
@@ -0,0 +1,195 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCThrow;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
+import net.sympower.symbok.Batched;
+import org.kohsuke.MetaInfServices;
+
+import static lombok.javac.Javac.CTC_BOT;
+import static lombok.javac.handlers.JavacHandlerUtil.cloneType;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static net.sympower.symbok.ConfigurationKeys.BATCHED_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.HandleMemoize.boxedType;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.returnsVoid;
+
+/**
+ * Handles the {@link Batched} annotation for javac.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+public class HandleBatched extends JavacAnnotationHandler<Batched> {
+
+  private static final String BATCHER_CLASS_NAME = "net.sympower.symbok.runtime.Batcher";
+
+  private static final String BATCHER_FIELD_PREFIX = "$batcher$";
+
+  @Override
+  public void handle(AnnotationValues<Batched> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, BATCHED_FLAG_USAGE, "@Batched");
+
+    deleteAnnotationIfNeccessary(annotationNode, Batched.class);
+    JavacNode methodNode = annotationNode.up();
+    if (methodNode == null || methodNode.getKind() != Kind.METHOD || !(methodNode.get() instanceof JCMethodDecl)) {
+      annotationNode.addError("@Batched is legal only on methods.");
+      return;
+    }
+
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    if ((method.mods.flags & Flags.ABSTRACT) != 0 || method.body == null) {
+      annotationNode.addError("@Batched is legal only on concrete methods.");
+      return;
+    }
+    if (method.restype == null) {
+      annotationNode.addError("@Batched is legal only on methods.");
+      return;
+    }
+    if (method.params.size() != 1) {
+      annotationNode.addError("@Batched is legal only on methods with a single parameter, the item.");
+      return;
+    }
+    if (!method.typarams.isEmpty()) {
+      annotationNode.addError("@Batched is not supported on generic methods, the batcher field can not be typed.");
+      return;
+    }
+    if (!isPlaceholder(method.body.stats)) {
+      annotationNode.addError(
+          "@Batched replaces the body of " + method.name + ", which has to be empty or a single throw statement.");
+      return;
+    }
+
+    JavacNode typeNode = methodNode.up();
+    if ((((JCClassDecl) typeNode.get()).mods.flags & Flags.INTERFACE) != 0) {
+      annotationNode.addError("@Batched is not supported in interfaces, which can not hold the batcher field.");
+      return;
+    }
+
+    Batched batched = annotation.getInstance();
+    if (batched.maxSize() <= 0) {
+      annotationNode.addError("@Batched requires a positive maxSize.");
+      return;
+    }
+    if (batched.linger() < 0) {
+      annotationNode.addError("@Batched requires a linger time of 0 or more.");
+      return;
+    }
+    String batchMethodName = batched.value().isEmpty() ? method.name + "All" : batched.value();
+    if (methodExists(batchMethodName, typeNode, false, 1) == MemberExistsResult.NOT_EXISTS) {
+      annotationNode.addError(
+          "@Batched requires a batch method " + batchMethodName + " taking a List of the items of " + method.name
+              + ".");
+      return;
+    }
+
+    JavacTreeMaker maker = methodNode.getTreeMaker().at(ast.pos);
+    Context context = methodNode.getContext();
+    boolean isStatic = (method.mods.flags & Flags.STATIC) != 0;
+    boolean returnsVoid = returnsVoid(method);
+    JCVariableDecl itemParam = method.params.head;
+    Name receiverName = isStatic ? ((JCClassDecl) typeNode.get()).name : methodNode.toName("this");
+
+    // items -> this.saveAll(items), or items -> { this.saveAll(items); return null; } for void methods
+    Name itemsName = methodNode.toName("$items");
+    JCExpression batchCall = maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Ident(receiverName), methodNode.toName(batchMethodName)),
+        List.<JCExpression>of(maker.Ident(itemsName))
+    );
+    JCTree lambdaBody = returnsVoid
+        ? maker.Block(0, List.of(maker.Exec(batchCall), maker.Return(maker.Literal(CTC_BOT, null))))
+        : batchCall;
+    JCExpression batchFunction = maker.getUnderlyingTreeMaker().Lambda(
+        List.of(maker.VarDef(maker.Modifiers(Flags.PARAMETER), itemsName, null, null)), lambdaBody);
+
+    // the batch method of a primitive method has to return a result per item that is not null, so it can be unboxed
+    String results = returnsVoid ? "OPTIONAL" : method.restype instanceof JCPrimitiveTypeTree ? "NON_NULL" : "REQUIRED";
+
+    // private final Batcher<Item, Result> $batcher$save =
+    //     new Batcher<Item, Result>(maxSize, lingerNanos, Batcher.Results.REQUIRED, ...);
+    Name batcherFieldName = batcherFieldName(typeNode, method);
+    injectFieldAndMarkGenerated(typeNode, recursiveSetGeneratedBy(maker.VarDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.FINAL | (isStatic ? Flags.STATIC : 0)),
+        batcherFieldName,
+        batcherType(maker, methodNode, itemParam, ast),
+        maker.NewClass(
+            null,
+            List.<JCExpression>nil(),
+            batcherType(maker, methodNode, itemParam, ast),
+            List.<JCExpression>of(
+                maker.Literal(batched.maxSize()),
+                maker.Literal(batched.unit().toNanos(batched.linger())),
+                genTypeRef(methodNode, BATCHER_CLASS_NAME + ".Results." + results),
+                batchFunction
+            ),
+            null
+        )
+    ), ast, context));
+
+    // return this.$batcher$save.call(item);
+    JCExpression call = maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Select(maker.Ident(receiverName), batcherFieldName), methodNode.toName("call")),
+        List.<JCExpression>of(maker.Ident(itemParam.name))
+    );
+    JCStatement statement = returnsVoid ? maker.Exec(call) : maker.Return(call);
+    method.body = recursiveSetGeneratedBy(maker.Block(0, List.of(statement)), ast, context);
+    methodNode.rebuild();
+  }
+
+  /**
+   * Whether a method body only stands in for the generated one: empty, or a single {@code throw} statement.
+   */
+  private static boolean isPlaceholder(List<JCStatement> statements) {
+    return statements.isEmpty() || statements.size() == 1 && statements.head instanceof JCThrow;
+  }
+
+  private static JCExpression batcherType(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCVariableDecl itemParam,
+      JCTree source
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    JCExpression resultType = returnsVoid(method)
+        ? genJavaLangTypeRef(methodNode, "Void")
+        : boxedType(maker, methodNode, method.restype, source);
+    return maker.TypeApply(
+        genTypeRef(methodNode, BATCHER_CLASS_NAME),
+        List.of(boxedType(maker, methodNode, itemParam.vartype, source), resultType)
+    );
+  }
+
+  /**
+   * Returns {@code $batcher$<method>}, with a number appended for overloads.
+   */
+  private static Name batcherFieldName(JavacNode typeNode, JCMethodDecl method) {
+    String baseName = BATCHER_FIELD_PREFIX + method.name;
+    String fieldName = baseName;
+    for (int i = 1; fieldExists(fieldName, typeNode) != MemberExistsResult.NOT_EXISTS; i++) {
+      fieldName = baseName + "$" + i;
+    }
+    return typeNode.toName(fieldName);
+  }
+}
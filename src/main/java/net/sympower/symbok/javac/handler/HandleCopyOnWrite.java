@@ -0,0 +1,305 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCArrayTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCNewArray;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import com.sun.tools.javac.util.Name;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.core.HandlerPriority;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import net.sympower.symbok.CopyOnWrite;
+import net.sympower.symbok.Getter2;
+import org.kohsuke.MetaInfServices;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.hasAnnotation;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.injectType;
+import static lombok.javac.handlers.JavacHandlerUtil.isConstructorCall;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static lombok.javac.handlers.JavacHandlerUtil.setGeneratedBy;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.UNLOCKED_PREFIX;
+
+/**
+ * Handles the {@link CopyOnWrite} annotation for javac.
+ * <p>
+ * Moves the instance fields into the inner class {@code $State} and the constructor bodies into its
+ * {@code $init$<n>} methods. It runs before the {@code @ReadLock} and {@code @WriteLock} handlers, which find the
+ * state class with {@link #findStateType(JavacNode)} and move the method bodies into it.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+@HandlerPriority(-1024)
+public class HandleCopyOnWrite extends JavacAnnotationHandler<CopyOnWrite> {
+
+  static final String STATE_CLASS_NAME = "$State";
+  static final String STATE_FIELD_NAME = "$state";
+
+  private static final String INIT_PREFIX = "$init$";
+
+  @Override
+  public void handle(AnnotationValues<CopyOnWrite> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    deleteAnnotationIfNeccessary(annotationNode, CopyOnWrite.class);
+    JavacNode typeNode = annotationNode.up();
+
+    JCClassDecl typeDecl = null;
+    if (typeNode.get() instanceof JCClassDecl) {
+      typeDecl = (JCClassDecl) typeNode.get();
+    }
+    long modifiers = typeDecl == null ? 0 : typeDecl.mods.flags;
+    if (typeDecl == null || (modifiers & (Flags.INTERFACE | Flags.ANNOTATION | Flags.ENUM)) != 0) {
+      annotationNode.addError("@CopyOnWrite is legal only on classes.");
+      return;
+    }
+    if (findStateType(typeNode) != null) {
+      return;
+    }
+
+    JavacTreeMaker maker = typeNode.getTreeMaker();
+    Context context = typeNode.getContext();
+    Name stateClassName = typeNode.toName(STATE_CLASS_NAME);
+    Name sourceName = typeNode.toName("source");
+
+    // move the instance fields, except the locks, into $State
+    Set<String> lockFieldNames = HandleReadWriteLock.lockFieldNamesOf(typeNode);
+    ListBuffer<JCTree> stateDefs = new ListBuffer<JCTree>();
+    ListBuffer<JCStatement> initializers = new ListBuffer<JCStatement>();
+    ListBuffer<JCStatement> copies = new ListBuffer<JCStatement>();
+    ListBuffer<JavacNode> movedFields = new ListBuffer<JavacNode>();
+    Set<String> stateFieldNames = new HashSet<String>();
+    for (JavacNode child : typeNode.down()) {
+      if (child.getKind() != Kind.FIELD) {
+        continue;
+      }
+      JCVariableDecl field = (JCVariableDecl) child.get();
+      String fieldName = field.name.toString();
+      if ((field.mods.flags & Flags.STATIC) != 0 || fieldName.startsWith("$") || lockFieldNames.contains(fieldName)) {
+        continue;
+      }
+      if (hasAnnotation(Getter2.class, child)) {
+        child.addError("@Getter2 can not be used on fields of a @CopyOnWrite class, use a @ReadLock getter.");
+        return;
+      }
+      movedFields.append(child);
+      stateFieldNames.add(fieldName);
+
+      // the fields of a copy are assigned by the write methods, so they can not stay final
+      field.mods.flags &= ~(Flags.FINAL | Flags.VOLATILE | Flags.PUBLIC | Flags.PROTECTED);
+      field.mods.flags |= Flags.PRIVATE;
+      if (field.init != null) {
+        JCExpression init = field.init;
+        if (init instanceof JCNewArray && ((JCNewArray) init).elemtype == null
+            && field.vartype instanceof JCArrayTypeTree) {
+          // an array initializer can only be assigned as an array creation expression
+          ((JCNewArray) init).elemtype = ((JCArrayTypeTree) field.vartype).elemtype;
+        }
+        initializers.append(maker.Exec(maker.Assign(
+            maker.Select(maker.Ident(typeNode.toName("this")), field.name), init)));
+        field.init = null;
+      }
+      copies.append(maker.Exec(maker.Assign(
+          maker.Select(maker.Ident(typeNode.toName("this")), field.name),
+          maker.Select(maker.Ident(sourceName), field.name)
+      )));
+      stateDefs.append(field);
+    }
+
+    for (JavacNode fieldNode : movedFields) {
+      typeDecl.defs = removeTree(typeDecl.defs, fieldNode.get());
+      typeNode.removeChild(fieldNode);
+    }
+
+    // $State() { <field initializers> }
+    stateDefs.append(recursiveSetGeneratedBy(maker.MethodDef(
+        maker.Modifiers(0),
+        typeNode.toName("<init>"),
+        null,
+        List.nil(),
+        List.nil(),
+        List.nil(),
+        qualifyOuterInstance(typeNode, stateFieldNames, maker.Block(0, initializers.toList())),
+        null
+    ), ast, context));
+    // $State($State source) { <copy all fields> }
+    stateDefs.append(recursiveSetGeneratedBy(maker.MethodDef(
+        maker.Modifiers(0),
+        typeNode.toName("<init>"),
+        null,
+        List.nil(),
+        List.of(maker.at(ast.pos).VarDef(
+            maker.Modifiers(Flags.FINAL | Flags.PARAMETER), sourceName, maker.Ident(stateClassName), null)),
+        List.nil(),
+        maker.Block(0, copies.toList()),
+        null
+    ), ast, context));
+
+    JCClassDecl stateDecl = maker.ClassDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.FINAL),
+        stateClassName,
+        List.nil(),
+        null,
+        List.nil(),
+        stateDefs.toList()
+    );
+    // the moved fields keep their positions for error messages in their initializers
+    JavacNode stateNode = injectType(typeNode, setGeneratedBy(stateDecl, ast, context));
+
+    // private volatile $State $state = new $State();
+    JCVariableDecl stateField = maker.VarDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.VOLATILE),
+        typeNode.toName(STATE_FIELD_NAME),
+        maker.Ident(stateClassName),
+        maker.NewClass(null, List.nil(), maker.Ident(stateClassName), List.nil(), null)
+    );
+    injectFieldAndMarkGenerated(typeNode, recursiveSetGeneratedBy(stateField, ast, context));
+
+    moveConstructorBodies(maker, typeNode, stateNode, stateFieldNames, ast);
+  }
+
+  /**
+   * Moves the statements of each constructor, after a {@code this(...)} or {@code super(...)} call, into a method
+   * {@code $init$<n>} of the state class, and calls it on the initial state. The state is not yet shared, so it is
+   * initialized in place.
+   */
+  private static void moveConstructorBodies(
+      JavacTreeMaker maker,
+      JavacNode typeNode,
+      JavacNode stateNode,
+      Set<String> stateFieldNames,
+      JCTree source
+  ) {
+    int index = 0;
+    for (JavacNode child : typeNode.down()) {
+      if (child.getKind() != Kind.METHOD) {
+        continue;
+      }
+      JCMethodDecl constructor = (JCMethodDecl) child.get();
+      if (!constructor.name.contentEquals("<init>") || constructor.body == null) {
+        continue;
+      }
+      List<JCStatement> statements = constructor.body.stats;
+      ListBuffer<JCStatement> kept = new ListBuffer<JCStatement>();
+      if (!statements.isEmpty() && isConstructorCall(statements.head)) {
+        kept.append(statements.head);
+        statements = statements.tail;
+      }
+      if (statements.isEmpty()) {
+        continue;
+      }
+
+      Name initName = typeNode.toName(INIT_PREFIX + index++);
+      JCMethodDecl init = HandleReadWriteLock.createUnlockedMethod(maker, child, initName, 0L, source);
+      init.body = qualifyOuterInstance(typeNode, stateFieldNames, maker.Block(0, statements));
+      injectMethod(stateNode, init);
+
+      JCExpression state = maker.Select(maker.Ident(typeNode.toName("this")), typeNode.toName(STATE_FIELD_NAME));
+      kept.append(recursiveSetGeneratedBy(
+          maker.Exec(HandleReadWriteLock.callWithParams(maker, child, state, initName)),
+          source,
+          typeNode.getContext()
+      ));
+      constructor.body.stats = kept.toList();
+      child.rebuild();
+    }
+  }
+
+  /**
+   * Returns the {@code $State} class of a {@code @CopyOnWrite} type, or {@code null} for other types.
+   */
+  static JavacNode findStateType(JavacNode typeNode) {
+    if (typeNode == null) {
+      return null;
+    }
+    for (JavacNode child : typeNode.down()) {
+      if (child.getKind() == Kind.TYPE && child.getName().equals(STATE_CLASS_NAME)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Rewrites a body moved from the outer class into the state class so that {@code this} and {@code super} still
+   * refer to the outer instance, as {@code Outer.this} and {@code Outer.super}, except when they select a field or a
+   * moved method of the state.
+   */
+  static JCBlock qualifyOuterInstance(JavacNode typeNode, JavacNode stateNode, JCBlock body) {
+    Set<String> stateFieldNames = new HashSet<String>();
+    for (JavacNode child : stateNode.down()) {
+      if (child.getKind() == Kind.FIELD) {
+        stateFieldNames.add(child.getName());
+      }
+    }
+    return qualifyOuterInstance(typeNode, stateFieldNames, body);
+  }
+
+  private static JCBlock qualifyOuterInstance(
+      JavacNode typeNode,
+      final Set<String> stateFieldNames,
+      JCBlock body
+  ) {
+    final JavacTreeMaker maker = typeNode.getTreeMaker();
+    final Name outerName = ((JCClassDecl) typeNode.get()).name;
+
+    return new TreeTranslator() {
+      @Override
+      public void visitSelect(JCFieldAccess select) {
+        String name = select.name.toString();
+        if (isThis(select.selected)
+            && (stateFieldNames.contains(name) || name.startsWith(UNLOCKED_PREFIX) || name.startsWith(INIT_PREFIX))) {
+          result = select;
+          return;
+        }
+        super.visitSelect(select);
+      }
+
+      @Override
+      public void visitIdent(JCIdent ident) {
+        if (ident.name.contentEquals("this") || ident.name.contentEquals("super")) {
+          result = maker.at(ident.pos).Select(maker.Ident(outerName), ident.name);
+          return;
+        }
+        result = ident;
+      }
+
+      @Override
+      public void visitClassDef(JCClassDecl classDecl) {
+        result = classDecl;
+      }
+
+      private boolean isThis(JCExpression expression) {
+        return expression instanceof JCIdent && ((JCIdent) expression).name.contentEquals("this");
+      }
+    }.translate(body);
+  }
+
+  private static List<JCTree> removeTree(List<JCTree> trees, JCTree removed) {
+    ListBuffer<JCTree> remaining = new ListBuffer<JCTree>();
+    for (JCTree tree : trees) {
+      if (tree != removed) {
+        remaining.append(tree);
+      }
+    }
+    return remaining.toList();
+  }
+}
@@ -0,0 +1,198 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCTypeParameter;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import lombok.AccessLevel;
+import lombok.core.AnnotationValues;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import net.sympower.symbok.ConfigurationKeys;
+import net.sympower.symbok.Counter;
+import org.kohsuke.MetaInfServices;
+
+import javax.lang.model.type.TypeKind;
+
+import static lombok.core.handlers.HandlerUtil.buildAccessorName;
+import static lombok.javac.Javac.CTC_LONG;
+import static lombok.javac.Javac.CTC_VOID;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteImportFromCompilationUnit;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static lombok.javac.handlers.JavacHandlerUtil.toJavacModifier;
+import static net.sympower.symbok.ConfigurationKeys.COUNTER_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
+
+/**
+ * Handles the {@link Counter} annotation for javac.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+public class HandleCounter extends JavacAnnotationHandler<Counter> {
+
+  private static final String COUNTER_CLASS = "net.sympower.symbok.runtime.StripedCounter";
+
+  @Override
+  public void handle(AnnotationValues<Counter> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, COUNTER_FLAG_USAGE, "@Counter");
+
+    deleteAnnotationIfNeccessary(annotationNode, Counter.class);
+    deleteImportFromCompilationUnit(annotationNode, "lombok.AccessLevel");
+    Counter annotationInstance = annotation.getInstance();
+
+    int stripes = annotationInstance.stripes();
+    if (stripes == 0) {
+      Integer configuredStripes = readConfiguration(annotationNode, ConfigurationKeys.COUNTER_STRIPES);
+      stripes = configuredStripes == null ? 0 : configuredStripes;
+    }
+    if (stripes < 0 || stripes > 0 && Integer.bitCount(stripes) != 1) {
+      annotationNode.addError("@Counter requires the number of stripes to be a power of two.");
+      return;
+    }
+
+    for (JavacNode fieldNode : annotationNode.upFromAnnotationToFields()) {
+      createCounter(annotationInstance.value(), stripes, annotationInstance.lazy(), fieldNode, annotationNode);
+    }
+  }
+
+  private void createCounter(AccessLevel level, int stripes, boolean lazy, JavacNode fieldNode, JavacNode source) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+
+    if (!(fieldDecl.vartype instanceof JCPrimitiveTypeTree)
+        || ((JCPrimitiveTypeTree) fieldDecl.vartype).getPrimitiveTypeKind() != TypeKind.LONG) {
+      source.addError("@Counter is only supported for long fields.");
+      return;
+    }
+    if ((fieldDecl.mods.flags & Flags.FINAL) != 0) {
+      source.addError("@Counter requires the field to be non-final.");
+      return;
+    }
+    if (fieldDecl.init != null) {
+      source.addError("@Counter fields start at zero and can not have an initializer.");
+      return;
+    }
+
+    JavacTreeMaker maker = fieldNode.getTreeMaker();
+    Context context = fieldNode.getContext();
+    JCTree ast = source.get();
+
+    // long field; -> private final StripedCounter field = new StripedCounter(stripes, lazy);
+    fieldDecl.mods.flags = (fieldDecl.mods.flags & ~Flags.VOLATILE) | Flags.FINAL;
+    fieldDecl.vartype = recursiveSetGeneratedBy(genTypeRef(fieldNode, COUNTER_CLASS), ast, context);
+    fieldDecl.init = recursiveSetGeneratedBy(maker.NewClass(
+        null,
+        List.<JCExpression>nil(),
+        genTypeRef(fieldNode, COUNTER_CLASS),
+        List.<JCExpression>of(maker.Literal(stripes), maker.Literal(lazy)),
+        null
+    ), ast, context);
+
+    if (level == AccessLevel.NONE) {
+      return;
+    }
+
+    boolean isStatic = (fieldDecl.mods.flags & Flags.STATIC) != 0;
+    long access = toJavacModifier(level) | (fieldDecl.mods.flags & Flags.STATIC);
+    String fieldName = fieldDecl.name.toString();
+    Name receiverName = isStatic ? ((JCClassDecl) fieldNode.up().get()).name : fieldNode.toName("this");
+    Name deltaName = fieldNode.toName("delta");
+
+    // void incrementField() { this.field.increment(); }
+    String incrementName = buildAccessorName("increment", fieldName);
+    if (canInject(incrementName, fieldNode, source)) {
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(incrementName),
+          maker.TypeIdent(CTC_VOID),
+          List.<JCTypeParameter>nil(),
+          List.<JCVariableDecl>nil(),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(
+              maker.Exec(callCounter(maker, fieldNode, receiverName, "increment")))),
+          null
+      ));
+    }
+
+    // void addField(long delta) { this.field.add(delta); }
+    String addName = buildAccessorName("add", fieldName);
+    if (canInject(addName, fieldNode, source)) {
+      inject(fieldNode, ast, maker.MethodDef(
+          maker.Modifiers(access),
+          fieldNode.toName(addName),
+          maker.TypeIdent(CTC_VOID),
+          List.<JCTypeParameter>nil(),
+          List.of(maker.at(ast.pos).VarDef(
+              maker.Modifiers(Flags.FINAL | Flags.PARAMETER), deltaName, maker.TypeIdent(CTC_LONG), null)),
+          List.<JCExpression>nil(),
+          maker.Block(0, List.<JCStatement>of(
+              maker.Exec(callCounter(maker, fieldNode, receiverName, "add", maker.Ident(deltaName))))),
+          null
+      ));
+    }
+
+    // long sumField() { return this.field.sum(); }
+    // long sumThenResetField() { return this.field.sumThenReset(); }
+    for (String method : new String[] { "sum", "sumThenReset" }) {
+      String methodName = buildAccessorName(method, fieldName);
+      if (canInject(methodName, fieldNode, source)) {
+        inject(fieldNode, ast, maker.MethodDef(
+            maker.Modifiers(access),
+            fieldNode.toName(methodName),
+            maker.TypeIdent(CTC_LONG),
+            List.<JCTypeParameter>nil(),
+            List.<JCVariableDecl>nil(),
+            List.<JCExpression>nil(),
+            maker.Block(0, List.<JCStatement>of(
+                maker.Return(callCounter(maker, fieldNode, receiverName, method)))),
+            null
+        ));
+      }
+    }
+  }
+
+  private static JCExpression callCounter(
+      JavacTreeMaker maker,
+      JavacNode fieldNode,
+      Name receiverName,
+      String method,
+      JCExpression... arguments
+  ) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+    return maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Select(maker.Ident(receiverName), fieldDecl.name), fieldNode.toName(method)),
+        List.from(arguments)
+    );
+  }
+
+  private static boolean canInject(String methodName, JavacNode fieldNode, JavacNode source) {
+    switch (methodExists(methodName, fieldNode, false, -1)) {
+      case EXISTS_BY_LOMBOK:
+        return false;
+      case EXISTS_BY_USER:
+        source.addWarning(String.format("Not generating %s(): A method with that name already exists", methodName));
+        return false;
+      default:
+      case NOT_EXISTS:
+        return true;
+    }
+  }
+
+  private static void inject(JavacNode fieldNode, JCTree source, JCMethodDecl method) {
+    injectMethod(fieldNode.up(), recursiveSetGeneratedBy(method, source, fieldNode.getContext()));
+  }
+}
@@ -24,36 +24,27 @@ import lombok.experimental.Delegate;
 import lombok.javac.JavacAnnotationHandler;
 import lombok.javac.JavacNode;
 import lombok.javac.JavacTreeMaker;
-import lombok.javac.JavacTreeMaker.TypeTag;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
 import net.sympower.symbok.Getter2;
 import org.kohsuke.MetaInfServices;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
-import static lombok.core.handlers.HandlerUtil.handleFlagUsage;
 import static lombok.javac.Javac.CTC_BOOLEAN;
-import static lombok.javac.Javac.CTC_BYTE;
-import static lombok.javac.Javac.CTC_CHAR;
-import static lombok.javac.Javac.CTC_DOUBLE;
-import static lombok.javac.Javac.CTC_FLOAT;
 import static lombok.javac.Javac.CTC_INT;
-import static lombok.javac.Javac.CTC_LONG;
-import static lombok.javac.Javac.CTC_SHORT;
+import static lombok.javac.Javac.CTC_NOT;
 import static lombok.javac.handlers.JavacHandlerUtil.CopyJavadoc;
 import static lombok.javac.handlers.JavacHandlerUtil.addAnnotation;
 import static lombok.javac.handlers.JavacHandlerUtil.cloneType;
 import static lombok.javac.handlers.JavacHandlerUtil.copyJavadoc;
 import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
 import static lombok.javac.handlers.JavacHandlerUtil.deleteImportFromCompilationUnit;
+import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
 import static lombok.javac.handlers.JavacHandlerUtil.findCopyableAnnotations;
 import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
-import static lombok.javac.handlers.JavacHandlerUtil.genTypeRef;
-import static lombok.javac.handlers.JavacHandlerUtil.getCheckerFrameworkVersion;
 import static lombok.javac.handlers.JavacHandlerUtil.getMirrorForFieldType;
 import static lombok.javac.handlers.JavacHandlerUtil.hasAnnotation;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
 import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
 import static lombok.javac.handlers.JavacHandlerUtil.isFieldDeprecated;
 import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
@@ -63,6 +54,10 @@ import static lombok.javac.handlers.JavacHandlerUtil.toGetterName;
 import static lombok.javac.handlers.JavacHandlerUtil.toJavacModifier;
 import static lombok.javac.handlers.JavacHandlerUtil.typeMatches;
 import static net.sympower.symbok.ConfigurationKeys.GETTER2_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.getCheckerFrameworkVersion;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
 
 /**
  * Handles the {@code lombok.Getter} annotation for javac.
@@ -70,11 +65,14 @@ import static net.sympower.symbok.ConfigurationKeys.GETTER2_FLAG_USAGE;
 @MetaInfServices(JavacAnnotationHandler.class)
 public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
 
+  private static final String LAZY_LOCK_FIELD_NAME = "$lazyLock";
+
   public void generateGetterForType(
       JavacNode typeNode,
       JavacNode errorNode,
       AccessLevel level,
-      boolean checkForTypeLevelGetter
+      boolean checkForTypeLevelGetter,
+      String lock
   ) {
     if (checkForTypeLevelGetter) {
       if (hasAnnotation(Getter2.class, typeNode)) {
@@ -96,8 +94,8 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
     }
 
     for (JavacNode field : typeNode.down()) {
-      if (fieldQualifiesForGetterGeneration(field)) {
-        generateGetterForField(field, errorNode.get(), level);
+      if (fieldQualifiesForGetterGeneration(field) && !field.getName().equals(lock)) {
+        generateGetterForField(field, errorNode.get(), level, lock);
       }
     }
   }
@@ -130,13 +128,14 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
    *
    * @param fieldNode The node representing the field you want a getter for.
    * @param pos       The node responsible for generating the getter (the {@code @Data} or {@code @Getter} annotation).
+   * @param lock      The name of the lock guarding the field, or the empty string.
    */
-  public void generateGetterForField(JavacNode fieldNode, DiagnosticPosition pos, AccessLevel level) {
+  public void generateGetterForField(JavacNode fieldNode, DiagnosticPosition pos, AccessLevel level, String lock) {
     if (hasAnnotation(Getter2.class, fieldNode)) {
       //The annotation will make it happen, so we can skip it.
       return;
     }
-    createGetterForField(level, fieldNode, fieldNode, false);
+    createGetterForField(level, fieldNode, fieldNode, false, false, lock);
   }
 
   @Override
@@ -149,8 +148,13 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
     JavacNode node = annotationNode.up();
     Getter2 annotationInstance = annotation.getInstance();
     AccessLevel level = annotationInstance.value();
+    boolean lazy = annotationInstance.lazy();
+    String lock = annotationInstance.lock();
 
     if (level == AccessLevel.NONE) {
+      if (lazy) {
+        annotationNode.addWarning("'lazy' does not work with AccessLevel.NONE.");
+      }
       return;
     }
 
@@ -158,12 +162,21 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
       return;
     }
 
+    if (lazy && !lock.isEmpty()) {
+      annotationNode.addError("'lazy' and 'lock' cannot be used together.");
+      return;
+    }
+
     switch (node.getKind()) {
       case FIELD:
-        createGetterForFields(level, fields, annotationNode, true);
+        createGetterForFields(level, fields, annotationNode, true, lazy, lock);
         break;
       case TYPE:
-        generateGetterForType(node, annotationNode, level, false);
+        if (lazy) {
+          annotationNode.addError("'lazy' is not supported for @Getter2 on a type.");
+          return;
+        }
+        generateGetterForType(node, annotationNode, level, false, lock);
         break;
     }
   }
@@ -172,16 +185,18 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
       AccessLevel level,
       Collection<JavacNode> fieldNodes,
       JavacNode errorNode,
-      boolean whineIfExists
+      boolean whineIfExists,
+      boolean lazy,
+      String lock
   ) {
     for (JavacNode fieldNode : fieldNodes) {
-      createGetterForField(level, fieldNode, errorNode, whineIfExists);
+      createGetterForField(level, fieldNode, errorNode, whineIfExists, lazy, lock);
     }
   }
 
   public void createGetterForField(
       AccessLevel level,
-      JavacNode fieldNode, JavacNode source, boolean whineIfExists
+      JavacNode fieldNode, JavacNode source, boolean whineIfExists, boolean lazy, String lock
   ) {
 
     if (fieldNode.getKind() != Kind.FIELD) {
@@ -190,6 +205,27 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
     }
 
     JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+
+    if (lazy) {
+      if ((fieldDecl.mods.flags & Flags.PRIVATE) == 0 || (fieldDecl.mods.flags & Flags.FINAL) == 0) {
+        source.addError("'lazy' requires the field to be private and final.");
+        return;
+      }
+      if ((fieldDecl.mods.flags & Flags.STATIC) != 0) {
+        source.addError("'lazy' is not supported for static fields.");
+        return;
+      }
+      if (fieldDecl.init == null) {
+        source.addError("'lazy' requires field initialization.");
+        return;
+      }
+    }
+
+    if (!lock.isEmpty() && (fieldDecl.mods.flags & Flags.STATIC) != 0) {
+      source.addError("'lock' is not supported for static fields.");
+      return;
+    }
+
     String methodName = toGetterName(fieldNode);
 
     if (methodName == null) {
@@ -223,25 +259,42 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
 
     long access = toJavacModifier(level) | (fieldDecl.mods.flags & Flags.STATIC);
 
-    injectMethod(
-        fieldNode.up(),
-        createGetter(access, fieldNode, fieldNode.getTreeMaker(), source.get()),
-        List.<Type>nil(),
-        getMirrorForFieldType(fieldNode)
-    );
+    JCMethodDecl getter = createGetter(access, fieldNode, fieldNode.getTreeMaker(), source.get(), lazy, lock, source);
+    if (getter == null) {
+      return;
+    }
+    injectMethod(fieldNode.up(), getter, List.<Type>nil(), getMirrorForFieldType(fieldNode));
   }
 
-  public JCMethodDecl createGetter(long access, JavacNode field, JavacTreeMaker treeMaker, JCTree source) {
+  public JCMethodDecl createGetter(
+      long access,
+      JavacNode field,
+      JavacTreeMaker treeMaker,
+      JCTree source,
+      boolean lazy,
+      String lock,
+      JavacNode errorNode
+  ) {
     JCVariableDecl fieldNode = (JCVariableDecl) field.get();
 
-    // Remember the type; lazy will change it
     JCExpression methodType = cloneType(treeMaker, copyType(treeMaker, fieldNode), source, field.getContext());
-    // Generate the methodName; lazy will change the field type
     Name methodName = field.toName(toGetterName(field));
 
     List<JCStatement> statements;
     boolean addSuppressWarningsUnchecked = false;
-    statements = createSimpleGetterBody(treeMaker, field);
+    if (lazy) {
+      statements = createLazyGetterBody(treeMaker, field, source);
+    }
+    else if (!lock.isEmpty()) {
+      statements = HandleReadWriteLock.createGuardedGetterBody(
+          treeMaker, field, methodName.toString(), lock, errorNode, source);
+      if (statements == null) {
+        return null;
+      }
+    }
+    else {
+      statements = createSimpleGetterBody(treeMaker, field);
+    }
 
     JCBlock methodBody = treeMaker.Block(0, statements);
 
@@ -291,7 +344,7 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
 
     if (addSuppressWarningsUnchecked) {
       ListBuffer<JCExpression> suppressions = new ListBuffer<JCExpression>();
-      if (!Boolean.FALSE.equals(field.getAst().readConfiguration(ConfigurationKeys.ADD_SUPPRESSWARNINGS_ANNOTATIONS))) {
+      if (!Boolean.FALSE.equals(readConfiguration(field, ConfigurationKeys.ADD_SUPPRESSWARNINGS_ANNOTATIONS))) {
         suppressions.add(treeMaker.Literal("all"));
       }
       suppressions.add(treeMaker.Literal("unchecked"));
@@ -340,35 +393,85 @@ public class HandleGetter2 extends JavacAnnotationHandler<Getter2> {
     ));
   }
 
-  private static final List<JCExpression> NIL_EXPRESSION = List.nil();
-
-  public static final java.util.Map<TypeTag, String> TYPE_MAP;
-
-  static {
-    Map<TypeTag, String> m = new HashMap<>();
-    m.put(CTC_INT, "Integer");
-    m.put(CTC_DOUBLE, "Double");
-    m.put(CTC_FLOAT, "Float");
-    m.put(CTC_SHORT, "Short");
-    m.put(CTC_BYTE, "Byte");
-    m.put(CTC_LONG, "Long");
-    m.put(CTC_BOOLEAN, "Boolean");
-    m.put(CTC_CHAR, "Character");
-    TYPE_MAP = Collections.unmodifiableMap(m);
-  }
+  /**
+   * Moves the initializer of the field into the getter, computed once on first access using double-checked
+   * initialization on a {@code volatile} flag. The field keeps its type, so primitives are neither boxed nor held in
+   * an extra object. The initialization locks a private object shared by the lazy getters of the class, rather than
+   * {@code this}, whose monitor any code holding the instance can lock:
+   * <pre>
+   * private final Object $lazyLock = new Object[0];
+   * private double cached;
+   * private volatile boolean $cachedInitialized;
+   *
+   * public double getCached() {
+   *   if (!this.$cachedInitialized) {
+   *     synchronized (this.$lazyLock) {
+   *       if (!this.$cachedInitialized) {
+   *         this.cached = expensive();
+   *         this.$cachedInitialized = true;
+   *       }
+   *     }
+   *   }
+   *   return this.cached;
+   * }
+   * </pre>
+   */
+  public List<JCStatement> createLazyGetterBody(JavacTreeMaker treeMaker, JavacNode field, JCTree source) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) field.get();
+    Name initializedName = field.toName("$" + fieldDecl.name + "Initialized");
+
+    JCVariableDecl initializedDecl = treeMaker.VarDef(
+        treeMaker.Modifiers(Flags.PRIVATE | Flags.VOLATILE),
+        initializedName,
+        treeMaker.TypeIdent(CTC_BOOLEAN),
+        null
+    );
+    injectFieldAndMarkGenerated(field.up(), recursiveSetGeneratedBy(initializedDecl, source, field.getContext()));
+
+    Name lockName = field.toName(LAZY_LOCK_FIELD_NAME);
+    if (fieldExists(LAZY_LOCK_FIELD_NAME, field) == MemberExistsResult.NOT_EXISTS) {
+      JCVariableDecl lockDecl = treeMaker.VarDef(
+          treeMaker.Modifiers(Flags.PRIVATE | Flags.FINAL),
+          lockName,
+          genJavaLangTypeRef(field, "Object"),
+          treeMaker.NewArray(
+              genJavaLangTypeRef(field, "Object"),
+              List.<JCExpression>of(treeMaker.Literal(CTC_INT, 0)),
+              null
+          )
+      );
+      injectFieldAndMarkGenerated(field.up(), recursiveSetGeneratedBy(lockDecl, source, field.getContext()));
+    }
 
-  public JCTree.JCMethodInvocation callGet(JavacNode source, JCExpression receiver) {
-    JavacTreeMaker maker = source.getTreeMaker();
-    return maker.Apply(NIL_EXPRESSION, maker.Select(receiver, source.toName("get")), NIL_EXPRESSION);
+    JCExpression initializer = fieldDecl.init;
+    fieldDecl.init = null;
+    fieldDecl.mods.flags &= ~Flags.FINAL;
+    field.rebuild();
+
+    JCExpression notInitialized = treeMaker.Unary(CTC_NOT, selectThis(treeMaker, field, initializedName));
+    JCStatement initialize = treeMaker.If(
+        notInitialized,
+        treeMaker.Block(0, List.of(
+            treeMaker.Exec(treeMaker.Assign(selectThis(treeMaker, field, fieldDecl.name), initializer)),
+            treeMaker.Exec(treeMaker.Assign(selectThis(treeMaker, field, initializedName), treeMaker.Literal(true)))
+        )),
+        null
+    );
+    JCStatement synchronizedInitialize = treeMaker.If(
+        treeMaker.Unary(CTC_NOT, selectThis(treeMaker, field, initializedName)),
+        treeMaker.Block(0, List.<JCStatement>of(
+            treeMaker.Synchronized(selectThis(treeMaker, field, lockName), treeMaker.Block(0, List.of(initialize)))
+        )),
+        null
+    );
+    return List.of(
+        synchronizedInitialize,
+        treeMaker.Return(selectThis(treeMaker, field, fieldDecl.name))
+    );
   }
 
-  public JCStatement callSet(JavacNode source, JCExpression receiver, JCExpression value) {
-    JavacTreeMaker maker = source.getTreeMaker();
-    return maker.Exec(maker.Apply(
-        NIL_EXPRESSION,
-        maker.Select(receiver, source.toName("set")),
-        List.<JCExpression>of(value)
-    ));
+  private static JCExpression selectThis(JavacTreeMaker treeMaker, JavacNode field, Name name) {
+    return treeMaker.Select(treeMaker.Ident(field.toName("this")), name);
   }
 
   public JCExpression copyType(JavacTreeMaker treeMaker, JCVariableDecl fieldNode) {
@@ -0,0 +1,279 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import com.sun.tools.javac.util.Name;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.core.HandlerPriority;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
+import net.sympower.symbok.ConfigurationKeys;
+import net.sympower.symbok.Memoize;
+import org.kohsuke.MetaInfServices;
+
+import static lombok.javac.Javac.CTC_BOT;
+import static lombok.javac.Javac.CTC_NOT_EQUAL;
+import static lombok.javac.handlers.JavacHandlerUtil.cloneType;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static net.sympower.symbok.ConfigurationKeys.MEMOIZE_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.callWithParams;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.createUnlockedMethod;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.returnsVoid;
+
+/**
+ * Handles the {@link Memoize} annotation for javac.
+ * <p>
+ * Runs after the {@code @ReadLock} and {@code @WriteLock} handlers, so the cache is looked up before the lock is
+ * taken.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+@HandlerPriority(32)
+public class HandleMemoize extends JavacAnnotationHandler<Memoize> {
+
+  private static final String MEMO_CACHE_CLASS_NAME = "net.sympower.symbok.runtime.MemoCache";
+  private static final String EVICTION_POLICY_CLASS_NAME = "net.sympower.symbok.EvictionPolicy";
+
+  private static final String CACHE_FIELD_PREFIX = "$memo$";
+  private static final String MEMOIZED_PREFIX = "$memoized$";
+
+  private static final int DEFAULT_MAX_SIZE = 1024;
+
+  @Override
+  public void handle(AnnotationValues<Memoize> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, MEMOIZE_FLAG_USAGE, "@Memoize");
+
+    deleteAnnotationIfNeccessary(annotationNode, Memoize.class);
+    JavacNode methodNode = annotationNode.up();
+    if (methodNode == null || methodNode.getKind() != Kind.METHOD || !(methodNode.get() instanceof JCMethodDecl)) {
+      annotationNode.addError("@Memoize is legal only on methods.");
+      return;
+    }
+
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    if ((method.mods.flags & Flags.ABSTRACT) != 0) {
+      annotationNode.addError("@Memoize is legal only on concrete methods.");
+      return;
+    }
+    if (method.restype == null || returnsVoid(method)) {
+      annotationNode.addError("@Memoize is legal only on methods that return a value.");
+      return;
+    }
+    if (!method.typarams.isEmpty()) {
+      annotationNode.addError("@Memoize is not supported on generic methods, the cache field can not be typed.");
+      return;
+    }
+
+    JavacNode typeNode = methodNode.up();
+    if ((((JCClassDecl) typeNode.get()).mods.flags & Flags.INTERFACE) != 0) {
+      annotationNode.addError("@Memoize is not supported in interfaces, which can not hold the cache field.");
+      return;
+    }
+
+    Memoize memoize = annotation.getInstance();
+    int maxSize = memoize.maxSize();
+    if (maxSize == 0) {
+      Integer configuredMaxSize = readConfiguration(annotationNode, ConfigurationKeys.MEMOIZE_MAX_SIZE);
+      maxSize = configuredMaxSize == null ? DEFAULT_MAX_SIZE : configuredMaxSize;
+    }
+    if (maxSize <= 0) {
+      annotationNode.addError("@Memoize requires a positive maxSize.");
+      return;
+    }
+    if (memoize.ttl() == 0) {
+      annotationNode.addError("@Memoize(ttl = 0) would never return a cached result.");
+      return;
+    }
+    long ttlNanos = memoize.ttl() < 0 ? 0L : Math.max(memoize.unit().toNanos(memoize.ttl()), 1L);
+
+    if (method.body == null) {
+      return;
+    }
+
+    JavacTreeMaker maker = methodNode.getTreeMaker().at(ast.pos);
+    Context context = methodNode.getContext();
+    boolean isStatic = (method.mods.flags & Flags.STATIC) != 0;
+    Name typeName = ((JCClassDecl) typeNode.get()).name;
+
+    // private final MemoCache<T> $memo$method = new MemoCache<T>(maxSize, EvictionPolicy.LRU, ttlNanos);
+    Name cacheFieldName = cacheFieldName(typeNode, method);
+    injectFieldAndMarkGenerated(typeNode, recursiveSetGeneratedBy(maker.VarDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.FINAL | (isStatic ? Flags.STATIC : 0)),
+        cacheFieldName,
+        cacheType(maker, typeNode, method, ast),
+        maker.NewClass(
+            null,
+            List.<JCExpression>nil(),
+            cacheType(maker, typeNode, method, ast),
+            List.<JCExpression>of(
+                maker.Literal(maxSize),
+                genTypeRef(typeNode, EVICTION_POLICY_CLASS_NAME + "." + memoize.eviction().name()),
+                maker.Literal(ttlNanos)
+            ),
+            null
+        )
+    ), ast, context));
+
+    // the original body moves into $memoized$<method>, called on a miss
+    Name memoizedName = methodNode.toName(MEMOIZED_PREFIX + method.name);
+    injectMethod(typeNode, createUnlockedMethod(maker, methodNode, memoizedName, Flags.PRIVATE, ast));
+
+    Name receiverName = isStatic ? typeName : methodNode.toName("this");
+    Name keyName = methodNode.toName("$key");
+    Name entryName = methodNode.toName("$entry");
+    Name valueName = methodNode.toName("$value");
+
+    ListBuffer<JCStatement> statements = new ListBuffer<JCStatement>();
+    JCExpression key = createKey(maker, methodNode);
+    // no parameters or a single primitive one are looked up as a long
+    String keySuffix = method.params.isEmpty() || method.params.size() == 1
+        && method.params.head.vartype instanceof JCPrimitiveTypeTree ? "Long" : "";
+    if (method.params.size() > 1) {
+      // final Object $key = MemoCache.key(a, b);
+      statements.append(maker.VarDef(
+          maker.Modifiers(Flags.FINAL), keyName, genJavaLangTypeRef(methodNode, "Object"), key));
+    }
+
+    // final MemoCache.Entry<T> $entry = this.$memo$method.get($key);
+    // if ($entry != null) return $entry.getValue();
+    statements.append(maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        entryName,
+        maker.TypeApply(
+            genTypeRef(methodNode, MEMO_CACHE_CLASS_NAME + ".Entry"),
+            List.of(boxedType(maker, methodNode, method.restype, ast))
+        ),
+        maker.Apply(
+            List.<JCExpression>nil(),
+            maker.Select(maker.Select(maker.Ident(receiverName), cacheFieldName), methodNode.toName("get" + keySuffix)),
+            List.of(method.params.size() > 1 ? maker.Ident(keyName) : key)
+        )
+    ));
+    statements.append(maker.If(
+        maker.Binary(CTC_NOT_EQUAL, maker.Ident(entryName), maker.Literal(CTC_BOT, null)),
+        maker.Return(maker.Apply(
+            List.<JCExpression>nil(), maker.Select(maker.Ident(entryName), methodNode.toName("getValue")),
+            List.<JCExpression>nil()
+        )),
+        null
+    ));
+
+    // final T $value = this.$memoized$method(a, b);
+    // this.$memo$method.put($key, $value);
+    // return $value;
+    statements.append(maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        valueName,
+        cloneType(maker, method.restype, ast, context),
+        callWithParams(maker, methodNode, maker.Ident(receiverName), memoizedName)
+    ));
+    statements.append(maker.Exec(maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Select(maker.Ident(receiverName), cacheFieldName), methodNode.toName("put" + keySuffix)),
+        List.of(method.params.size() > 1 ? maker.Ident(keyName) : createKey(maker, methodNode), maker.Ident(valueName))
+    )));
+    statements.append(maker.Return(maker.Ident(valueName)));
+
+    method.body = recursiveSetGeneratedBy(maker.Block(0, statements.toList()), ast, context);
+    methodNode.rebuild();
+  }
+
+  /**
+   * Returns the key of a call: {@code 0L} without parameters, a {@code long} holding a single primitive parameter, a
+   * single reference parameter itself, or {@code MemoCache.key(params)} for several parameters.
+   */
+  private static JCExpression createKey(JavacTreeMaker maker, JavacNode methodNode) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    if (method.params.isEmpty()) {
+      return maker.Literal(0L);
+    }
+    if (method.params.size() > 1) {
+      ListBuffer<JCExpression> args = new ListBuffer<JCExpression>();
+      for (JCVariableDecl param : method.params) {
+        args.append(maker.Ident(param.name));
+      }
+      return maker.Apply(List.<JCExpression>nil(), genTypeRef(methodNode, MEMO_CACHE_CLASS_NAME + ".key"),
+                         args.toList());
+    }
+    JCVariableDecl param = method.params.head;
+    if (!(param.vartype instanceof JCPrimitiveTypeTree)) {
+      return maker.Ident(param.name);
+    }
+    switch (((JCPrimitiveTypeTree) param.vartype).getPrimitiveTypeKind()) {
+      case BOOLEAN:
+        return maker.Conditional(maker.Ident(param.name), maker.Literal(1L), maker.Literal(0L));
+      case FLOAT:
+        return maker.Apply(List.<JCExpression>nil(), genJavaLangTypeRef(methodNode, "Float", "floatToIntBits"),
+                           List.<JCExpression>of(maker.Ident(param.name)));
+      case DOUBLE:
+        return maker.Apply(List.<JCExpression>nil(), genJavaLangTypeRef(methodNode, "Double", "doubleToLongBits"),
+                           List.<JCExpression>of(maker.Ident(param.name)));
+      default:
+        // byte, short, char and int widen to long
+        return maker.Ident(param.name);
+    }
+  }
+
+  private static JCExpression cacheType(JavacTreeMaker maker, JavacNode typeNode, JCMethodDecl method, JCTree source) {
+    return maker.TypeApply(
+        genTypeRef(typeNode, MEMO_CACHE_CLASS_NAME),
+        List.of(boxedType(maker, typeNode, method.restype, source))
+    );
+  }
+
+  static JCExpression boxedType(JavacTreeMaker maker, JavacNode node, JCExpression type, JCTree source) {
+    if (!(type instanceof JCPrimitiveTypeTree)) {
+      return cloneType(maker, type, source, node.getContext());
+    }
+    switch (((JCPrimitiveTypeTree) type).getPrimitiveTypeKind()) {
+      case BOOLEAN:
+        return genJavaLangTypeRef(node, "Boolean");
+      case BYTE:
+        return genJavaLangTypeRef(node, "Byte");
+      case SHORT:
+        return genJavaLangTypeRef(node, "Short");
+      case CHAR:
+        return genJavaLangTypeRef(node, "Character");
+      case INT:
+        return genJavaLangTypeRef(node, "Integer");
+      case LONG:
+        return genJavaLangTypeRef(node, "Long");
+      case FLOAT:
+        return genJavaLangTypeRef(node, "Float");
+      default:
+        return genJavaLangTypeRef(node, "Double");
+    }
+  }
+
+  /**
+   * Returns {@code $memo$<method>}, with a number appended for overloads.
+   */
+  private static Name cacheFieldName(JavacNode typeNode, JCMethodDecl method) {
+    String baseName = CACHE_FIELD_PREFIX + method.name;
+    String fieldName = baseName;
+    for (int i = 1; fieldExists(fieldName, typeNode) != MemberExistsResult.NOT_EXISTS; i++) {
+      fieldName = baseName + "$" + i;
+    }
+    return typeNode.toName(fieldName);
+  }
+}
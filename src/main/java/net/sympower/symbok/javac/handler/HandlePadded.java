@@ -0,0 +1,131 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.ListBuffer;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.core.HandlerPriority;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import net.sympower.symbok.Padded;
+import org.kohsuke.MetaInfServices;
+
+import static lombok.javac.Javac.CTC_INT;
+import static lombok.javac.Javac.CTC_LONG;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static net.sympower.symbok.ConfigurationKeys.PADDED_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+
+/**
+ * Handles the {@link Padded} annotation for javac.
+ * <p>
+ * Runs after the handlers that change the type of a field, such as {@code @Counter}, so the padding matches the final
+ * type.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+@HandlerPriority(1024)
+public class HandlePadded extends JavacAnnotationHandler<Padded> {
+
+  private static final int CACHE_LINE_SIZE = 64;
+
+  private static final String PADDING_PREFIX = "$pad$";
+
+  @Override
+  public void handle(AnnotationValues<Padded> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, PADDED_FLAG_USAGE, "@Padded");
+
+    deleteAnnotationIfNeccessary(annotationNode, Padded.class);
+    for (JavacNode fieldNode : annotationNode.upFromAnnotationToFields()) {
+      JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+      if ((fieldDecl.mods.flags & Flags.STATIC) != 0) {
+        annotationNode.addError("@Padded is not supported for static fields.");
+        continue;
+      }
+      if (paddingSize(fieldDecl) == 0) {
+        annotationNode.addError("@Padded is only supported for long, double, int, float and reference fields.");
+        continue;
+      }
+      padField(fieldNode, ast);
+    }
+  }
+
+  /**
+   * Declares padding fields of the size of the field right before and after it, filling a cache line on each side.
+   */
+  static void padField(JavacNode fieldNode, JCTree source) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+    JavacNode typeNode = fieldNode.up();
+    JCClassDecl classDecl = (JCClassDecl) typeNode.get();
+    JavacTreeMaker maker = typeNode.getTreeMaker();
+    Context context = typeNode.getContext();
+
+    int size = paddingSize(fieldDecl);
+    // references are counted as 4 bytes, the size of a compressed pointer, so uncompressed ones pad twice as far
+    int fieldsPerSide = CACHE_LINE_SIZE / size - 1;
+    ListBuffer<JCTree> before = new ListBuffer<JCTree>();
+    ListBuffer<JCTree> after = new ListBuffer<JCTree>();
+    for (int i = 0; i < 2 * fieldsPerSide; i++) {
+      JCExpression paddingType = size == 8
+          ? maker.TypeIdent(CTC_LONG)
+          : isPrimitive(fieldDecl)
+              ? maker.TypeIdent(CTC_INT)
+              : genJavaLangTypeRef(typeNode, "Object");
+      JCVariableDecl padding = recursiveSetGeneratedBy(maker.VarDef(
+          maker.Modifiers(Flags.PRIVATE),
+          typeNode.toName(PADDING_PREFIX + fieldDecl.name + "$" + i),
+          paddingType,
+          null
+      ), source, context);
+      (i < fieldsPerSide ? before : after).append(padding);
+    }
+
+    ListBuffer<JCTree> defs = new ListBuffer<JCTree>();
+    for (JCTree def : classDecl.defs) {
+      if (def == fieldDecl) {
+        defs.appendList(before.toList());
+        defs.append(def);
+        defs.appendList(after.toList());
+      }
+      else {
+        defs.append(def);
+      }
+    }
+    classDecl.defs = defs.toList();
+    for (JCTree padding : before.toList().appendList(after.toList())) {
+      typeNode.add(padding, Kind.FIELD);
+    }
+  }
+
+  /**
+   * Returns the number of bytes of the field that padding is counted in, or {@code 0} if the field can not be padded.
+   */
+  private static int paddingSize(JCVariableDecl fieldDecl) {
+    if (!isPrimitive(fieldDecl)) {
+      return 4;
+    }
+    switch (((JCPrimitiveTypeTree) fieldDecl.vartype).getPrimitiveTypeKind()) {
+      case LONG:
+      case DOUBLE:
+        return 8;
+      case INT:
+      case FLOAT:
+        return 4;
+      default:
+        return 0;
+    }
+  }
+
+  private static boolean isPrimitive(JCVariableDecl fieldDecl) {
+    return fieldDecl.vartype instanceof JCPrimitiveTypeTree;
+  }
+}
@@ -3,41 +3,250 @@ package net.sympower.symbok.javac.handler;
 import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCArrayTypeTree;
+import com.sun.tools.javac.tree.JCTree.JCAssign;
+import com.sun.tools.javac.tree.JCTree.JCAssignOp;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
 import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCExpressionStatement;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCLambda;
 import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.JCTree.JCNewArray;
+import com.sun.tools.javac.tree.JCTree.JCNewClass;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
 import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.tree.JCTree.JCTypeApply;
+import com.sun.tools.javac.tree.JCTree.JCUnary;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeCopier;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Name;
 import lombok.core.AST.Kind;
 import lombok.core.AnnotationValues;
 import lombok.javac.JavacAnnotationHandler;
 import lombok.javac.JavacNode;
 import lombok.javac.JavacTreeMaker;
+import lombok.javac.JavacTreeMaker.TreeTag;
 import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
 import net.sympower.symbok.ConfigurationKeys;
+import net.sympower.symbok.LockMode;
+import net.sympower.symbok.LockStorage;
+import net.sympower.symbok.LockTimeoutPolicy;
 import net.sympower.symbok.ReadLock;
 import net.sympower.symbok.WriteLock;
 import org.kohsuke.MetaInfServices;
 
+import javax.lang.model.type.TypeKind;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static lombok.javac.Javac.CTC_BITXOR;
+import static lombok.javac.Javac.CTC_BOOLEAN;
+import static lombok.javac.Javac.CTC_BOT;
+import static lombok.javac.Javac.CTC_EQUAL;
+import static lombok.javac.Javac.CTC_INT;
+import static lombok.javac.Javac.CTC_LONG;
+import static lombok.javac.Javac.CTC_MINUS;
+import static lombok.javac.Javac.CTC_NOT;
+import static lombok.javac.Javac.CTC_NOT_EQUAL;
+import static lombok.javac.Javac.CTC_UNSIGNED_SHIFT_RIGHT;
+import static lombok.javac.Javac.CTC_VOID;
+import static lombok.javac.handlers.JavacHandlerUtil.annotationTypeMatches;
+import static lombok.javac.handlers.JavacHandlerUtil.cloneType;
+import static lombok.javac.handlers.JavacHandlerUtil.cloneTypes;
+import static lombok.javac.handlers.JavacHandlerUtil.copyTypeParams;
+import static lombok.javac.handlers.JavacHandlerUtil.createAnnotation;
 import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
-import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
-import static lombok.javac.handlers.JavacHandlerUtil.genTypeRef;
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
 import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
+import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
 import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
 import static lombok.javac.handlers.JavacHandlerUtil.setGeneratedBy;
+import static lombok.javac.handlers.JavacHandlerUtil.upToTypeNode;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.computeIfAbsent;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
+import static net.sympower.symbok.javac.handler.HandleCopyOnWrite.STATE_CLASS_NAME;
+import static net.sympower.symbok.javac.handler.HandleCopyOnWrite.STATE_FIELD_NAME;
+import static net.sympower.symbok.javac.handler.HandleCopyOnWrite.findStateType;
+import static net.sympower.symbok.javac.handler.HandleCopyOnWrite.qualifyOuterInstance;
+import static net.sympower.symbok.javac.handler.HandlePadded.padField;
 
 public class HandleReadWriteLock {
 
   private static final String DEFAULT_LOCK_FIELD_NAME = "$readWriteLock";
 
+  private static final String REENTRANT_LOCK_CLASS_NAME = "java.util.concurrent.locks.ReentrantReadWriteLock";
+  private static final String STAMPED_LOCK_CLASS_NAME = "java.util.concurrent.locks.StampedLock";
+  private static final String LOCK_CLASS_NAME = "java.util.concurrent.locks.Lock";
+  private static final String ASYNC_LOCK_CLASS_NAME = "net.sympower.symbok.runtime.AsyncReadWriteLock";
+  private static final String ATOMIC_REFERENCE_FIELD_UPDATER_CLASS_NAME =
+      "java.util.concurrent.atomic.AtomicReferenceFieldUpdater";
+  private static final String LOCK_TIMEOUT_EXCEPTION_CLASS_NAME = "net.sympower.symbok.runtime.LockTimeoutException";
+  private static final String TIMED_LOCKS_CLASS_NAME = "net.sympower.symbok.runtime.TimedLocks";
+  private static final String LOCK_WAIT_EVENT_CLASS_NAME = "net.sympower.symbok.runtime.LockWaitEvent";
+  private static final String LOCK_HOLD_EVENT_CLASS_NAME = "net.sympower.symbok.runtime.LockHoldEvent";
+  private static final String LOCK_UPGRADE_CLASS_NAME = "net.sympower.symbok.runtime.LockUpgrade";
+  private static final String LOCK_UPGRADE_METHOD_NAME = "toWriteLock";
+
+  private static final String REENTRANT_IMPLEMENTATION = "reentrant";
+  private static final String FAIR_IMPLEMENTATION = "fair";
+  private static final String STAMPED_IMPLEMENTATION = "stamped";
+  private static final String ASYNC_IMPLEMENTATION = "async";
+
+  private static final int DEFAULT_STRIPES = 16;
+
+  static final String UNLOCKED_PREFIX = "$unlocked$";
+  private static final String LOCKED_PREFIX = "$locked$";
+
+  private static final TreeTag CTC_BITAND = TreeTag.treeTag("BITAND");
+
+  /**
+   * The shape of code generated for a lock field.
+   */
+  private enum LockKind {
+    /**
+     * {@code java.util.concurrent.locks.ReentrantReadWriteLock}, locked through its nested lock classes.
+     */
+    REENTRANT,
+    /**
+     * {@code java.util.concurrent.locks.StampedLock}, locked with stamps.
+     */
+    STAMPED,
+    /**
+     * {@code net.sympower.symbok.runtime.AsyncReadWriteLock}, held until the returned {@code CompletionStage}
+     * completes.
+     */
+    ASYNC,
+    /**
+     * Any other {@code java.util.concurrent.locks.ReadWriteLock}, locked through the {@code Lock} interface.
+     */
+    READ_WRITE_LOCK
+  }
+
+  /**
+   * The side of the lock taken by an annotation.
+   */
+  private enum LockAccess {
+    READ(
+        ReadLock.class,
+        "read",
+        "java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock",
+        "readLock",
+        "tryReadLock",
+        "unlockRead"
+    ),
+    WRITE(
+        WriteLock.class,
+        "write",
+        "java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock",
+        "writeLock",
+        "tryWriteLock",
+        "unlockWrite"
+    );
+
+    final Class<?> annotationType;
+    final String description;
+    final String reentrantLockClass;
+    final String lockMethod;
+    final String stampedTryLockMethod;
+    final String stampedUnlockMethod;
+
+    LockAccess(
+        Class<?> annotationType,
+        String description,
+        String reentrantLockClass,
+        String lockMethod,
+        String stampedTryLockMethod,
+        String stampedUnlockMethod
+    ) {
+      this.annotationType = annotationType;
+      this.description = description;
+      this.reentrantLockClass = reentrantLockClass;
+      this.lockMethod = lockMethod;
+      this.stampedTryLockMethod = stampedTryLockMethod;
+      this.stampedUnlockMethod = stampedUnlockMethod;
+    }
+  }
+
+  /**
+   * The lock taken by a {@code @ReadLock} or {@code @WriteLock} method.
+   */
+  private static final class LockedMethod {
+    final String lockFieldName;
+    final LockAccess access;
+    final boolean striped;
+    /**
+     * Whether a call to this method always runs this method, and not an override of a subclass.
+     */
+    final boolean bound;
+
+    LockedMethod(String lockFieldName, LockAccess access, boolean striped, boolean bound) {
+      this.lockFieldName = lockFieldName;
+      this.access = access;
+      this.striped = striped;
+      this.bound = bound;
+    }
+
+    /**
+     * Whether this method can be called without locking from a method holding the {@code caller} lock.
+     */
+    boolean isHeldBy(LockedMethod caller) {
+      return !striped
+          && !caller.striped
+          && lockFieldName.equals(caller.lockFieldName)
+          && (access == LockAccess.READ || caller.access == LockAccess.WRITE);
+    }
+  }
+
+  /**
+   * Attribute values of a {@code @ReadLock} or {@code @WriteLock} annotation.
+   */
+  private static final class LockSettings {
+    String lockFieldName;
+    String implementation;
+    LockMode mode;
+    long timeout;
+    TimeUnit unit;
+    LockTimeoutPolicy onTimeout;
+    String fallback;
+    String stripeBy;
+    int stripes;
+    /**
+     * The explicit storage of the annotation or {@code null}, until the lock field has been resolved.
+     */
+    LockStorage storage;
+    boolean flightRecorder;
+    /**
+     * Name of the locked method, or of the getter, reported by Flight Recorder events.
+     */
+    String methodName;
+
+    boolean isStriped() {
+      return !stripeBy.isEmpty();
+    }
+
+    boolean isTimed() {
+      return timeout >= 0;
+    }
+  }
+
   @MetaInfServices(JavacAnnotationHandler.class)
   public static class HandleReadLock extends JavacAnnotationHandler<ReadLock> {
 
-    private static final String LOCK_CLASS_NAME = "java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock";
-    private static final String LOCK_METHOD = "readLock";
-
     @Override
     public void handle(
         final AnnotationValues<ReadLock> annotation,
@@ -45,23 +254,25 @@ public class HandleReadWriteLock {
         final JavacNode annotationNode
     ) {
       deleteAnnotationIfNeccessary(annotationNode, ReadLock.class);
-      handleReadWriteLock(
-          annotation.getInstance().value(),
-          ast,
-          annotationNode,
-          ReadLock.class,
-          LOCK_CLASS_NAME,
-          LOCK_METHOD
-      );
+      ReadLock annotationInstance = annotation.getInstance();
+      LockSettings settings = new LockSettings();
+      settings.lockFieldName = annotationInstance.value();
+      settings.implementation = annotationInstance.implementation();
+      settings.mode = annotationInstance.mode();
+      settings.timeout = annotationInstance.timeout();
+      settings.unit = annotationInstance.unit();
+      settings.onTimeout = annotationInstance.onTimeout();
+      settings.fallback = annotationInstance.fallback();
+      settings.stripeBy = annotationInstance.stripeBy();
+      settings.stripes = annotationInstance.stripes();
+      settings.storage = annotation.isExplicit("storage") ? annotationInstance.storage() : null;
+      handleReadWriteLock(settings, LockAccess.READ, ast, annotationNode);
     }
   }
 
   @MetaInfServices(JavacAnnotationHandler.class)
   public static class HandleWriteLock extends JavacAnnotationHandler<WriteLock> {
 
-    private static final String LOCK_CLASS_NAME = "java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock";
-    private static final String LOCK_METHOD = "writeLock";
-
     @Override
     public void handle(
         final AnnotationValues<WriteLock> annotation,
@@ -69,91 +280,2117 @@ public class HandleReadWriteLock {
         final JavacNode annotationNode
     ) {
       deleteAnnotationIfNeccessary(annotationNode, WriteLock.class);
-      handleReadWriteLock(
-          annotation.getInstance().value(),
-          ast,
-          annotationNode,
-          WriteLock.class,
-          LOCK_CLASS_NAME,
-          LOCK_METHOD
-      );
+      WriteLock annotationInstance = annotation.getInstance();
+      LockSettings settings = new LockSettings();
+      settings.lockFieldName = annotationInstance.value();
+      settings.implementation = annotationInstance.implementation();
+      settings.mode = LockMode.PESSIMISTIC;
+      settings.timeout = annotationInstance.timeout();
+      settings.unit = annotationInstance.unit();
+      settings.onTimeout = annotationInstance.onTimeout();
+      settings.fallback = annotationInstance.fallback();
+      settings.stripeBy = annotationInstance.stripeBy();
+      settings.stripes = annotationInstance.stripes();
+      settings.storage = annotation.isExplicit("storage") ? annotationInstance.storage() : null;
+      handleReadWriteLock(settings, LockAccess.WRITE, ast, annotationNode);
     }
   }
 
   private static void handleReadWriteLock(
-      String lockFieldName,
+      LockSettings settings,
+      LockAccess access,
       JCAnnotation ast,
-      JavacNode annotationNode,
-      Class annotationType,
-      String lockClass,
-      String lockMethod
+      JavacNode annotationNode
   ) {
     JavacNode methodNode = annotationNode.up();
+    String annotationName = "@" + access.annotationType.getName();
 
     if (methodNode == null || methodNode.getKind() != Kind.METHOD || !(methodNode.get() instanceof JCMethodDecl)) {
-      annotationNode.addError("@" + annotationType.getName() + " is legal only on methods.");
+      annotationNode.addError(annotationName + " is legal only on methods.");
       return;
     }
 
     JCMethodDecl method = (JCMethodDecl) methodNode.get();
 
     if ((method.mods.flags & Flags.ABSTRACT) != 0) {
-      annotationNode.addError("@" + annotationType.getName() + " is legal only on concrete methods.");
+      annotationNode.addError(annotationName + " is legal only on concrete methods.");
+      return;
+    }
+
+    JavacNode stateNode = findStateType(methodNode.up());
+    if (stateNode != null && (method.mods.flags & Flags.STATIC) != 0) {
+      annotationNode.addError(annotationName + " is legal only on instance methods of a @CopyOnWrite class.");
+      return;
+    }
+
+    if (stateNode != null && !settings.stripeBy.isEmpty()) {
+      annotationNode.addError(annotationName + "(stripeBy = ...) can not be used in a @CopyOnWrite class.");
+      return;
+    }
+
+    if (settings.mode == LockMode.SEQUENCE && settings.isTimed()) {
+      annotationNode.addError(annotationName + "(mode = SEQUENCE) never blocks and can not have a timeout.");
       return;
     }
 
+    if (settings.mode == LockMode.UPGRADABLE && settings.isTimed()) {
+      annotationNode.addError(annotationName + "(mode = UPGRADABLE) can not have a timeout.");
+      return;
+    }
+
+    if (stateNode != null && settings.mode == LockMode.UPGRADABLE) {
+      annotationNode.addError(annotationName + "(mode = UPGRADABLE) can not be used in a @CopyOnWrite class.");
+      return;
+    }
+
+    if (settings.onTimeout == LockTimeoutPolicy.FALLBACK && settings.fallback.isEmpty()) {
+      annotationNode.addError(annotationName + "(onTimeout = FALLBACK) requires a fallback method.");
+      return;
+    }
+
+    if (settings.onTimeout != LockTimeoutPolicy.FALLBACK && !settings.fallback.isEmpty()) {
+      annotationNode.addError(annotationName + "(fallback = ...) requires onTimeout = FALLBACK.");
+      return;
+    }
+
+    JCVariableDecl stripeParam = null;
+    boolean explicitStripes = settings.stripes != 0;
+    if (settings.isStriped()) {
+      for (JCVariableDecl param : method.params) {
+        if (param.name.contentEquals(settings.stripeBy)) {
+          stripeParam = param;
+        }
+      }
+      if (stripeParam == null) {
+        annotationNode.addError(annotationName + "(stripeBy = \"" + settings.stripeBy + "\") requires a parameter named "
+                                    + settings.stripeBy + ".");
+        return;
+      }
+      if (settings.stripes == 0) {
+        Integer configuredStripes = readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_STRIPES);
+        settings.stripes = configuredStripes == null ? DEFAULT_STRIPES : configuredStripes;
+      }
+      if (settings.stripes <= 0 || Integer.bitCount(settings.stripes) != 1) {
+        annotationNode.addError(annotationName + " requires the number of stripes to be a power of two.");
+        return;
+      }
+    }
+
     if (method.body == null) {
       return;
     }
 
+    if (settings.mode == LockMode.UPGRADABLE && !checkUpgradableBody(method, annotationName, annotationNode)) {
+      return;
+    }
+
     JavacTreeMaker maker = methodNode.getTreeMaker().at(ast.pos);
     Context context = methodNode.getContext();
 
+    String lockFieldName = resolveLockFieldName(settings.lockFieldName, annotationNode);
+    settings.lockFieldName = lockFieldName;
+    settings.flightRecorder = Boolean.TRUE.equals(
+        readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_FLIGHT_RECORDER));
+    settings.methodName = method.name.toString();
+
+    // @ReadLock methods of a @CopyOnWrite class read a snapshot and take no lock
+    boolean locked = stateNode == null || access == LockAccess.WRITE;
+    LockKind lockKind = null;
+    if (locked) {
+      lockKind = findOrCreateLockField(
+          maker, methodNode.up(), settings, explicitStripes, annotationName, annotationNode, ast);
+      if (lockKind == null) {
+        return;
+      }
+      if (settings.storage == LockStorage.SHARED) {
+        warnAboutCallsSharingLock(methodNode, lockFieldName, annotationNode);
+      }
+    }
+
+    if (lockKind == LockKind.ASYNC) {
+      if (!returnsCompletionStage(method)) {
+        annotationNode.addError(
+            annotationName + " on the async lock " + lockFieldName + " requires the method to return a "
+                + "CompletionStage or CompletableFuture.");
+        return;
+      }
+      if (settings.isTimed()) {
+        annotationNode.addError(
+            annotationName + " on the async lock " + lockFieldName + " never blocks and can not have a timeout.");
+        return;
+      }
+      if (stateNode != null) {
+        annotationNode.addError(annotationName + " can not use the async lock " + lockFieldName
+                                    + " in a @CopyOnWrite class.");
+        return;
+      }
+    }
+    else if (locked && returnsCompletionStage(method)) {
+      annotationNode.addWarning(
+          annotationName + " only holds " + lockFieldName + " while the CompletionStage is created, not until it "
+              + "completes. Use implementation = \"" + ASYNC_IMPLEMENTATION + "\" to hold it until completion.");
+    }
+
+    if (stateNode == null && settings.mode != LockMode.PESSIMISTIC && lockKind != LockKind.STAMPED) {
+      annotationNode.addError(
+          annotationName + "(mode = " + settings.mode + ") requires " + lockFieldName + " to be a "
+              + STAMPED_LOCK_CLASS_NAME + ".");
+      return;
+    }
+
+    JCExpression lockNode = createLockReference(maker, methodNode, settings);
+    if (settings.isStriped()) {
+      lockNode = createStripeSelection(maker, methodNode, lockNode, stripeParam, lockFieldName);
+    }
+    List<JCStatement> onTimeout = settings.isTimed()
+        ? createTimeoutStatements(maker, methodNode, settings, access, lockFieldName)
+        : null;
+
+    // an upgradable read runs a copy of the body under the read lock, and starts over in $unlocked$<method> under the
+    // write lock if the read lock can not be converted
+    JCBlock upgradableBody = null;
+    LockAccess unlockedAccess = access;
+    if (settings.mode == LockMode.UPGRADABLE) {
+      upgradableBody = new TreeCopier<Void>(maker.getUnderlyingTreeMaker()).copy(method.body);
+      if (!settings.isStriped()) {
+        elideReentrantCalls(
+            methodNode, upgradableBody, new LockedMethod(lockFieldName, LockAccess.READ, false, true), lockKind,
+            false, true, annotationNode);
+      }
+      unlockedAccess = LockAccess.WRITE;
+      method.body = replaceLockUpgrades(method.body, new Function<JCStatement, JCStatement>() {
+        @Override
+        public JCStatement apply(JCStatement upgrade) {
+          return maker.at(upgrade.pos).Block(0, List.<JCStatement>nil());
+        }
+      });
+    }
+
+    // the original body moves into $unlocked$<method>, where calls to other methods on the same lock skip locking
+    if (!settings.isStriped()) {
+      elideReentrantCalls(
+          methodNode, method.body, new LockedMethod(lockFieldName, unlockedAccess, false, true), lockKind,
+          stateNode != null, false, annotationNode);
+    }
+    Name unlockedName = methodNode.toName(UNLOCKED_PREFIX + method.name);
+    JCBlock unlockedCallBody;
+    if (stateNode == null) {
+      injectMethod(methodNode.up(), createUnlockedMethod(maker, methodNode, unlockedName, Flags.PRIVATE, ast));
+      JCExpression unlockedCall = callWithParams(maker, methodNode, unlockedName);
+      unlockedCallBody = maker.Block(0, List.of(
+          returnsVoid(method) ? maker.Exec(unlockedCall) : maker.Return(unlockedCall)));
+    }
+    else {
+      // package private, so the outer class calls it without a synthetic accessor
+      JCMethodDecl unlocked = createUnlockedMethod(maker, methodNode, unlockedName, 0L, ast);
+      unlocked.body = qualifyOuterInstance(methodNode.up(), stateNode, unlocked.body);
+      injectMethod(stateNode, unlocked);
+      unlockedCallBody = recursiveSetGeneratedBy(
+          createCopyOnWriteBody(maker, methodNode, access, unlockedName, ast), ast, context);
+    }
+
+    if (!locked) {
+      method.body = unlockedCallBody;
+    }
+    else if (settings.mode == LockMode.OPTIMISTIC) {
+      method.body =
+          createOptimisticReadBody(maker, methodNode, lockNode, unlockedName, settings, onTimeout, stripeParam, ast);
+    }
+    else if (settings.mode == LockMode.SEQUENCE) {
+      method.body = createSequenceReadBody(maker, methodNode, lockNode, unlockedName, ast);
+    }
+    else if (settings.mode == LockMode.UPGRADABLE) {
+      method.body =
+          createUpgradableReadBody(maker, methodNode, lockNode, unlockedName, settings, upgradableBody, ast);
+    }
+    else if (lockKind == LockKind.ASYNC) {
+      method.body = createAsyncLockBody(maker, methodNode, lockNode, access, unlockedName, ast);
+    }
+    else if (lockKind == LockKind.STAMPED) {
+      method.body =
+          createStampedLockBody(maker, methodNode, lockNode, access, settings, onTimeout, unlockedCallBody, ast);
+    }
+    else {
+      String lockVariableClass = lockKind == LockKind.REENTRANT ? access.reentrantLockClass : LOCK_CLASS_NAME;
+      method.body = createLockBody(
+          maker, methodNode, lockNode, lockVariableClass, access, settings, onTimeout, unlockedCallBody, ast);
+    }
+
+    if (settings.isStriped()) {
+      method.body.stats = method.body.stats.prepend(
+          recursiveSetGeneratedBy(createStripeHash(maker, methodNode, stripeParam), ast, context));
+    }
+
+    methodNode.rebuild();
+  }
+
+  /**
+   * Creates the body of a {@code @ReadLock} or {@code @WriteLock} method of a {@code @CopyOnWrite} class. A read runs
+   * the method on the current snapshot:
+   * <pre>
+   * return this.$state.$unlocked$method(...);
+   * </pre>
+   * A write runs it on a copy, and publishes the copy if it returns normally:
+   * <pre>
+   * final $State $copy = new $State(this.$state);
+   * final T $result = $copy.$unlocked$method(...);
+   * this.$state = $copy;
+   * return $result;
+   * </pre>
+   */
+  private static JCBlock createCopyOnWriteBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      LockAccess access,
+      Name unlockedName,
+      JCTree source
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    Context context = methodNode.getContext();
+    boolean returnsVoid = returnsVoid(method);
+    Name stateFieldName = methodNode.toName(STATE_FIELD_NAME);
+
+    if (access == LockAccess.READ) {
+      JCExpression state = maker.Select(maker.Ident(methodNode.toName("this")), stateFieldName);
+      JCExpression unlockedCall = callWithParams(maker, methodNode, state, unlockedName);
+      return maker.Block(0, List.of(returnsVoid ? maker.Exec(unlockedCall) : maker.Return(unlockedCall)));
+    }
+
+    Name copyName = methodNode.toName("$copy");
+    Name resultName = methodNode.toName("$result");
+    Name stateClassName = methodNode.toName(STATE_CLASS_NAME);
+    ListBuffer<JCStatement> statements = new ListBuffer<JCStatement>();
+    statements.append(maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        copyName,
+        maker.Ident(stateClassName),
+        maker.NewClass(
+            null,
+            List.nil(),
+            maker.Ident(stateClassName),
+            List.<JCExpression>of(maker.Select(maker.Ident(methodNode.toName("this")), stateFieldName)),
+            null
+        )
+    ));
+    JCExpression unlockedCall = callWithParams(maker, methodNode, maker.Ident(copyName), unlockedName);
+    if (returnsVoid) {
+      statements.append(maker.Exec(unlockedCall));
+    }
+    else {
+      statements.append(maker.VarDef(
+          maker.Modifiers(Flags.FINAL),
+          resultName,
+          cloneType(maker, method.restype, source, context),
+          unlockedCall
+      ));
+    }
+    statements.append(maker.Exec(maker.Assign(
+        maker.Select(maker.Ident(methodNode.toName("this")), stateFieldName),
+        maker.Ident(copyName)
+    )));
+    if (!returnsVoid) {
+      statements.append(maker.Return(maker.Ident(resultName)));
+    }
+    return maker.Block(0, statements.toList());
+  }
+
+  /**
+   * Rewrites calls {@code method(...)} and {@code this.method(...)} in the body of a locked method to
+   * {@code $unlocked$method(...)}, if every method of that name takes a lock already held by the caller. A call chain
+   * through the methods of a type then takes the lock once, instead of once per method. Reentrant locks only save
+   * their bookkeeping; a {@code StampedLock}, which is not reentrant, no longer deadlocks on these calls.
+   * <p>
+   * Only calls to methods that can not be overridden are rewritten: private, final or static methods, or any method
+   * of a final class. A call to an overridable method stays virtual, and takes the lock again; on a
+   * {@code StampedLock} that deadlocks, which is reported as a warning.
+   * <p>
+   * In a {@code @CopyOnWrite} class every such call is rewritten, as the body runs on a copy of the state: a locked
+   * call would copy and publish the state it started from, and the caller would then overwrite it with its own copy.
+   * <p>
+   * A call from a method holding the read lock to one taking the write lock of the same lock is an error: it
+   * deadlocks, and in a {@code @CopyOnWrite} class the caller would not see the write. The copy of an upgradable read
+   * run under the read lock is exempt, as it calls {@code LockUpgrade.toWriteLock()} before it writes.
+   * <p>
+   * Calls inside lambdas and nested classes are left alone, as they may run after the lock has been released.
+   */
+  private static void elideReentrantCalls(
+      JavacNode methodNode,
+      JCBlock body,
+      final LockedMethod caller,
+      final LockKind lockKind,
+      final boolean copyOnWrite,
+      final boolean upgradable,
+      final JavacNode annotationNode
+  ) {
+    final JavacNode typeNode = methodNode.up();
+    final Map<String, List<LockedMethod>> lockedMethods = lockedMethodsOf(typeNode);
+
+    new TreeScanner() {
+      @Override
+      public void visitApply(JCMethodInvocation invocation) {
+        Name calledName = null;
+        if (invocation.meth instanceof JCIdent) {
+          calledName = ((JCIdent) invocation.meth).name;
+        }
+        else if (invocation.meth instanceof JCFieldAccess
+            && ((JCFieldAccess) invocation.meth).selected instanceof JCIdent
+            && ((JCIdent) ((JCFieldAccess) invocation.meth).selected).name.contentEquals("this")) {
+          calledName = ((JCFieldAccess) invocation.meth).name;
+        }
+        List<LockedMethod> callees = calledName == null ? null : lockedMethods.get(calledName.toString());
+        if (!upgradable && isWriteUnderRead(callees, caller)) {
+          annotationNode.addError(
+              copyOnWrite
+                  ? "The call to " + calledName + " writes a new copy of the state, which this method does not see. "
+                      + "Make this method a @WriteLock, or move the call out of it."
+                  : "The call to " + calledName + " takes the write lock of " + caller.lockFieldName + " while this "
+                      + "method holds its read lock, which deadlocks. Make this method a @WriteLock, or move the "
+                      + "call out of it.",
+              invocation.pos());
+        }
+        else if (isHeldBy(callees, caller) && !copyOnWrite && !isBound(callees)) {
+          if (lockKind == LockKind.STAMPED) {
+            annotationNode.addWarning(
+                "The call to " + calledName + ", which may be overridden, takes " + caller.lockFieldName
+                    + " again and can deadlock on the non-reentrant StampedLock. Make " + calledName
+                    + " private or final, or the class final, to call it without locking.");
+          }
+        }
+        else if (isHeldBy(callees, caller)) {
+          Name unlockedName = typeNode.toName(UNLOCKED_PREFIX + calledName);
+          if (invocation.meth instanceof JCIdent) {
+            ((JCIdent) invocation.meth).name = unlockedName;
+          }
+          else {
+            ((JCFieldAccess) invocation.meth).name = unlockedName;
+          }
+        }
+        super.visitApply(invocation);
+      }
+
+      @Override
+      public void visitLambda(JCLambda lambda) {
+      }
+
+      @Override
+      public void visitClassDef(JCClassDecl classDecl) {
+      }
+    }.scan(body);
+  }
+
+  /**
+   * Warns about calls from a method on a {@link LockStorage#SHARED SHARED} lock to methods on the same lock of other
+   * instances of the class, recognized by the declared type of the parameter, variable or field they are called on.
+   * The other instance may use the same lock of the pool, and a read lock asking for the write lock deadlocks even on
+   * a {@code ReentrantReadWriteLock}, as does any nested call on a {@code StampedLock}. Instances using different
+   * locks of the pool can still deadlock when two threads call each other's instance.
+   */
+  private static void warnAboutCallsSharingLock(
+      JavacNode methodNode,
+      final String lockFieldName,
+      final JavacNode annotationNode
+  ) {
+    final JavacNode typeNode = methodNode.up();
+    final Name typeName = ((JCClassDecl) typeNode.get()).name;
+    final Map<String, List<LockedMethod>> lockedMethods = lockedMethodsOf(typeNode);
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+
+    final Map<Name, JCExpression> declaredTypes = new HashMap<Name, JCExpression>();
+    for (JavacNode member : typeNode.down()) {
+      if (member.getKind() == Kind.FIELD) {
+        JCVariableDecl field = (JCVariableDecl) member.get();
+        declaredTypes.put(field.name, field.vartype);
+      }
+    }
+    for (JCVariableDecl param : method.params) {
+      declaredTypes.put(param.name, param.vartype);
+    }
+
+    new TreeScanner() {
+      @Override
+      public void visitVarDef(JCVariableDecl variable) {
+        declaredTypes.put(variable.name, variable.vartype);
+        super.visitVarDef(variable);
+      }
+
+      @Override
+      public void visitApply(JCMethodInvocation invocation) {
+        if (invocation.meth instanceof JCFieldAccess) {
+          JCFieldAccess called = (JCFieldAccess) invocation.meth;
+          if (usesLock(lockedMethods.get(called.name.toString()), lockFieldName)
+              && isOtherInstance(called.selected, typeName, declaredTypes)) {
+            annotationNode.addWarning(
+                "The call to " + called.name + " on another instance may find " + lockFieldName + " taken from the "
+                    + "SHARED pool of locks: a read lock asking for the write lock of the same lock deadlocks, and so "
+                    + "does any nested call on a StampedLock. Use INSTANCE or LAZY lock storage instead.",
+                invocation.pos());
+          }
+        }
+        super.visitApply(invocation);
+      }
+    }.scan(method.body);
+  }
+
+  private static boolean usesLock(List<LockedMethod> callees, String lockFieldName) {
+    if (callees == null) {
+      return false;
+    }
+    for (LockedMethod callee : callees) {
+      if (callee != null && callee.lockFieldName.equals(lockFieldName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isOtherInstance(JCExpression receiver, Name typeName, Map<Name, JCExpression> declaredTypes) {
+    JCExpression type = null;
+    if (receiver instanceof JCIdent) {
+      Name name = ((JCIdent) receiver).name;
+      if (name.contentEquals("this") || name.contentEquals("super")) {
+        return false;
+      }
+      type = declaredTypes.get(name);
+    }
+    else if (receiver instanceof JCFieldAccess
+        && ((JCFieldAccess) receiver).selected instanceof JCIdent
+        && ((JCIdent) ((JCFieldAccess) receiver).selected).name.contentEquals("this")) {
+      type = declaredTypes.get(((JCFieldAccess) receiver).name);
+    }
+    else if (receiver instanceof JCNewClass) {
+      type = ((JCNewClass) receiver).clazz;
+    }
+    if (type instanceof JCTypeApply) {
+      type = ((JCTypeApply) type).clazz;
+    }
+    if (type instanceof JCFieldAccess) {
+      return ((JCFieldAccess) type).name.equals(typeName);
+    }
+    return type instanceof JCIdent && ((JCIdent) type).name.equals(typeName);
+  }
+
+  private static boolean isHeldBy(List<LockedMethod> callees, LockedMethod caller) {
+    if (callees == null || callees.isEmpty()) {
+      return false;
+    }
+    for (LockedMethod callee : callees) {
+      if (callee == null || !callee.isHeldBy(caller)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether the {@code callees} do not hold the lock of the {@code caller} only because it holds the read lock, and
+   * one of them takes the write lock.
+   */
+  private static boolean isWriteUnderRead(List<LockedMethod> callees, LockedMethod caller) {
+    if (callees == null || callees.isEmpty() || caller.access != LockAccess.READ) {
+      return false;
+    }
+    boolean write = false;
+    for (LockedMethod callee : callees) {
+      if (callee == null || callee.striped || !callee.lockFieldName.equals(caller.lockFieldName)) {
+        return false;
+      }
+      write |= callee.access == LockAccess.WRITE;
+    }
+    return write;
+  }
+
+  private static boolean isBound(List<LockedMethod> callees) {
+    for (LockedMethod callee : callees) {
+      if (!callee.bound) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the names of the lock fields used by the {@code @ReadLock} and {@code @WriteLock} methods of a type.
+   */
+  static Set<String> lockFieldNamesOf(JavacNode typeNode) {
+    Set<String> lockFieldNames = new HashSet<String>();
+    for (List<LockedMethod> overloads : lockedMethodsOf(typeNode).values()) {
+      for (LockedMethod lockedMethod : overloads) {
+        if (lockedMethod != null) {
+          lockFieldNames.add(lockedMethod.lockFieldName);
+        }
+      }
+    }
+    return lockFieldNames;
+  }
+
+  private static Map<String, List<LockedMethod>> lockedMethodsOf(final JavacNode typeNode) {
+    return computeIfAbsent(
+        typeNode,
+        (JCClassDecl) typeNode.get(),
+        new Function<JCClassDecl, Map<String, List<LockedMethod>>>() {
+          @Override
+          public Map<String, List<LockedMethod>> apply(JCClassDecl typeDecl) {
+            return collectLockedMethods(typeNode);
+          }
+        }
+    );
+  }
+
+  /**
+   * Collects the locks taken by the methods of a type, by method name. A method without a lock, or without a body,
+   * is mapped to a {@code null} entry.
+   */
+  private static Map<String, List<LockedMethod>> collectLockedMethods(JavacNode typeNode) {
+    Map<String, List<LockedMethod>> lockedMethods = new HashMap<String, List<LockedMethod>>();
+    JCClassDecl typeDecl = (JCClassDecl) typeNode.get();
+    boolean finalType = (typeDecl.mods.flags & Flags.FINAL) != 0 || typeDecl.name.isEmpty();
+    for (JavacNode member : typeNode.down()) {
+      if (member.getKind() != Kind.METHOD) {
+        continue;
+      }
+      JCMethodDecl methodDecl = (JCMethodDecl) member.get();
+      LockedMethod lockedMethod = null;
+      boolean bound = finalType || (methodDecl.mods.flags & (Flags.PRIVATE | Flags.FINAL | Flags.STATIC)) != 0;
+      for (JavacNode child : member.down()) {
+        if (child.getKind() != Kind.ANNOTATION || methodDecl.body == null) {
+          continue;
+        }
+        if (annotationTypeMatches(ReadLock.class, child)) {
+          ReadLock readLock = createAnnotation(ReadLock.class, child).getInstance();
+          // an upgradable read may take the write lock, so it can only be called without locking under the write lock
+          LockAccess access = readLock.mode() == LockMode.UPGRADABLE ? LockAccess.WRITE : LockAccess.READ;
+          lockedMethod = new LockedMethod(
+              resolveLockFieldName(readLock.value(), child), access, !readLock.stripeBy().isEmpty(), bound);
+        }
+        else if (annotationTypeMatches(WriteLock.class, child)) {
+          WriteLock writeLock = createAnnotation(WriteLock.class, child).getInstance();
+          lockedMethod = new LockedMethod(
+              resolveLockFieldName(writeLock.value(), child), LockAccess.WRITE, !writeLock.stripeBy().isEmpty(),
+              bound);
+        }
+      }
+      String name = methodDecl.name.toString();
+      List<LockedMethod> overloads = lockedMethods.get(name);
+      lockedMethods.put(name, overloads == null ? List.of(lockedMethod) : overloads.prepend(lockedMethod));
+    }
+    return lockedMethods;
+  }
+
+  /**
+   * Creates the body of a getter that reads a field under the read lock {@code lockFieldName}, for
+   * {@code @Getter2(lock = ...)}, creating the lock field like {@code @ReadLock} if it does not exist. A
+   * {@code StampedLock} is read optimistically:
+   * <pre>
+   * final StampedLock $lock = this.&lt;LOCK_NAME&gt;;
+   * long $stamp = $lock.tryOptimisticRead();
+   * T $value = this.field;
+   * if (!$lock.validate($stamp)) {
+   *   $stamp = $lock.readLock();
+   *   try {
+   *     $value = this.field;
+   *   } finally {
+   *     $lock.unlockRead($stamp);
+   *   }
+   * }
+   * return $value;
+   * </pre>
+   * Other locks wrap {@code return this.field;} in their read lock, like a {@code @ReadLock} method. With
+   * {@code symbok.readWriteLock.flightRecorder} the read lock emits the same events as a {@code @ReadLock} method,
+   * which for a {@code StampedLock} means only the reads that fall back to the read lock.
+   *
+   * @return the statements or {@code null} if an error has been reported
+   */
+  static List<JCStatement> createGuardedGetterBody(
+      JavacTreeMaker maker,
+      JavacNode fieldNode,
+      String getterName,
+      String lockFieldName,
+      JavacNode annotationNode,
+      JCTree source
+  ) {
+    JCVariableDecl fieldDecl = (JCVariableDecl) fieldNode.get();
+    Context context = fieldNode.getContext();
+
+    LockSettings settings = new LockSettings();
+    settings.lockFieldName = lockFieldName;
+    settings.implementation = "";
+    settings.mode = LockMode.PESSIMISTIC;
+    settings.timeout = -1;
+    settings.unit = TimeUnit.MILLISECONDS;
+    settings.onTimeout = LockTimeoutPolicy.THROW;
+    settings.fallback = "";
+    settings.stripeBy = "";
+    settings.flightRecorder = Boolean.TRUE.equals(
+        readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_FLIGHT_RECORDER));
+    settings.methodName = getterName;
+
+    LockKind lockKind = findOrCreateLockField(
+        maker, fieldNode.up(), settings, false, "@Getter2", annotationNode, source);
+    if (lockKind == null) {
+      return null;
+    }
+    if (lockKind == LockKind.ASYNC) {
+      annotationNode.addError("@Getter2(lock = ...) can not read under the async lock " + lockFieldName + ".");
+      return null;
+    }
+
+    JCExpression lockNode = createLockReference(maker, fieldNode, settings);
+    JCExpression fieldValue = maker.Select(maker.Ident(fieldNode.toName("this")), fieldDecl.name);
+    if (lockKind != LockKind.STAMPED) {
+      String lockVariableClass = lockKind == LockKind.REENTRANT ? LockAccess.READ.reentrantLockClass : LOCK_CLASS_NAME;
+      JCBlock body = maker.Block(0, List.<JCStatement>of(maker.Return(fieldValue)));
+      return createLockBody(maker, fieldNode, lockNode, lockVariableClass, LockAccess.READ, settings, null, body, source)
+          .stats;
+    }
+
+    Name lockVariableName = fieldNode.toName("$lock");
+    Name stampVariableName = fieldNode.toName("$stamp");
+    Name valueVariableName = fieldNode.toName("$value");
+
+    JCStatement lockVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), lockVariableName, genTypeRef(fieldNode, STAMPED_LOCK_CLASS_NAME), lockNode);
+    JCStatement stampVariable = maker.VarDef(
+        maker.Modifiers(0),
+        stampVariableName,
+        maker.TypeIdent(CTC_LONG),
+        callLock(maker, fieldNode, lockVariableName, "tryOptimisticRead", List.nil())
+    );
+    JCStatement valueVariable = maker.VarDef(
+        maker.Modifiers(0), valueVariableName, cloneType(maker, fieldDecl.vartype, source, context), fieldValue);
+
+    List<JCStatement> readLock = List.<JCStatement>of(maker.Exec(maker.Assign(
+        maker.Ident(stampVariableName),
+        callLock(maker, fieldNode, lockVariableName, LockAccess.READ.lockMethod, List.nil())
+    )));
+    List<JCStatement> unlockRead = List.<JCStatement>of(maker.Exec(callLock(
+        maker, fieldNode, lockVariableName, LockAccess.READ.stampedUnlockMethod,
+        List.<JCExpression>of(maker.Ident(stampVariableName))
+    )));
+    JCBlock lockedRead = maker.Block(0, List.<JCStatement>of(maker.Exec(maker.Assign(
+        maker.Ident(valueVariableName),
+        maker.Select(maker.Ident(fieldNode.toName("this")), fieldDecl.name)
+    ))));
+    JCStatement fallback = maker.If(
+        maker.Unary(CTC_NOT, validate(maker, fieldNode, lockVariableName, stampVariableName)),
+        maker.Block(0, composeLockStatements(
+            maker, fieldNode, LockAccess.READ, settings, readLock, null, unlockRead, lockedRead, source)),
+        null
+    );
+
+    return List.of(lockVariable, stampVariable, valueVariable, fallback, maker.Return(maker.Ident(valueVariableName)));
+  }
+
+  /**
+   * Resolves the kind of the lock field {@link LockSettings#lockFieldName}, creating the field if it does not exist.
+   *
+   * @return the kind of the lock or {@code null} if an error has been reported
+   */
+  private static LockKind findOrCreateLockField(
+      JavacTreeMaker maker,
+      JavacNode typeNode,
+      LockSettings settings,
+      boolean explicitStripes,
+      String annotationName,
+      JavacNode annotationNode,
+      JCTree source
+  ) {
+    String lockFieldName = settings.lockFieldName;
+    JavacNode lockFieldNode = findField(lockFieldName, typeNode);
+    if (lockFieldNode == null) {
+      String implementation = resolveImplementation(lockFieldName, settings, typeNode, annotationNode);
+      LockStorage storage = resolveStorage(lockFieldName, settings, typeNode, annotationNode);
+      if (implementation == null || storage == null) {
+        return null;
+      }
+      if (storage != LockStorage.INSTANCE) {
+        if (settings.isStriped()) {
+          annotationNode.addError(annotationName + "(stripeBy = ...) can not use " + storage + " lock storage.");
+          return null;
+        }
+        if (!canDeclareStaticFields(typeNode)) {
+          annotationNode.addError(
+              storage + " lock storage needs a static field, which inner classes, local classes and anonymous classes "
+                  + "can not declare.");
+          return null;
+        }
+      }
+      if (storage == LockStorage.SHARED) {
+        if (settings.stripes == 0) {
+          Integer configuredStripes = readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_STRIPES);
+          settings.stripes = configuredStripes == null ? DEFAULT_STRIPES : configuredStripes;
+        }
+        if (settings.stripes <= 0 || Integer.bitCount(settings.stripes) != 1) {
+          annotationNode.addError(annotationName + " requires the number of stripes to be a power of two.");
+          return null;
+        }
+      }
+      settings.storage = storage;
+      JavacNode createdFieldNode = injectFieldAndMarkGenerated(
+          typeNode,
+          recursiveSetGeneratedBy(
+              createLockField(maker, typeNode, lockFieldName, implementation, settings), source, typeNode.getContext())
+      );
+      if (storage == LockStorage.LAZY) {
+        createLazyLockAccessor(maker, typeNode, lockFieldName, implementation, source);
+      }
+      if (storage != LockStorage.SHARED
+          && Boolean.TRUE.equals(readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_PADDED))) {
+        padField(createdFieldNode, source);
+      }
+      return lockKindOf(implementation);
+    }
+
+    JCVariableDecl lockFieldDecl = (JCVariableDecl) lockFieldNode.get();
+    LockStorage storage = lockStorageOf(lockFieldDecl, typeNode);
+    if (settings.storage != null && settings.storage != storage) {
+      annotationNode.addError(lockFieldName + " has " + storage + " lock storage, not " + settings.storage + ".");
+      return null;
+    }
+    settings.storage = storage;
+    boolean stripedField = lockFieldDecl.vartype instanceof JCArrayTypeTree && storage != LockStorage.SHARED;
+    if (stripedField != settings.isStriped()) {
+      annotationNode.addError(stripedField
+                                  ? lockFieldName + " is an array of striped locks and requires stripeBy."
+                                  : annotationName + "(stripeBy = ...) requires " + lockFieldName
+                                      + " to be an array of locks.");
+      return null;
+    }
+    if (explicitStripes && lockFieldDecl.init instanceof JCNewArray
+        && ((JCNewArray) lockFieldDecl.init).elems != null
+        && ((JCNewArray) lockFieldDecl.init).elems.size() != settings.stripes) {
+      annotationNode.addError(
+          lockFieldName + " has " + ((JCNewArray) lockFieldDecl.init).elems.size() + " stripes, not "
+              + settings.stripes + ".");
+      return null;
+    }
+    return lockKindOf(lockFieldDecl);
+  }
+
+  /**
+   * Creates the lock field, or with {@code stripeBy} an array of {@code stripes} locks:
+   * <pre>
+   * private final ReentrantReadWriteLock[] &lt;LOCK_NAME&gt; = new ReentrantReadWriteLock[] {
+   *   new ReentrantReadWriteLock(), ...
+   * };
+   * </pre>
+   * With {@link LockStorage#SHARED SHARED} storage the array is {@code static}, and with {@link LockStorage#LAZY LAZY}
+   * storage the field is {@code volatile} and not initialized.
+   */
+  private static JCVariableDecl createLockField(
+      JavacTreeMaker maker,
+      JavacNode typeNode,
+      String lockFieldName,
+      String implementation,
+      LockSettings settings
+  ) {
+    List<JCExpression> constructorArgs = lockConstructorArgs(maker, implementation);
+    String lockClass = lockClassOf(implementation);
+
+    if (settings.storage == LockStorage.LAZY) {
+      return maker.VarDef(
+          maker.Modifiers(Flags.PRIVATE | Flags.VOLATILE),
+          typeNode.toName(lockFieldName), genTypeRef(typeNode, lockClass), null
+      );
+    }
+
+    long modifiers = Flags.PRIVATE | Flags.FINAL | (settings.storage == LockStorage.SHARED ? Flags.STATIC : 0L);
+    if (!settings.isStriped() && settings.storage != LockStorage.SHARED) {
+      JCExpression lockType = genTypeRef(typeNode, lockClass);
+      JCExpression newInstance = maker.NewClass(null, List.nil(), lockType, constructorArgs, null);
+      return maker.VarDef(
+          maker.Modifiers(Flags.PRIVATE | Flags.FINAL),
+          typeNode.toName(lockFieldName), lockType, newInstance
+      );
+    }
+
+    ListBuffer<JCExpression> stripes = new ListBuffer<JCExpression>();
+    for (int i = 0; i < settings.stripes; i++) {
+      stripes.append(maker.NewClass(null, List.nil(), genTypeRef(typeNode, lockClass), constructorArgs, null));
+    }
+    JCExpression newArray = maker.NewArray(genTypeRef(typeNode, lockClass), List.nil(), stripes.toList());
+    return maker.VarDef(
+        maker.Modifiers(modifiers),
+        typeNode.toName(lockFieldName),
+        maker.TypeArray(genTypeRef(typeNode, lockClass)),
+        newArray
+    );
+  }
+
+  private static List<JCExpression> lockConstructorArgs(JavacTreeMaker maker, String implementation) {
+    return FAIR_IMPLEMENTATION.equals(implementation)
+        ? List.<JCExpression>of(maker.Literal(true))
+        : List.<JCExpression>nil();
+  }
+
+  /**
+   * Creates the accessor of a lock field with {@link LockStorage#LAZY LAZY} storage, and the updater it publishes the
+   * lock with:
+   * <pre>
+   * private static final AtomicReferenceFieldUpdater&lt;Type, ReentrantReadWriteLock&gt; $&lt;LOCK_NAME&gt;$updater =
+   *     AtomicReferenceFieldUpdater.newUpdater(Type.class, ReentrantReadWriteLock.class, "&lt;LOCK_NAME&gt;");
+   *
+   * private ReentrantReadWriteLock &lt;LOCK_NAME&gt;() {
+   *   ReentrantReadWriteLock $lock = this.&lt;LOCK_NAME&gt;;
+   *   if ($lock == null) {
+   *     $&lt;LOCK_NAME&gt;$updater.compareAndSet(this, null, new ReentrantReadWriteLock());
+   *     $lock = this.&lt;LOCK_NAME&gt;;
+   *   }
+   *   return $lock;
+   * }
+   * </pre>
+   */
+  private static void createLazyLockAccessor(
+      JavacTreeMaker maker,
+      JavacNode typeNode,
+      String lockFieldName,
+      String implementation,
+      JCTree source
+  ) {
+    Context context = typeNode.getContext();
+    String lockClass = lockClassOf(implementation);
+    Name typeName = ((JCClassDecl) typeNode.get()).name;
+    Name className = typeNode.toName("class");
+    Name fieldName = typeNode.toName(lockFieldName);
+    Name updaterName = typeNode.toName((lockFieldName.startsWith("$") ? "" : "$") + lockFieldName + "$updater");
+    Name lockVariableName = typeNode.toName("$lock");
+
+    JCExpression newUpdater = maker.Apply(
+        List.nil(),
+        genTypeRef(typeNode, ATOMIC_REFERENCE_FIELD_UPDATER_CLASS_NAME + ".newUpdater"),
+        List.<JCExpression>of(
+            maker.Select(maker.Ident(typeName), className),
+            maker.Select(genTypeRef(typeNode, lockClass), className),
+            maker.Literal(lockFieldName)
+        )
+    );
+    injectFieldAndMarkGenerated(typeNode, recursiveSetGeneratedBy(maker.VarDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL),
+        updaterName,
+        maker.TypeApply(
+            genTypeRef(typeNode, ATOMIC_REFERENCE_FIELD_UPDATER_CLASS_NAME),
+            List.<JCExpression>of(maker.Ident(typeName), genTypeRef(typeNode, lockClass))
+        ),
+        newUpdater
+    ), source, context));
+
+    JCExpression lockField = maker.Select(maker.Ident(typeNode.toName("this")), fieldName);
+    JCStatement publish = maker.Exec(maker.Apply(
+        List.nil(),
+        maker.Select(maker.Ident(updaterName), typeNode.toName("compareAndSet")),
+        List.<JCExpression>of(
+            maker.Ident(typeNode.toName("this")),
+            maker.Literal(CTC_BOT, null),
+            maker.NewClass(
+                null, List.nil(), genTypeRef(typeNode, lockClass), lockConstructorArgs(maker, implementation), null)
+        )
+    ));
+    JCStatement reread = maker.Exec(maker.Assign(
+        maker.Ident(lockVariableName), maker.Select(maker.Ident(typeNode.toName("this")), fieldName)));
+    JCBlock body = maker.Block(0, List.of(
+        maker.VarDef(maker.Modifiers(0), lockVariableName, genTypeRef(typeNode, lockClass), lockField),
+        maker.If(
+            maker.Binary(CTC_EQUAL, maker.Ident(lockVariableName), maker.Literal(CTC_BOT, null)),
+            maker.Block(0, List.of(publish, reread)),
+            null
+        ),
+        maker.Return(maker.Ident(lockVariableName))
+    ));
+    injectMethod(typeNode, recursiveSetGeneratedBy(maker.MethodDef(
+        maker.Modifiers(Flags.PRIVATE),
+        fieldName,
+        genTypeRef(typeNode, lockClass),
+        List.nil(),
+        List.nil(),
+        List.nil(),
+        body,
+        null
+    ), source, context));
+  }
+
+  /**
+   * Creates the expression the lock is read with, for the storage of the lock field:
+   * <pre>
+   * this.&lt;LOCK_NAME&gt;                                                     // INSTANCE
+   * this.&lt;LOCK_NAME&gt;()                                                   // LAZY
+   * Type.&lt;LOCK_NAME&gt;[System.identityHashCode(this) &amp; (Type.&lt;LOCK_NAME&gt;.length - 1)] // SHARED
+   * </pre>
+   * Identity hash codes are random already, so they select a lock without spreading.
+   */
+  private static JCExpression createLockReference(JavacTreeMaker maker, JavacNode node, LockSettings settings) {
+    Name lockFieldName = node.toName(settings.lockFieldName);
+    JCExpression thisNode = maker.Ident(node.toName("this"));
+    if (settings.storage == LockStorage.LAZY) {
+      return maker.Apply(List.nil(), maker.Select(thisNode, lockFieldName), List.nil());
+    }
+    if (settings.storage != LockStorage.SHARED) {
+      return maker.Select(thisNode, lockFieldName);
+    }
+    Name typeName = ((JCClassDecl) upToTypeNode(node).get()).name;
+    JCExpression identityHash = maker.Apply(
+        List.nil(), genJavaLangTypeRef(node, "System", "identityHashCode"), List.<JCExpression>of(thisNode));
+    JCExpression length = maker.Select(maker.Select(maker.Ident(typeName), lockFieldName), node.toName("length"));
+    JCExpression mask = maker.Parens(maker.Binary(CTC_MINUS, length, maker.Literal(1)));
+    JCExpression locks = maker.Select(maker.Ident(typeName), lockFieldName);
+    return maker.Indexed(locks, maker.Binary(CTC_BITAND, identityHash, mask));
+  }
+
+  /**
+   * Detects the storage of an existing lock field: a static array is a {@link LockStorage#SHARED SHARED} pool, and a
+   * {@code volatile} field with an accessor method of the same name is {@link LockStorage#LAZY LAZY}.
+   */
+  private static LockStorage lockStorageOf(JCVariableDecl lockFieldDecl, JavacNode typeNode) {
+    if ((lockFieldDecl.mods.flags & Flags.STATIC) != 0 && lockFieldDecl.vartype instanceof JCArrayTypeTree) {
+      return LockStorage.SHARED;
+    }
+    if ((lockFieldDecl.mods.flags & Flags.VOLATILE) != 0
+        && methodExists(lockFieldDecl.name.toString(), typeNode, true, 0) != MemberExistsResult.NOT_EXISTS) {
+      return LockStorage.LAZY;
+    }
+    return LockStorage.INSTANCE;
+  }
+
+  private static boolean canDeclareStaticFields(JavacNode typeNode) {
+    JavacNode node = typeNode;
+    while (node.getKind() == Kind.TYPE) {
+      JCClassDecl classDecl = (JCClassDecl) node.get();
+      JavacNode parent = node.up();
+      if (classDecl.name.isEmpty() || (classDecl.mods.flags & Flags.INTERFACE) != 0) {
+        return false;
+      }
+      if (parent.getKind() != Kind.TYPE) {
+        return parent.getKind() == Kind.COMPILATION_UNIT;
+      }
+      boolean implicitlyStatic = (classDecl.mods.flags & Flags.ENUM) != 0
+          || (((JCClassDecl) parent.get()).mods.flags & Flags.INTERFACE) != 0;
+      if (!implicitlyStatic && (classDecl.mods.flags & Flags.STATIC) == 0) {
+        return false;
+      }
+      node = parent;
+    }
+    return true;
+  }
+
+  /**
+   * <pre>
+   * final int $stripeHash = Objects.hashCode(key); // or Integer.hashCode(key), Long.hashCode(key), ...
+   * </pre>
+   */
+  private static JCStatement createStripeHash(JavacTreeMaker maker, JavacNode methodNode, JCVariableDecl stripeParam) {
+    String hashOwner = "java.util.Objects";
+    if (stripeParam.vartype instanceof JCPrimitiveTypeTree) {
+      switch (((JCPrimitiveTypeTree) stripeParam.vartype).getPrimitiveTypeKind()) {
+        case BOOLEAN:
+          hashOwner = "java.lang.Boolean";
+          break;
+        case BYTE:
+          hashOwner = "java.lang.Byte";
+          break;
+        case SHORT:
+          hashOwner = "java.lang.Short";
+          break;
+        case CHAR:
+          hashOwner = "java.lang.Character";
+          break;
+        case INT:
+          hashOwner = "java.lang.Integer";
+          break;
+        case LONG:
+          hashOwner = "java.lang.Long";
+          break;
+        case FLOAT:
+          hashOwner = "java.lang.Float";
+          break;
+        default:
+          hashOwner = "java.lang.Double";
+          break;
+      }
+    }
+    JCExpression hash = maker.Apply(
+        List.nil(),
+        genTypeRef(methodNode, hashOwner + ".hashCode"),
+        List.<JCExpression>of(maker.Ident(stripeParam.name))
+    );
+    return maker.VarDef(maker.Modifiers(Flags.FINAL), methodNode.toName("$stripeHash"), maker.TypeIdent(CTC_INT), hash);
+  }
+
+  /**
+   * <pre>
+   * this.&lt;LOCK_NAME&gt;[($stripeHash ^ ($stripeHash &gt;&gt;&gt; 16)) &amp; (this.&lt;LOCK_NAME&gt;.length - 1)]
+   * </pre>
+   */
+  private static JCExpression createStripeSelection(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression locksNode,
+      JCVariableDecl stripeParam,
+      String lockFieldName
+  ) {
+    Name stripeHashName = methodNode.toName("$stripeHash");
+    JCExpression spread = maker.Parens(maker.Binary(
+        CTC_BITXOR,
+        maker.Ident(stripeHashName),
+        maker.Parens(maker.Binary(CTC_UNSIGNED_SHIFT_RIGHT, maker.Ident(stripeHashName), maker.Literal(16)))
+    ));
+    JCExpression length = maker.Select(
+        maker.Select(maker.Ident(methodNode.toName("this")), methodNode.toName(lockFieldName)),
+        methodNode.toName("length")
+    );
+    JCExpression mask = maker.Parens(maker.Binary(CTC_MINUS, length, maker.Literal(1)));
+    return maker.Indexed(locksNode, maker.Binary(CTC_BITAND, spread, mask));
+  }
+
+  private static String resolveLockFieldName(String lockFieldName, JavacNode annotationNode) {
     if (lockFieldName == null || lockFieldName.isEmpty()) {
-      lockFieldName = annotationNode.getAst().readConfiguration(ConfigurationKeys.READ_WRITE_LOCK_DEFAULT_FIELD_NAME);
+      lockFieldName = readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_DEFAULT_FIELD_NAME);
       if (lockFieldName == null || lockFieldName.isEmpty()) {
         lockFieldName = DEFAULT_LOCK_FIELD_NAME;
       }
     }
+    return lockFieldName;
+  }
 
-    if (fieldExists(lockFieldName, methodNode) == MemberExistsResult.NOT_EXISTS) {
-      JCExpression lockType = genTypeRef(methodNode, "java.util.concurrent.locks.ReentrantReadWriteLock");
-      JCExpression newInstance = maker.NewClass(null, List.nil(), lockType, List.nil(), null);
-      JCVariableDecl fieldDecl = recursiveSetGeneratedBy(maker.VarDef(
-          maker.Modifiers(Flags.PRIVATE | Flags.FINAL),
-          methodNode.toName(lockFieldName), lockType, newInstance
-      ), ast, context);
-      injectFieldAndMarkGenerated(methodNode.up(), fieldDecl);
+  private static JavacNode findField(String fieldName, JavacNode typeNode) {
+    for (JavacNode child : typeNode.down()) {
+      if (child.getKind() == Kind.FIELD && ((JCVariableDecl) child.get()).name.contentEquals(fieldName)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  private static LockKind lockKindOf(JCVariableDecl fieldDecl) {
+    JCExpression type = fieldDecl.vartype instanceof JCArrayTypeTree
+        ? ((JCArrayTypeTree) fieldDecl.vartype).elemtype
+        : fieldDecl.vartype;
+    String typeName = type.toString();
+    if (typeName.equals(STAMPED_LOCK_CLASS_NAME) || typeName.equals("StampedLock")) {
+      return LockKind.STAMPED;
+    }
+    if (typeName.equals(REENTRANT_LOCK_CLASS_NAME) || typeName.equals("ReentrantReadWriteLock")) {
+      return LockKind.REENTRANT;
+    }
+    if (typeName.equals(ASYNC_LOCK_CLASS_NAME) || typeName.equals("AsyncReadWriteLock")) {
+      return LockKind.ASYNC;
+    }
+    return LockKind.READ_WRITE_LOCK;
+  }
+
+  private static LockKind lockKindOf(String implementation) {
+    if (REENTRANT_IMPLEMENTATION.equals(implementation) || FAIR_IMPLEMENTATION.equals(implementation)) {
+      return LockKind.REENTRANT;
+    }
+    if (STAMPED_IMPLEMENTATION.equals(implementation)) {
+      return LockKind.STAMPED;
+    }
+    if (ASYNC_IMPLEMENTATION.equals(implementation)) {
+      return LockKind.ASYNC;
+    }
+    return LockKind.READ_WRITE_LOCK;
+  }
+
+  private static String lockClassOf(String implementation) {
+    switch (lockKindOf(implementation)) {
+      case REENTRANT:
+        return REENTRANT_LOCK_CLASS_NAME;
+      case STAMPED:
+        return STAMPED_LOCK_CLASS_NAME;
+      case ASYNC:
+        return ASYNC_LOCK_CLASS_NAME;
+      default:
+        return implementation;
+    }
+  }
+
+  /**
+   * Resolves the storage of a lock field that does not exist yet. A storage given on any {@code @ReadLock} or
+   * {@code @WriteLock} method of the type, that uses the same lock field, wins over
+   * {@code symbok.readWriteLock.storage}.
+   *
+   * @return the storage or {@code null} if an error has been reported
+   */
+  private static LockStorage resolveStorage(
+      String lockFieldName,
+      LockSettings settings,
+      JavacNode typeNode,
+      JavacNode annotationNode
+  ) {
+    LockStorage explicitStorage = settings.storage;
+    for (JavacNode member : typeNode.down()) {
+      if (member.getKind() != Kind.METHOD) {
+        continue;
+      }
+      for (JavacNode child : member.down()) {
+        if (child.getKind() != Kind.ANNOTATION || child == annotationNode) {
+          continue;
+        }
+        LockStorage otherStorage;
+        String otherFieldName;
+        if (annotationTypeMatches(ReadLock.class, child)) {
+          AnnotationValues<ReadLock> readLock = createAnnotation(ReadLock.class, child);
+          otherStorage = readLock.isExplicit("storage") ? readLock.getInstance().storage() : null;
+          otherFieldName = readLock.getInstance().value();
+        }
+        else if (annotationTypeMatches(WriteLock.class, child)) {
+          AnnotationValues<WriteLock> writeLock = createAnnotation(WriteLock.class, child);
+          otherStorage = writeLock.isExplicit("storage") ? writeLock.getInstance().storage() : null;
+          otherFieldName = writeLock.getInstance().value();
+        }
+        else {
+          continue;
+        }
+        if (otherStorage == null || !lockFieldName.equals(resolveLockFieldName(otherFieldName, child))) {
+          continue;
+        }
+        if (explicitStorage == null) {
+          explicitStorage = otherStorage;
+        }
+        else if (explicitStorage != otherStorage) {
+          annotationNode.addError(
+              "Conflicting lock storage for " + lockFieldName + ": " + explicitStorage + " and " + otherStorage + ".");
+          return null;
+        }
+      }
+    }
+    if (explicitStorage == null) {
+      explicitStorage = readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_STORAGE);
+    }
+    return explicitStorage == null ? LockStorage.INSTANCE : explicitStorage;
+  }
+
+  /**
+   * Resolves the lock implementation to create for a lock field that does not exist yet.
+   * <p>
+   * An implementation given on any {@code @ReadLock} or {@code @WriteLock} method of the type, that uses the same lock
+   * field, wins over {@code symbok.readWriteLock.implementation}. Without an explicit implementation a
+   * {@code StampedLock} is created if any method reads the lock optimistically or as a sequence lock.
+   *
+   * @return the implementation or {@code null} if an error has been reported
+   */
+  private static String resolveImplementation(
+      String lockFieldName,
+      LockSettings settings,
+      JavacNode typeNode,
+      JavacNode annotationNode
+  ) {
+    String explicitImplementation = settings.implementation.isEmpty() ? null : settings.implementation;
+    boolean optimistic = settings.mode != LockMode.PESSIMISTIC;
+
+    for (JavacNode member : typeNode.down()) {
+      if (member.getKind() != Kind.METHOD) {
+        continue;
+      }
+      for (JavacNode child : member.down()) {
+        if (child.getKind() != Kind.ANNOTATION || child == annotationNode) {
+          continue;
+        }
+        String otherFieldName;
+        String otherImplementation;
+        if (annotationTypeMatches(ReadLock.class, child)) {
+          ReadLock readLock = createAnnotation(ReadLock.class, child).getInstance();
+          otherFieldName = readLock.value();
+          otherImplementation = readLock.implementation();
+          optimistic |= readLock.mode() != LockMode.PESSIMISTIC
+              && lockFieldName.equals(resolveLockFieldName(otherFieldName, child));
+        }
+        else if (annotationTypeMatches(WriteLock.class, child)) {
+          WriteLock writeLock = createAnnotation(WriteLock.class, child).getInstance();
+          otherFieldName = writeLock.value();
+          otherImplementation = writeLock.implementation();
+        }
+        else {
+          continue;
+        }
+        if (otherImplementation.isEmpty() || !lockFieldName.equals(resolveLockFieldName(otherFieldName, child))) {
+          continue;
+        }
+        if (explicitImplementation == null) {
+          explicitImplementation = otherImplementation;
+        }
+        else if (!explicitImplementation.equals(otherImplementation)) {
+          annotationNode.addError(
+              "Conflicting lock implementations for " + lockFieldName + ": " + explicitImplementation + " and "
+                  + otherImplementation + ".");
+          return null;
+        }
+      }
+    }
+
+    if (explicitImplementation == null) {
+      if (optimistic) {
+        return STAMPED_IMPLEMENTATION;
+      }
+      explicitImplementation =
+          readConfiguration(annotationNode, ConfigurationKeys.READ_WRITE_LOCK_IMPLEMENTATION);
+      if (explicitImplementation == null || explicitImplementation.isEmpty()) {
+        return REENTRANT_IMPLEMENTATION;
+      }
+    }
+
+    if (!REENTRANT_IMPLEMENTATION.equals(explicitImplementation)
+        && !FAIR_IMPLEMENTATION.equals(explicitImplementation)
+        && !STAMPED_IMPLEMENTATION.equals(explicitImplementation)
+        && !ASYNC_IMPLEMENTATION.equals(explicitImplementation)
+        && explicitImplementation.indexOf('.') < 0) {
+      annotationNode.addError(
+          "Unknown lock implementation " + explicitImplementation + ": use " + REENTRANT_IMPLEMENTATION + ", "
+              + FAIR_IMPLEMENTATION + ", " + STAMPED_IMPLEMENTATION + ", " + ASYNC_IMPLEMENTATION
+              + " or the fully qualified name of a java.util.concurrent.locks.ReadWriteLock class.");
+      return null;
     }
+    return explicitImplementation;
+  }
 
-    // ReentrantReadWriteLock.ReadLock/WriteLock $lock = this.anotherLock.readLock()/writeLock();
-    JCExpression lockNode = maker.Select(maker.Ident(methodNode.toName("this")), methodNode.toName(lockFieldName));
-    Name lockMethodName = methodNode.toName(lockMethod);
+  private static JCBlock createLockBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression lockNode,
+      String lockClass,
+      LockAccess access,
+      LockSettings settings,
+      List<JCStatement> onTimeout,
+      JCBlock body,
+      JCTree source
+  ) {
+    Context context = methodNode.getContext();
+
+    // ReentrantReadWriteLock.ReadLock/WriteLock or Lock $lock = this.anotherLock.readLock()/writeLock();
+    Name lockMethodName = methodNode.toName(access.lockMethod);
     JCExpression readLockNode = maker.Apply(List.nil(), maker.Select(lockNode, lockMethodName), List.nil());
     JCExpression readLockType = genTypeRef(methodNode, lockClass);
     Name lockVariableName = methodNode.toName("$lock");
     JCStatement readLockVariable = maker.VarDef(maker.Modifiers(0), lockVariableName, readLockType, readLockNode);
 
-    // $lock.lock();
-    JCExpression readLockLockNode = maker.Select(maker.Ident(lockVariableName), methodNode.toName("lock"));
-    JCStatement readLockLockStatement = maker.Exec(maker.Apply(List.nil(), readLockLockNode, List.nil()));
+    List<JCStatement> lockStatements;
+    JCStatement failureCheck = null;
+    if (settings.isTimed()) {
+      // final boolean $locked = TimedLocks.tryLock($lock, timeout, unit); if (!$locked) { ... }
+      Name lockedVariableName = methodNode.toName("$locked");
+      lockStatements = createTimedAcquireStatements(
+          maker, methodNode, lockedVariableName, maker.TypeIdent(CTC_BOOLEAN), "tryLock", lockVariableName, settings);
+      failureCheck = maker.If(maker.Unary(CTC_NOT, maker.Ident(lockedVariableName)), maker.Block(0, onTimeout), null);
+    }
+    else {
+      // $lock.lock();
+      JCExpression readLockLockNode = maker.Select(maker.Ident(lockVariableName), methodNode.toName("lock"));
+      lockStatements = List.<JCStatement>of(maker.Exec(maker.Apply(List.nil(), readLockLockNode, List.nil())));
+    }
 
     // $lock.unlock();
     JCExpression readLockUnlockNode = maker.Select(maker.Ident(lockVariableName), methodNode.toName("unlock"));
-    List<JCStatement> readLockUnlockStatements = List.of(maker.Exec(
+    List<JCStatement> readLockUnlockStatements = List.<JCStatement>of(maker.Exec(
         maker.Apply(List.nil(), readLockUnlockNode, List.nil())));
 
-    // compose everything together with try/finally block
-    JCTree.JCBlock finalizer = recursiveSetGeneratedBy(maker.Block(0, readLockUnlockStatements), ast, context);
-    method.body = setGeneratedBy(maker.Block(
+    return setGeneratedBy(maker.Block(
+        0,
+        composeLockStatements(
+            maker, methodNode, access, settings, lockStatements, failureCheck, readLockUnlockStatements, body, source
+        ).prepend(readLockVariable)
+    ), source, context);
+  }
+
+  private static JCBlock createStampedLockBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression lockNode,
+      LockAccess access,
+      LockSettings settings,
+      List<JCStatement> onTimeout,
+      JCBlock body,
+      JCTree source
+  ) {
+    Context context = methodNode.getContext();
+    Name lockVariableName = methodNode.toName("$lock");
+
+    // final StampedLock $lock = this.anotherLock;
+    JCStatement lockVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), lockVariableName, genTypeRef(methodNode, STAMPED_LOCK_CLASS_NAME), lockNode);
+
+    return setGeneratedBy(maker.Block(
         0,
+        createStampedLockStatements(maker, methodNode, lockVariableName, access, settings, onTimeout, body, source)
+            .prepend(lockVariable)
+    ), source, context);
+  }
+
+  private static List<JCStatement> createStampedLockStatements(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name lockVariableName,
+      LockAccess access,
+      LockSettings settings,
+      List<JCStatement> onTimeout,
+      JCBlock body,
+      JCTree source
+  ) {
+    Name stampVariableName = methodNode.toName("$stamp");
+
+    List<JCStatement> lockStatements;
+    JCStatement failureCheck = null;
+    if (settings.isTimed()) {
+      // final long $stamp = TimedLocks.tryReadLock/tryWriteLock($lock, timeout, unit); if ($stamp == 0L) { ... }
+      lockStatements = createTimedAcquireStatements(
+          maker, methodNode, stampVariableName, maker.TypeIdent(CTC_LONG), access.stampedTryLockMethod,
+          lockVariableName, settings
+      );
+      failureCheck = maker.If(
+          maker.Binary(CTC_EQUAL, maker.Ident(stampVariableName), maker.Literal(0L)),
+          maker.Block(0, onTimeout),
+          null
+      );
+    }
+    else {
+      // final long $stamp = $lock.readLock()/writeLock();
+      lockStatements = List.<JCStatement>of(maker.VarDef(
+          maker.Modifiers(Flags.FINAL),
+          stampVariableName,
+          maker.TypeIdent(CTC_LONG),
+          callLock(maker, methodNode, lockVariableName, access.lockMethod, List.nil())
+      ));
+    }
+
+    // $lock.unlockRead($stamp)/unlockWrite($stamp);
+    List<JCStatement> unlockStatements = List.<JCStatement>of(maker.Exec(callLock(
+        maker, methodNode, lockVariableName, access.stampedUnlockMethod, List.of(maker.Ident(stampVariableName)))));
+
+    return composeLockStatements(
+        maker, methodNode, access, settings, lockStatements, failureCheck, unlockStatements, body, source);
+  }
+
+  /**
+   * Composes the lock acquisition, the check whether it failed, and the body wrapped in a try/finally block that
+   * releases the lock. Adds the Flight Recorder events around the acquisition and the body, if enabled.
+   */
+  private static List<JCStatement> composeLockStatements(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      LockAccess access,
+      LockSettings settings,
+      List<JCStatement> lockStatements,
+      JCStatement failureCheck,
+      List<JCStatement> unlockStatements,
+      JCBlock body,
+      JCTree source
+  ) {
+    Context context = methodNode.getContext();
+    Name waitEventName = methodNode.toName("$waitEvent");
+    Name holdEventName = methodNode.toName("$holdEvent");
+
+    ListBuffer<JCStatement> statements = new ListBuffer<JCStatement>();
+    if (settings.flightRecorder) {
+      statements.appendList(beginEvent(maker, methodNode, waitEventName, LOCK_WAIT_EVENT_CLASS_NAME));
+    }
+    statements.appendList(lockStatements);
+    if (settings.flightRecorder) {
+      statements.append(commitEvent(maker, methodNode, waitEventName, access, settings));
+    }
+    if (failureCheck != null) {
+      statements.append(failureCheck);
+    }
+    if (settings.flightRecorder) {
+      statements.appendList(beginEvent(maker, methodNode, holdEventName, LOCK_HOLD_EVENT_CLASS_NAME));
+      unlockStatements = unlockStatements.append(commitEvent(maker, methodNode, holdEventName, access, settings));
+    }
+
+    for (JCStatement statement : statements) {
+      recursiveSetGeneratedBy(statement, source, context);
+    }
+
+    // compose everything together with try/finally block
+    JCBlock finalizer = recursiveSetGeneratedBy(maker.Block(0, unlockStatements), source, context);
+    statements.append(setGeneratedBy(maker.Try(body, List.nil(), finalizer), source, context));
+    return statements.toList();
+  }
+
+  /**
+   * <pre>
+   * final LockWaitEvent/LockHoldEvent $event = new LockWaitEvent/LockHoldEvent();
+   * $event.begin();
+   * </pre>
+   */
+  private static List<JCStatement> beginEvent(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name eventName,
+      String eventClass
+  ) {
+    JCExpression newEvent = maker.NewClass(null, List.nil(), genTypeRef(methodNode, eventClass), List.nil(), null);
+    return List.of(
+        maker.VarDef(maker.Modifiers(Flags.FINAL), eventName, genTypeRef(methodNode, eventClass), newEvent),
+        maker.Exec(maker.Apply(List.nil(), maker.Select(maker.Ident(eventName), methodNode.toName("begin")), List.nil()))
+    );
+  }
+
+  /**
+   * <pre>
+   * $event.commit(Owner.class, "method", "lockField", "read"/"write");
+   * </pre>
+   */
+  private static JCStatement commitEvent(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name eventName,
+      LockAccess access,
+      LockSettings settings
+  ) {
+    JCClassDecl typeDecl = (JCClassDecl) upToTypeNode(methodNode).get();
+    JCExpression ownerClass = typeDecl.name.isEmpty()
+        ? maker.Apply(List.nil(), maker.Select(maker.Ident(methodNode.toName("this")), methodNode.toName("getClass")),
+                      List.nil())
+        : maker.Select(maker.Ident(typeDecl.name), methodNode.toName("class"));
+    List<JCExpression> args = List.of(
+        ownerClass,
+        maker.Literal(settings.methodName),
+        maker.Literal(settings.lockFieldName),
+        maker.Literal(access.description)
+    );
+    return maker.Exec(maker.Apply(List.nil(), maker.Select(maker.Ident(eventName), methodNode.toName("commit")), args));
+  }
+
+  /**
+   * Creates a bounded lock acquisition through {@code TimedLocks}, which treats an interrupt like a timeout, so the
+   * exception handler stays out of the locked method:
+   * <pre>
+   * final T $variable = TimedLocks.&lt;tryLockMethod&gt;($lock, timeout, unit);
+   * </pre>
+   */
+  private static List<JCStatement> createTimedAcquireStatements(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name variableName,
+      JCExpression variableType,
+      String tryLockMethod,
+      Name lockVariableName,
+      LockSettings settings
+  ) {
+    JCExpression tryLock = maker.Apply(
+        List.nil(),
+        genTypeRef(methodNode, TIMED_LOCKS_CLASS_NAME + "." + tryLockMethod),
         List.of(
-            readLockVariable,
-            readLockLockStatement,
-            setGeneratedBy(maker.Try(method.body, List.nil(), finalizer), ast, context)
+            maker.Ident(lockVariableName),
+            maker.Literal(settings.timeout),
+            genTypeRef(methodNode, "java.util.concurrent.TimeUnit." + settings.unit.name())
         )
-    ), ast, context);
+    );
+    return List.<JCStatement>of(maker.VarDef(maker.Modifiers(Flags.FINAL), variableName, variableType, tryLock));
+  }
 
-    methodNode.rebuild();
+  /**
+   * Creates the statements run when the lock could not be acquired in time, according to
+   * {@link LockSettings#onTimeout}.
+   */
+  private static List<JCStatement> createTimeoutStatements(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      LockSettings settings,
+      LockAccess access,
+      String lockFieldName
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    boolean returnsVoid = returnsVoid(method);
+
+    switch (settings.onTimeout) {
+      case RETURN_DEFAULT:
+        return List.<JCStatement>of(maker.Return(returnsVoid ? null : defaultValue(maker, method.restype)));
+      case FALLBACK:
+        JCExpression fallbackCall = callWithParams(maker, methodNode, methodNode.toName(settings.fallback));
+        return returnsVoid
+            ? List.<JCStatement>of(maker.Exec(fallbackCall), maker.Return(null))
+            : List.<JCStatement>of(maker.Return(fallbackCall));
+      default:
+        String message = "Timed out after " + settings.timeout + " " + settings.unit + " waiting for the "
+            + access.description + " lock " + lockFieldName + " in " + method.name;
+        JCExpression exception = maker.NewClass(
+            null,
+            List.nil(),
+            genTypeRef(methodNode, LOCK_TIMEOUT_EXCEPTION_CLASS_NAME),
+            List.<JCExpression>of(maker.Literal(message)),
+            null
+        );
+        return List.<JCStatement>of(maker.Throw(exception));
+    }
+  }
+
+  private static JCExpression defaultValue(JavacTreeMaker maker, JCExpression type) {
+    if (!(type instanceof JCPrimitiveTypeTree)) {
+      return maker.Literal(CTC_BOT, null);
+    }
+    if (((JCPrimitiveTypeTree) type).getPrimitiveTypeKind() == TypeKind.BOOLEAN) {
+      return maker.Literal(false);
+    }
+    return maker.Literal(0);
+  }
+
+  static boolean returnsVoid(JCMethodDecl method) {
+    return method.restype instanceof JCPrimitiveTypeTree
+        && ((JCPrimitiveTypeTree) method.restype).getPrimitiveTypeKind() == TypeKind.VOID;
+  }
+
+  static boolean returnsCompletionStage(JCMethodDecl method) {
+    JCExpression type = method.restype instanceof JCTypeApply ? ((JCTypeApply) method.restype).clazz : method.restype;
+    if (type == null) {
+      return false;
+    }
+    String typeName = type.toString();
+    return typeName.equals("CompletionStage")
+        || typeName.equals("java.util.concurrent.CompletionStage")
+        || typeName.equals("CompletableFuture")
+        || typeName.equals("java.util.concurrent.CompletableFuture");
+  }
+
+  /**
+   * Replaces the method body, already moved into the private {@code $unlocked$<method>} method, with:
+   * <pre>
+   * return this.&lt;LOCK_NAME&gt;.read(() -&gt; this.$unlocked$method(params)); // or write(...)
+   * </pre>
+   * The {@code AsyncReadWriteLock} runs the lambda once the lock is available and releases the lock when the stage it
+   * returns completes.
+   */
+  private static JCBlock createAsyncLockBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression lockNode,
+      LockAccess access,
+      Name unlockedName,
+      JCTree source
+  ) {
+    JCExpression lambda = maker.getUnderlyingTreeMaker().Lambda(
+        List.<JCVariableDecl>nil(), callWithParams(maker, methodNode, unlockedName));
+    JCExpression lockCall = maker.Apply(
+        List.nil(),
+        maker.Select(lockNode, methodNode.toName(access.description)),
+        List.of(lambda)
+    );
+    return recursiveSetGeneratedBy(
+        maker.Block(0, List.<JCStatement>of(maker.Return(lockCall))), source, methodNode.getContext());
+  }
+
+  /**
+   * Replaces the method body, already moved into the private {@code $unlocked$<method>} method, with:
+   * <pre>
+   * final StampedLock $lock = this.&lt;LOCK_NAME&gt;;
+   * final long $optimisticStamp = $lock.tryOptimisticRead();
+   * if ($optimisticStamp != 0L) {
+   *   try {
+   *     final T $result = this.$unlocked$method(params);
+   *     if ($lock.validate($optimisticStamp)) return $result;
+   *   } catch (final Throwable $ex) {
+   *     if ($lock.validate($optimisticStamp)) throw $ex;
+   *   }
+   * }
+   * return this.$locked$method(params);
+   * </pre>
+   * The fallback to the read lock moves into a private method, so the optimistic read stays small enough to be inlined:
+   * <pre>
+   * private T $locked$method(params) {
+   *   final StampedLock $lock = this.&lt;LOCK_NAME&gt;;
+   *   final long $stamp = $lock.readLock();
+   *   try {
+   *     return this.$unlocked$method(params);
+   *   } finally {
+   *     $lock.unlockRead($stamp);
+   *   }
+   * }
+   * </pre>
+   */
+  private static JCBlock createOptimisticReadBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression lockNode,
+      Name unlockedName,
+      LockSettings settings,
+      List<JCStatement> onTimeout,
+      JCVariableDecl stripeParam,
+      JCTree source
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    Context context = methodNode.getContext();
+    boolean returnsVoid = returnsVoid(method);
+
+    Name lockVariableName = methodNode.toName("$lock");
+    Name optimisticStampName = methodNode.toName("$optimisticStamp");
+    Name resultName = methodNode.toName("$result");
+    Name exceptionName = methodNode.toName("$ex");
+
+    // final StampedLock $lock = this.anotherLock;
+    JCStatement lockVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), lockVariableName, genTypeRef(methodNode, STAMPED_LOCK_CLASS_NAME), lockNode);
+
+    // final long $optimisticStamp = $lock.tryOptimisticRead();
+    JCStatement optimisticStampVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        optimisticStampName,
+        maker.TypeIdent(CTC_LONG),
+        callLock(maker, methodNode, lockVariableName, "tryOptimisticRead", List.nil())
+    );
+
+    // try { ...; if ($lock.validate($optimisticStamp)) return ...; } catch (Throwable $ex) { ... throw $ex; }
+    ListBuffer<JCStatement> optimisticStatements = new ListBuffer<JCStatement>();
+    JCStatement returnStatement;
+    if (returnsVoid) {
+      optimisticStatements.append(maker.Exec(callWithParams(maker, methodNode, unlockedName)));
+      returnStatement = maker.Return(null);
+    }
+    else {
+      optimisticStatements.append(maker.VarDef(
+          maker.Modifiers(Flags.FINAL),
+          resultName,
+          cloneType(maker, method.restype, source, context),
+          callWithParams(maker, methodNode, unlockedName)
+      ));
+      returnStatement = maker.Return(maker.Ident(resultName));
+    }
+    optimisticStatements.append(maker.If(validate(maker, methodNode, lockVariableName, optimisticStampName),
+                                         returnStatement, null));
+    JCVariableDecl exceptionVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), exceptionName, genTypeRef(methodNode, "java.lang.Throwable"), null);
+    JCBlock rethrowBlock = maker.Block(0, List.of(maker.If(
+        validate(maker, methodNode, lockVariableName, optimisticStampName),
+        maker.Throw(maker.Ident(exceptionName)), null)));
+    JCStatement optimisticTry = maker.Try(
+        maker.Block(0, optimisticStatements.toList()),
+        List.of(maker.Catch(exceptionVariable, rethrowBlock)),
+        null
+    );
+
+    // if ($optimisticStamp != 0L) { ... }
+    JCStatement optimisticRead = maker.If(
+        maker.Binary(CTC_NOT_EQUAL, maker.Ident(optimisticStampName), maker.Literal(0L)),
+        maker.Block(0, List.of(optimisticTry)),
+        null
+    );
+
+    // fall back to the read lock in $locked$<method>, which repeats the stripe selection of a striped lock
+    ListBuffer<JCStatement> lockedStatements = new ListBuffer<JCStatement>();
+    if (stripeParam != null) {
+      lockedStatements.append(createStripeHash(maker, methodNode, stripeParam));
+    }
+    lockedStatements.append(maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        lockVariableName,
+        genTypeRef(methodNode, STAMPED_LOCK_CLASS_NAME),
+        new TreeCopier<Void>(maker.getUnderlyingTreeMaker()).copy(lockNode)
+    ));
+    JCStatement unlockedCall = returnsVoid
+        ? maker.Exec(callWithParams(maker, methodNode, unlockedName))
+        : maker.Return(callWithParams(maker, methodNode, unlockedName));
+    lockedStatements.appendList(createStampedLockStatements(
+        maker, methodNode, lockVariableName, LockAccess.READ, settings, onTimeout,
+        maker.Block(0, List.of(unlockedCall)), source
+    ));
+    Name lockedName = methodNode.toName(LOCKED_PREFIX + method.name);
+    JCMethodDecl locked = createUnlockedMethod(maker, methodNode, lockedName, Flags.PRIVATE, source);
+    locked.body = recursiveSetGeneratedBy(maker.Block(0, lockedStatements.toList()), source, context);
+    injectMethod(methodNode.up(), locked);
+
+    JCStatement lockedCall = returnsVoid
+        ? maker.Exec(callWithParams(maker, methodNode, lockedName))
+        : maker.Return(callWithParams(maker, methodNode, lockedName));
+    return recursiveSetGeneratedBy(maker.Block(
+        0,
+        List.of(lockVariable, optimisticStampVariable, optimisticRead, lockedCall)
+    ), source, context);
+  }
+
+  /**
+   * Replaces the method body, already moved into the private {@code $unlocked$<method>} method, with a sequence lock
+   * read that retries until no write interfered, and never takes the read lock:
+   * <pre>
+   * final StampedLock $lock = this.&lt;LOCK_NAME&gt;;
+   * while (true) {
+   *   final long $sequence = $lock.tryOptimisticRead();
+   *   if ($sequence == 0L) {
+   *     Thread.yield();
+   *   } else {
+   *     try {
+   *       final T $result = this.$unlocked$method(params);
+   *       if ($lock.validate($sequence)) return $result;
+   *     } catch (final Throwable $ex) {
+   *       if ($lock.validate($sequence)) throw $ex;
+   *     }
+   *   }
+   * }
+   * </pre>
+   * {@code validate} issues the load fence that keeps the reads of the method body before the second read of the
+   * lock state.
+   */
+  private static JCBlock createSequenceReadBody(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      JCExpression lockNode,
+      Name unlockedName,
+      JCTree source
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    Context context = methodNode.getContext();
+    boolean returnsVoid = returnsVoid(method);
+
+    Name lockVariableName = methodNode.toName("$lock");
+    Name sequenceName = methodNode.toName("$sequence");
+    Name resultName = methodNode.toName("$result");
+    Name exceptionName = methodNode.toName("$ex");
+
+    // final StampedLock $lock = this.anotherLock;
+    JCStatement lockVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), lockVariableName, genTypeRef(methodNode, STAMPED_LOCK_CLASS_NAME), lockNode);
+
+    // final long $sequence = $lock.tryOptimisticRead();
+    JCStatement sequenceVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL),
+        sequenceName,
+        maker.TypeIdent(CTC_LONG),
+        callLock(maker, methodNode, lockVariableName, "tryOptimisticRead", List.nil())
+    );
+
+    // try { ...; if ($lock.validate($sequence)) return ...; } catch (Throwable $ex) { ... throw $ex; }
+    ListBuffer<JCStatement> readStatements = new ListBuffer<JCStatement>();
+    JCStatement returnStatement;
+    if (returnsVoid) {
+      readStatements.append(maker.Exec(callWithParams(maker, methodNode, unlockedName)));
+      returnStatement = maker.Return(null);
+    }
+    else {
+      readStatements.append(maker.VarDef(
+          maker.Modifiers(Flags.FINAL),
+          resultName,
+          cloneType(maker, method.restype, source, context),
+          callWithParams(maker, methodNode, unlockedName)
+      ));
+      returnStatement = maker.Return(maker.Ident(resultName));
+    }
+    readStatements.append(maker.If(validate(maker, methodNode, lockVariableName, sequenceName), returnStatement, null));
+    JCVariableDecl exceptionVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), exceptionName, genTypeRef(methodNode, "java.lang.Throwable"), null);
+    JCBlock rethrowBlock = maker.Block(0, List.of(maker.If(
+        validate(maker, methodNode, lockVariableName, sequenceName),
+        maker.Throw(maker.Ident(exceptionName)), null)));
+    JCStatement read = maker.Try(
+        maker.Block(0, readStatements.toList()),
+        List.of(maker.Catch(exceptionVariable, rethrowBlock)),
+        null
+    );
+
+    // a writer holds the lock: let it run instead of spinning
+    JCStatement yieldToWriter = maker.Exec(maker.Apply(
+        List.nil(), genJavaLangTypeRef(methodNode, "Thread", "yield"), List.nil()));
+
+    JCStatement retry = maker.WhileLoop(
+        maker.Literal(true),
+        maker.Block(0, List.of(
+            sequenceVariable,
+            maker.If(
+                maker.Binary(CTC_EQUAL, maker.Ident(sequenceName), maker.Literal(0L)),
+                maker.Block(0, List.of(yieldToWriter)),
+                maker.Block(0, List.of(read))
+            )
+        ))
+    );
+
+    return recursiveSetGeneratedBy(maker.Block(0, List.of(lockVariable, retry)), source, context);
+  }
+
+  /**
+   * Replaces the method body, already moved into the private {@code $unlocked$<method>} method, with a copy of it run
+   * under the read lock, in which {@code LockUpgrade.toWriteLock()} promotes the lock:
+   * <pre>
+   * final StampedLock $lock = this.&lt;LOCK_NAME&gt;;
+   * long $stamp = $lock.readLock();
+   * try {
+   *   ...
+   *   {
+   *     final long $writeStamp = $lock.tryConvertToWriteLock($stamp);
+   *     if ($writeStamp != 0L) {
+   *       $stamp = $writeStamp;
+   *     } else {
+   *       $lock.unlockRead($stamp);
+   *       $stamp = $lock.writeLock();
+   *       return this.$unlocked$method(params);
+   *     }
+   *   }
+   *   ...
+   * } finally {
+   *   $lock.unlock($stamp);
+   * }
+   * </pre>
+   * The conversion fails while other readers hold the lock. The method then starts over in
+   * {@code $unlocked$<method>}, where the upgrade does nothing, so its checks see the state under the write lock.
+   */
+  private static JCBlock createUpgradableReadBody(
+      final JavacTreeMaker maker,
+      final JavacNode methodNode,
+      JCExpression lockNode,
+      final Name unlockedName,
+      LockSettings settings,
+      JCBlock body,
+      final JCTree source
+  ) {
+    final Context context = methodNode.getContext();
+    final boolean returnsVoid = returnsVoid((JCMethodDecl) methodNode.get());
+    final Name lockVariableName = methodNode.toName("$lock");
+    final Name stampVariableName = methodNode.toName("$stamp");
+    final Name writeStampName = methodNode.toName("$writeStamp");
+
+    // final StampedLock $lock = this.anotherLock;
+    JCStatement lockVariable = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), lockVariableName, genTypeRef(methodNode, STAMPED_LOCK_CLASS_NAME), lockNode);
+
+    // long $stamp = $lock.readLock();
+    List<JCStatement> lockStatements = List.<JCStatement>of(maker.VarDef(
+        maker.Modifiers(0),
+        stampVariableName,
+        maker.TypeIdent(CTC_LONG),
+        callLock(maker, methodNode, lockVariableName, LockAccess.READ.lockMethod, List.nil())
+    ));
+
+    // $lock.unlock($stamp);
+    List<JCStatement> unlockStatements = List.<JCStatement>of(maker.Exec(callLock(
+        maker, methodNode, lockVariableName, "unlock", List.<JCExpression>of(maker.Ident(stampVariableName)))));
+
+    JCBlock upgradedBody = replaceLockUpgrades(body, new Function<JCStatement, JCStatement>() {
+      @Override
+      public JCStatement apply(JCStatement upgrade) {
+        maker.at(upgrade.pos);
+        JCStatement writeStamp = maker.VarDef(
+            maker.Modifiers(Flags.FINAL),
+            writeStampName,
+            maker.TypeIdent(CTC_LONG),
+            callLock(
+                maker, methodNode, lockVariableName, "tryConvertToWriteLock",
+                List.<JCExpression>of(maker.Ident(stampVariableName))
+            )
+        );
+        JCStatement converted = maker.Exec(maker.Assign(maker.Ident(stampVariableName), maker.Ident(writeStampName)));
+        JCExpression startOver = callWithParams(maker, methodNode, unlockedName);
+        JCBlock reacquire = maker.Block(0, List.of(
+            maker.Exec(callLock(
+                maker, methodNode, lockVariableName, LockAccess.READ.stampedUnlockMethod,
+                List.<JCExpression>of(maker.Ident(stampVariableName))
+            )),
+            maker.Exec(maker.Assign(
+                maker.Ident(stampVariableName),
+                callLock(maker, methodNode, lockVariableName, LockAccess.WRITE.lockMethod, List.nil())
+            )),
+            returnsVoid ? maker.Exec(startOver) : maker.Return(startOver)
+        ));
+        if (returnsVoid) {
+          reacquire.stats = reacquire.stats.append(maker.Return(null));
+        }
+        JCStatement convert = maker.If(
+            maker.Binary(CTC_NOT_EQUAL, maker.Ident(writeStampName), maker.Literal(0L)),
+            maker.Block(0, List.of(converted)),
+            reacquire
+        );
+        return recursiveSetGeneratedBy(maker.Block(0, List.of(writeStamp, convert)), source, context);
+      }
+    });
+    maker.at(source.pos);
+
+    return setGeneratedBy(maker.Block(
+        0,
+        composeLockStatements(
+            maker, methodNode, LockAccess.READ, settings, lockStatements, null, unlockStatements, upgradedBody, source
+        ).prepend(recursiveSetGeneratedBy(lockVariable, source, context))
+    ), source, context);
+  }
+
+  /**
+   * Reports calls of {@code LockUpgrade.toWriteLock()} in lambdas and nested classes of an upgradable read, which can
+   * not promote its lock, and assignments to its parameters, which would be lost when it starts over.
+   *
+   * @return whether the body is valid
+   */
+  private static boolean checkUpgradableBody(
+      JCMethodDecl method,
+      final String annotationName,
+      final JavacNode annotationNode
+  ) {
+    final Set<Name> paramNames = new HashSet<Name>();
+    for (JCVariableDecl param : method.params) {
+      paramNames.add(param.name);
+    }
+    final boolean[] valid = {true};
+
+    new TreeScanner() {
+      private int nesting;
+
+      @Override
+      public void visitApply(JCMethodInvocation invocation) {
+        if (nesting > 0 && isLockUpgrade(invocation)) {
+          annotationNode.addError(
+              "LockUpgrade.toWriteLock() can not promote the lock of " + annotationName + " from a lambda or a nested "
+                  + "class.");
+          valid[0] = false;
+        }
+        super.visitApply(invocation);
+      }
+
+      @Override
+      public void visitAssign(JCAssign assign) {
+        checkParamAssignment(assign.lhs);
+        super.visitAssign(assign);
+      }
+
+      @Override
+      public void visitAssignop(JCAssignOp assign) {
+        checkParamAssignment(assign.lhs);
+        super.visitAssignop(assign);
+      }
+
+      @Override
+      public void visitUnary(JCUnary unary) {
+        switch (unary.getKind()) {
+          case PREFIX_INCREMENT:
+          case PREFIX_DECREMENT:
+          case POSTFIX_INCREMENT:
+          case POSTFIX_DECREMENT:
+            checkParamAssignment(unary.arg);
+            break;
+          default:
+            break;
+        }
+        super.visitUnary(unary);
+      }
+
+      @Override
+      public void visitLambda(JCLambda lambda) {
+        nesting++;
+        super.visitLambda(lambda);
+        nesting--;
+      }
+
+      @Override
+      public void visitClassDef(JCClassDecl classDecl) {
+        nesting++;
+        super.visitClassDef(classDecl);
+        nesting--;
+      }
+
+      private void checkParamAssignment(JCExpression target) {
+        if (nesting == 0 && target instanceof JCIdent && paramNames.contains(((JCIdent) target).name)) {
+          annotationNode.addError(
+              annotationName + "(mode = UPGRADABLE) can not assign the parameter " + target + ", the method may "
+                  + "start over with its original value.");
+          valid[0] = false;
+        }
+      }
+    }.scan(method.body);
+    return valid[0];
+  }
+
+  /**
+   * Replaces the {@code LockUpgrade.toWriteLock();} statements of a method body, outside of lambdas and nested
+   * classes.
+   */
+  private static JCBlock replaceLockUpgrades(JCBlock body, final Function<JCStatement, JCStatement> replacement) {
+    return new TreeTranslator() {
+      @Override
+      public void visitExec(JCExpressionStatement statement) {
+        result = isLockUpgrade(statement.expr) ? replacement.apply(statement) : statement;
+      }
+
+      @Override
+      public void visitLambda(JCLambda lambda) {
+        result = lambda;
+      }
+
+      @Override
+      public void visitClassDef(JCClassDecl classDecl) {
+        result = classDecl;
+      }
+    }.translate(body);
+  }
+
+  /**
+   * Whether an expression calls {@code LockUpgrade.toWriteLock()}, qualified by the simple or the fully qualified
+   * class name.
+   */
+  private static boolean isLockUpgrade(JCExpression expression) {
+    if (!(expression instanceof JCMethodInvocation)
+        || !(((JCMethodInvocation) expression).meth instanceof JCFieldAccess)) {
+      return false;
+    }
+    JCFieldAccess method = (JCFieldAccess) ((JCMethodInvocation) expression).meth;
+    if (!method.name.contentEquals(LOCK_UPGRADE_METHOD_NAME)) {
+      return false;
+    }
+    String className = method.selected.toString();
+    return className.equals(LOCK_UPGRADE_CLASS_NAME)
+        || className.equals(LOCK_UPGRADE_CLASS_NAME.substring(LOCK_UPGRADE_CLASS_NAME.lastIndexOf('.') + 1));
+  }
+
+  /**
+   * Creates a copy of the method signature that takes over the original method body. A constructor is copied to a
+   * {@code void} method.
+   */
+  static JCMethodDecl createUnlockedMethod(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name unlockedName,
+      long flags,
+      JCTree source
+  ) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    Context context = methodNode.getContext();
+
+    ListBuffer<JCVariableDecl> params = new ListBuffer<JCVariableDecl>();
+    for (JCVariableDecl param : method.params) {
+      // the type reference helpers reset the tree maker to position -1; javac's flow analysis ignores parameters
+      // positioned before the class
+      params.append(maker.at(param.pos).VarDef(
+          maker.Modifiers(param.mods.flags),
+          param.name,
+          cloneType(maker, param.vartype, source, context),
+          null
+      ));
+    }
+
+    JCMethodDecl unlocked = maker.MethodDef(
+        maker.Modifiers(flags | (method.mods.flags & Flags.STATIC)),
+        unlockedName,
+        method.restype == null ? maker.TypeIdent(CTC_VOID) : cloneType(maker, method.restype, source, context),
+        copyTypeParams(methodNode, method.typarams),
+        params.toList(),
+        cloneTypes(maker, method.thrown, source, context),
+        method.body,
+        null
+    );
+    return setGeneratedBy(unlocked, source, context);
+  }
+
+  /**
+   * Calls {@code this.<name>(params)} with the parameters of the annotated method.
+   */
+  private static JCExpression callWithParams(JavacTreeMaker maker, JavacNode methodNode, Name name) {
+    return callWithParams(maker, methodNode, maker.Ident(methodNode.toName("this")), name);
+  }
+
+  /**
+   * Calls {@code <receiver>.<name>(params)} with the parameters of the annotated method.
+   */
+  static JCExpression callWithParams(JavacTreeMaker maker, JavacNode methodNode, JCExpression receiver, Name name) {
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    ListBuffer<JCExpression> args = new ListBuffer<JCExpression>();
+    for (JCVariableDecl param : method.params) {
+      args.append(maker.Ident(param.name));
+    }
+    return maker.Apply(List.nil(), maker.Select(receiver, name), args.toList());
+  }
+
+  private static JCExpression callLock(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name lockVariableName,
+      String method,
+      List<JCExpression> args
+  ) {
+    return maker.Apply(List.nil(), maker.Select(maker.Ident(lockVariableName), methodNode.toName(method)), args);
+  }
+
+  private static JCExpression validate(
+      JavacTreeMaker maker,
+      JavacNode methodNode,
+      Name lockVariableName,
+      Name stampVariableName
+  ) {
+    return callLock(maker, methodNode, lockVariableName, "validate", List.of(maker.Ident(stampVariableName)));
   }
 }
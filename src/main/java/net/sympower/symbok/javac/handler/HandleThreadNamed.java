@@ -25,33 +25,59 @@ import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCAnnotation;
 import com.sun.tools.javac.tree.JCTree.JCAssign;
 import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCLiteral;
 import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
-import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
+import com.sun.tools.javac.tree.JCTree.JCPrimitiveTypeTree;
 import com.sun.tools.javac.tree.JCTree.JCStatement;
 import com.sun.tools.javac.tree.JCTree.JCTry;
+import com.sun.tools.javac.tree.JCTree.JCTypeParameter;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import com.sun.tools.javac.util.Name;
 import lombok.core.AnnotationValues;
 import lombok.javac.Javac;
 import lombok.javac.JavacAnnotationHandler;
 import lombok.javac.JavacNode;
 import lombok.javac.JavacTreeMaker;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
+import net.sympower.symbok.ThreadNameMode;
 import net.sympower.symbok.ThreadNamed;
 import org.kohsuke.MetaInfServices;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import static com.sun.tools.javac.code.Flags.ABSTRACT;
 import static com.sun.tools.javac.code.Flags.FINAL;
+import static com.sun.tools.javac.code.Flags.INTERFACE;
+import static com.sun.tools.javac.code.Flags.PARAMETER;
+import static com.sun.tools.javac.code.Flags.PRIVATE;
+import static com.sun.tools.javac.code.Flags.STATIC;
 import static com.sun.tools.javac.util.List.nil;
-import static lombok.core.handlers.HandlerUtil.handleFlagUsage;
+import static lombok.javac.Javac.CTC_PLUS;
+import static lombok.javac.Javac.CTC_VOID;
 import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
 import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
 import static lombok.javac.handlers.JavacHandlerUtil.inNetbeansEditor;
+import static lombok.javac.handlers.JavacHandlerUtil.injectMethod;
 import static lombok.javac.handlers.JavacHandlerUtil.isConstructorCall;
+import static lombok.javac.handlers.JavacHandlerUtil.methodExists;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
 import static lombok.javac.handlers.JavacHandlerUtil.setGeneratedBy;
 import static net.sympower.symbok.ConfigurationKeys.THREAD_NAMED_FLAG_USAGE;
+import static net.sympower.symbok.ConfigurationKeys.THREAD_NAMED_MODE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.readConfiguration;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.callWithParams;
+import static net.sympower.symbok.javac.handler.HandleReadWriteLock.createUnlockedMethod;
+import static net.sympower.symbok.javac.handler.HandleTimed.qualifiedTypeName;
 
 /**
  * Handles the {@link ThreadNamed} annotation for javac.
@@ -61,6 +87,19 @@ import static net.sympower.symbok.ConfigurationKeys.THREAD_NAMED_FLAG_USAGE;
 @MetaInfServices(JavacAnnotationHandler.class)
 public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
 
+  private static final String THREAD_NAMES_CLASS_NAME = "net.sympower.symbok.runtime.ThreadNames";
+
+  private static final String RENAME_THREAD_NAME = "$renameThread";
+
+  private static final String RESTORE_THREAD_NAME_NAME = "$restoreThreadName";
+
+  private static final String THREAD_NAME_PREFIX = "$threadName$";
+
+  private static final Set<String> INTEGRAL_TYPE_NAMES = new HashSet<String>(Arrays.asList(
+      "Byte", "Short", "Integer", "Long", "BigInteger",
+      "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.math.BigInteger"
+  ));
+
   /**
    * lombok configuration: <pre>
    * hm.binkley.lombok.threadNamed.flagUsage} = WARNING | ERROR</pre>
@@ -83,15 +122,32 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
     }
 
     final JCAnnotation anno = (JCAnnotation) annotationNode.get();
-    final List<JCExpression> args = anno.args;
-    final JCExpression threadName = ((JCAssign) args.get(0))
-        .getExpression(); // Must be present
+    JCExpression threadName = null;
+    for (final JCExpression arg : anno.args) {
+      // lombok only rewrites a lone value to value = ... in member types
+      if (!(arg instanceof JCAssign)) {
+        threadName = arg;
+        continue;
+      }
+      final JCAssign assign = (JCAssign) arg;
+      if (assign.lhs.toString().equals("value")) {
+        threadName = assign.getExpression(); // Must be present
+      }
+    }
+
+    ThreadNameMode mode = annotation.getInstance().mode();
+    if (!annotation.isExplicit("mode")) {
+      final ThreadNameMode configuredMode = readConfiguration(annotationNode, THREAD_NAMED_MODE);
+      if (null != configuredMode) {
+        mode = configuredMode;
+      }
+    }
 
     final JavacNode owner = annotationNode.up();
     switch (owner.getKind()) {
       case METHOD:
         handleMethod(annotationNode, (JCMethodDecl) owner.get(),
-                     threadName
+                     threadName, mode
         );
         break;
       default:
@@ -103,7 +159,8 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
 
   private static void handleMethod(
       final JavacNode annotation,
-      final JCMethodDecl method, final JCExpression threadName
+      final JCMethodDecl method, final JCExpression threadName,
+      final ThreadNameMode mode
   ) {
     final JavacNode methodNode = annotation.up();
 
@@ -128,9 +185,16 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
       return;
     }
 
+    final JCExpression name = threadNameOf(methodNode, threadName,
+                                           annotation.get()
+    );
     final List<JCStatement> wrapped = List
-        .of(renameThreadWhileIn(methodNode, contents, threadName,
-                                method.params, annotation.get()
+        .of(ThreadNameMode.LOGICAL == mode
+            ? nameThreadLogicallyWhileIn(methodNode, contents, name,
+                                         annotation.get()
+        )
+            : renameThreadWhileIn(methodNode, contents, name,
+                                  annotation.get()
         ));
     method.body.stats = isConstructorCall ? List.of(constructorCall)
         .appendList(wrapped) : wrapped;
@@ -156,35 +220,109 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
     }
   }
 
+  /**
+   * Returns the thread name of a call. A name built from the parameters is
+   * moved into a generated private method, so the annotated method stays
+   * small enough for the JIT to inline: <pre>
+   * private String $threadName$method(params) {
+   *   return threadName;
+   * }</pre>
+   */
+  private static JCExpression threadNameOf(
+      final JavacNode methodNode,
+      final JCExpression threadNameFormat, final JCTree source
+  ) {
+    final JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    final JavacTreeMaker maker = methodNode.getTreeMaker();
+    final JCExpression threadName = threadName(methodNode, maker,
+                                               threadNameFormat, method.params
+    );
+    final JavacNode typeNode = methodNode.up();
+    if (method.params.isEmpty() || !(typeNode.get() instanceof JCClassDecl)
+        || 0 != (((JCClassDecl) typeNode.get()).mods.flags & INTERFACE)) {
+      return threadName;
+    }
+
+    final Name helperName = methodNode.toName(THREAD_NAME_PREFIX
+        + (null == method.restype ? "new" : method.name.toString()));
+    final JCMethodDecl helper = createUnlockedMethod(maker, methodNode,
+                                                     helperName, PRIVATE, source
+    );
+    helper.restype = genJavaLangTypeRef(methodNode, "String");
+    helper.thrown = nil();
+    helper.body = maker.Block(0, List.<JCStatement>of(maker.Return(threadName)));
+    injectMethod(typeNode, recursiveSetGeneratedBy(helper, source,
+                                                   methodNode.getContext()
+    ));
+
+    final JCExpression receiver = 0 != (method.mods.flags & STATIC)
+                                  ? maker.Ident(((JCClassDecl) typeNode.get()).name)
+                                  : maker.Ident(methodNode.toName("this"));
+    return callWithParams(maker, methodNode, receiver, helperName);
+  }
+
+  /**
+   * Renames the thread while in {@code contents}, through private helpers
+   * generated once per class, which keep the thread lookups out of the
+   * annotated method without a runtime dependency: <pre>
+   * final String $oldThreadName = $renameThread(threadName);
+   * try {
+   *   // contents
+   * } finally {
+   *   $restoreThreadName($oldThreadName);
+   * }</pre>
+   * Interfaces can not hold private methods, so their default methods
+   * rename the thread inline.
+   */
   private static JCStatement renameThreadWhileIn(
       final JavacNode node,
       final List<JCStatement> contents,
-      final JCExpression threadNameFormat,
-      final List<JCVariableDecl> params, final JCTree source
+      final JCExpression threadName, final JCTree source
   ) {
-    final String currentThreadVarName = "$currentThread";
     final String oldThreadNameVarName = "$oldThreadName";
 
     final JavacTreeMaker maker = node.getTreeMaker();
     final Context context = node.getContext();
+    final JCExpression oldThreadName = maker.Ident(
+        node.toName(oldThreadNameVarName));
 
-    final JCVariableDecl saveCurrentThread = createCurrentThreadVar(node,
-                                                                    maker, currentThreadVarName
-    );
-    final JCVariableDecl saveOldThreadName = createOldThreadNameVar(node,
-                                                                    maker, currentThreadVarName, oldThreadNameVarName
-    );
-
-    final JCExpression threadName = threadName(node, maker,
-                                               threadNameFormat, params
-    );
-    final JCStatement changeThreadName = setThreadName(node, maker,
-                                                       threadName, currentThreadVarName
-    );
-    final JCStatement restoreOldThreadName = setThreadName(node, maker,
-                                                           maker.Ident(node.toName(oldThreadNameVarName)),
-                                                           currentThreadVarName
-    );
+    final List<JCStatement> renameThread;
+    final JCStatement restoreOldThreadName;
+    if (injectRenameHelpers(node, source)) {
+      renameThread = List.<JCStatement>of(maker.VarDef(
+          maker.Modifiers(FINAL),
+          node.toName(oldThreadNameVarName),
+          genJavaLangTypeRef(node, "String"),
+          maker.Apply(nil(), maker.Ident(node.toName(RENAME_THREAD_NAME)),
+                      List.of(threadName)
+          )
+      ));
+      restoreOldThreadName = maker.Exec(maker.Apply(nil(),
+          maker.Ident(node.toName(RESTORE_THREAD_NAME_NAME)),
+          List.of(oldThreadName)
+      ));
+    }
+    else {
+      final String currentThreadVarName = "$currentThread";
+      renameThread = List.of(
+          createCurrentThreadVar(node, maker, currentThreadVarName),
+          maker.VarDef(
+              maker.Modifiers(FINAL),
+              node.toName(oldThreadNameVarName),
+              genJavaLangTypeRef(node, "String"),
+              maker.Apply(nil(), maker.Select(
+                  maker.Ident(node.toName(currentThreadVarName)),
+                  node.toName("getName")
+              ), nil())
+          ),
+          setThreadName(node, maker, threadName,
+                        maker.Ident(node.toName(currentThreadVarName))
+          )
+      );
+      restoreOldThreadName = setThreadName(node, maker, oldThreadName,
+          maker.Ident(node.toName(currentThreadVarName))
+      );
+    }
 
     final JCBlock tryBlock = setGeneratedBy(maker.Block(0, contents),
                                             source, context
@@ -208,14 +346,108 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
 
     return setGeneratedBy(maker.Block(
         0,
-        List.of(saveCurrentThread, saveOldThreadName,
-                changeThreadName, wrapMethod
-        )
+        renameThread.append(wrapMethod)
                           ), source,
                           context
     );
   }
 
+  /**
+   * Injects the rename helpers into the class of the annotated method,
+   * unless an earlier {@code @ThreadNamed} method already did: <pre>
+   * private static String $renameThread(final String name) {
+   *   final Thread $currentThread = Thread.currentThread();
+   *   final String $oldThreadName = $currentThread.getName();
+   *   $currentThread.setName(name);
+   *   return $oldThreadName;
+   * }
+   *
+   * private static void $restoreThreadName(final String name) {
+   *   Thread.currentThread().setName(name);
+   * }</pre>
+   * They are instance methods in inner, local and anonymous classes, which
+   * can not declare static methods.
+   *
+   * @return whether the class holds the helpers, which interfaces can not
+   */
+  private static boolean injectRenameHelpers(
+      final JavacNode node, final JCTree source
+  ) {
+    final JavacNode typeNode = node.up();
+    if (!(typeNode.get() instanceof JCClassDecl)
+        || 0 != (((JCClassDecl) typeNode.get()).mods.flags & INTERFACE)) {
+      return false;
+    }
+    if (MemberExistsResult.NOT_EXISTS != methodExists(RENAME_THREAD_NAME,
+                                                      typeNode, false, 1
+    )) {
+      return true;
+    }
+
+    final JavacTreeMaker maker = typeNode.getTreeMaker().at(source.pos);
+    final Context context = typeNode.getContext();
+    final long flags = null == qualifiedTypeName(typeNode)
+                       ? PRIVATE : PRIVATE | STATIC;
+    final String currentThreadVarName = "$currentThread";
+    final String oldThreadNameVarName = "$oldThreadName";
+    final Name nameParamName = typeNode.toName("name");
+
+    final JCBlock renameBody = maker.Block(0, List.of(
+        createCurrentThreadVar(typeNode, maker, currentThreadVarName),
+        maker.VarDef(
+            maker.Modifiers(FINAL),
+            typeNode.toName(oldThreadNameVarName),
+            genJavaLangTypeRef(typeNode, "String"),
+            maker.Apply(nil(), maker.Select(
+                maker.Ident(typeNode.toName(currentThreadVarName)),
+                typeNode.toName("getName")
+            ), nil())
+        ),
+        setThreadName(typeNode, maker, maker.Ident(nameParamName),
+                      maker.Ident(typeNode.toName(currentThreadVarName))
+        ),
+        maker.Return(maker.Ident(typeNode.toName(oldThreadNameVarName)))
+    ));
+    injectMethod(typeNode, recursiveSetGeneratedBy(maker.MethodDef(
+        maker.Modifiers(flags),
+        typeNode.toName(RENAME_THREAD_NAME),
+        genJavaLangTypeRef(typeNode, "String"),
+        List.<JCTypeParameter>nil(),
+        List.of(nameParameter(typeNode, maker, nameParamName)),
+        List.<JCExpression>nil(),
+        renameBody,
+        null
+    ), source, context));
+
+    final JCBlock restoreBody = maker.Block(0, List.of(
+        setThreadName(typeNode, maker, maker.Ident(nameParamName),
+                      maker.Apply(nil(), genJavaLangTypeRef(typeNode,
+                                                            "Thread", "currentThread"
+                      ), nil())
+        )
+    ));
+    injectMethod(typeNode, recursiveSetGeneratedBy(maker.MethodDef(
+        maker.Modifiers(flags),
+        typeNode.toName(RESTORE_THREAD_NAME_NAME),
+        maker.TypeIdent(CTC_VOID),
+        List.<JCTypeParameter>nil(),
+        List.of(nameParameter(typeNode, maker, nameParamName)),
+        List.<JCExpression>nil(),
+        restoreBody,
+        null
+    ), source, context));
+    return true;
+  }
+
+  private static JCVariableDecl nameParameter(
+      final JavacNode node,
+      final JavacTreeMaker maker, final Name name
+  ) {
+    return maker.VarDef(maker.Modifiers(FINAL | PARAMETER), name,
+                        genJavaLangTypeRef(node, "String"), null
+    );
+  }
+
   private static JCVariableDecl createCurrentThreadVar(
       final JavacNode node,
       final JavacTreeMaker maker, final String currentThreadVarName
@@ -232,16 +464,62 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
     );
   }
 
-  private static JCVariableDecl createOldThreadNameVar(
+  private static JCStatement setThreadName(
+      final JavacNode node,
+      final JavacTreeMaker maker, final JCExpression threadName,
+      final JCExpression thread
+  ) {
+    return maker.Exec(maker.Apply(nil(),
+                                  maker.Select(thread, node.toName("setName")),
+                                  List.of(threadName)
+    ));
+  }
+
+  /**
+   * Like {@link #renameThreadWhileIn}, but only sets the logical name: <pre>
+   * final String $oldThreadName = ThreadNames.enter(threadName);
+   * try {
+   *   // contents
+   * } finally {
+   *   ThreadNames.restore($oldThreadName);
+   * }</pre>
+   */
+  private static JCStatement nameThreadLogicallyWhileIn(
       final JavacNode node,
-      final JavacTreeMaker maker, final String currentThreadVarName,
-      final String oldThreadNameVarName
+      final List<JCStatement> contents,
+      final JCExpression threadName, final JCTree source
   ) {
-    return maker.VarDef(
+    final String oldThreadNameVarName = "$oldThreadName";
+
+    final JavacTreeMaker maker = node.getTreeMaker();
+    final Context context = node.getContext();
+
+    final JCVariableDecl enterThreadName = maker.VarDef(
         maker.Modifiers(FINAL),
         node.toName(oldThreadNameVarName),
         genJavaLangTypeRef(node, "String"),
-        getThreadName(node, maker, currentThreadVarName)
+        maker.Apply(nil(),
+                    genTypeRef(node, THREAD_NAMES_CLASS_NAME + ".enter"),
+                    List.of(threadName)
+        )
+    );
+    final JCStatement restoreOldThreadName = maker.Exec(maker.Apply(nil(),
+        genTypeRef(node, THREAD_NAMES_CLASS_NAME + ".restore"),
+        List.<JCExpression>of(maker.Ident(node.toName(oldThreadNameVarName)))
+    ));
+
+    final JCBlock tryBlock = setGeneratedBy(maker.Block(0, contents),
+                                            source, context
+    );
+    final JCTry wrapMethod = maker.Try(tryBlock, nil(),
+                                       maker.Block(0, List.of(restoreOldThreadName))
+    );
+
+    return setGeneratedBy(maker.Block(
+        0,
+        List.of(enterThreadName, wrapMethod)
+                          ), source,
+                          context
     );
   }
 
@@ -254,6 +532,13 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
       return threadNameFormat;
     }
 
+    final JCExpression concatenated = concatenateThreadName(node, maker,
+                                                            threadNameFormat, params
+    );
+    if (null != concatenated) {
+      return concatenated;
+    }
+
     List<JCExpression> formatArgs = List.of(threadNameFormat);
     for (final JCVariableDecl param : params) {
       formatArgs = formatArgs.append(maker.Ident(param));
@@ -267,28 +552,96 @@ public class HandleThreadNamed extends JavacAnnotationHandler<ThreadNamed> {
     );
   }
 
-  private static JCMethodInvocation getThreadName(
+  /**
+   * Parses a literal format at compile time and turns it into a string
+   * concatenation of only the referenced parameters, so a call does not
+   * parse the format, box primitives or allocate a varargs array: <pre>
+   * "Foo #%2$s" -&gt; "Foo #" + slot</pre>
+   * Only {@code %s}, {@code %d} (on integral parameters), their positional
+   * forms {@code %n$s} / {@code %n$d} and {@code %%} are supported.
+   *
+   * @return the concatenation, or {@code null} if the format has to be
+   * left to {@link String#format(String, Object...)}
+   */
+  private static JCExpression concatenateThreadName(
       final JavacNode node,
-      final JavacTreeMaker maker, final String currentThreadVarNAme
+      final JavacTreeMaker maker, final JCExpression threadNameFormat,
+      final List<JCVariableDecl> params
   ) {
-    return maker.Apply(nil(),
-                       maker.Select(
-                           maker.Ident(node.toName(currentThreadVarNAme)),
-                           node.toName("getName")
-                       ), nil()
-    );
+    if (!(threadNameFormat instanceof JCLiteral)
+        || !(((JCLiteral) threadNameFormat).value instanceof String)) {
+      return null;
+    }
+    final String format = (String) ((JCLiteral) threadNameFormat).value;
+
+    final ListBuffer<JCExpression> parts = new ListBuffer<JCExpression>();
+    final StringBuilder text = new StringBuilder();
+    int ordinaryIndex = 0;
+    int i = 0;
+    while (i < format.length()) {
+      final char c = format.charAt(i++);
+      if ('%' != c) {
+        text.append(c);
+        continue;
+      }
+
+      int j = i;
+      while (j < format.length() && Character.isDigit(format.charAt(j))) {
+        ++j;
+      }
+      final int index;
+      if (j > i && j < format.length() && '$' == format.charAt(j)) {
+        index = Integer.parseInt(format.substring(i, j));
+        i = j + 1;
+      }
+      else if (i < format.length() && '%' == format.charAt(i)) {
+        text.append('%');
+        ++i;
+        continue;
+      }
+      else {
+        index = ++ordinaryIndex;
+      }
+      if (i >= format.length() || index < 1 || index > params.size()) {
+        return null;
+      }
+
+      final JCVariableDecl param = params.get(index - 1);
+      final char conversion = format.charAt(i++);
+      if ('d' == conversion ? !isIntegral(param)
+                            : 's' != conversion) {
+        return null;
+      }
+
+      if (0 < text.length() || parts.isEmpty()) {
+        parts.append(maker.Literal(text.toString()));
+        text.setLength(0);
+      }
+      parts.append(maker.Ident(param.name));
+    }
+    if (0 < text.length()) {
+      parts.append(maker.Literal(text.toString()));
+    }
+
+    JCExpression concatenated = parts.first();
+    for (final JCExpression part : parts.toList().tail) {
+      concatenated = maker.Binary(CTC_PLUS, concatenated, part);
+    }
+    return concatenated;
   }
 
-  private static JCStatement setThreadName(
-      final JavacNode node,
-      final JavacTreeMaker maker, final JCExpression threadName,
-      final String currentThreadVarName
-  ) {
-    return maker.Exec(maker.Apply(nil(),
-                                  maker.Select(
-                                      maker.Ident(node.toName(currentThreadVarName)),
-                                      node.toName("setName")
-                                  ), List.of(threadName)
-    ));
+  private static boolean isIntegral(final JCVariableDecl param) {
+    if (param.vartype instanceof JCPrimitiveTypeTree) {
+      switch (((JCPrimitiveTypeTree) param.vartype).getPrimitiveTypeKind()) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+          return true;
+        default:
+          return false;
+      }
+    }
+    return INTEGRAL_TYPE_NAMES.contains(param.vartype.toString());
   }
 }
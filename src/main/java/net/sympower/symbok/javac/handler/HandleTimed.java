@@ -0,0 +1,164 @@
+package net.sympower.symbok.javac.handler;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree.JCAnnotation;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCExpression;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCStatement;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import lombok.core.AST.Kind;
+import lombok.core.AnnotationValues;
+import lombok.javac.JavacAnnotationHandler;
+import lombok.javac.JavacNode;
+import lombok.javac.JavacTreeMaker;
+import lombok.javac.handlers.JavacHandlerUtil.MemberExistsResult;
+import net.sympower.symbok.Timed;
+import org.kohsuke.MetaInfServices;
+
+import static lombok.javac.Javac.CTC_LONG;
+import static lombok.javac.Javac.CTC_MINUS;
+import static lombok.javac.handlers.JavacHandlerUtil.deleteAnnotationIfNeccessary;
+import static lombok.javac.handlers.JavacHandlerUtil.fieldExists;
+import static lombok.javac.handlers.JavacHandlerUtil.genJavaLangTypeRef;
+import static lombok.javac.handlers.JavacHandlerUtil.injectFieldAndMarkGenerated;
+import static lombok.javac.handlers.JavacHandlerUtil.isConstructorCall;
+import static lombok.javac.handlers.JavacHandlerUtil.recursiveSetGeneratedBy;
+import static net.sympower.symbok.ConfigurationKeys.TIMED_FLAG_USAGE;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.genTypeRef;
+import static net.sympower.symbok.javac.handler.CompilationUnitCache.handleFlagUsage;
+
+/**
+ * Handles the {@link Timed} annotation for javac.
+ */
+@MetaInfServices(JavacAnnotationHandler.class)
+public class HandleTimed extends JavacAnnotationHandler<Timed> {
+
+  private static final String LATENCY_HISTOGRAM_CLASS_NAME = "net.sympower.symbok.runtime.LatencyHistogram";
+
+  private static final String HISTOGRAM_FIELD_PREFIX = "$timed$";
+
+  @Override
+  public void handle(AnnotationValues<Timed> annotation, JCAnnotation ast, JavacNode annotationNode) {
+    handleFlagUsage(annotationNode, TIMED_FLAG_USAGE, "@Timed");
+
+    deleteAnnotationIfNeccessary(annotationNode, Timed.class);
+    JavacNode methodNode = annotationNode.up();
+    if (methodNode == null || methodNode.getKind() != Kind.METHOD) {
+      annotationNode.addError("@Timed is legal only on methods and constructors.");
+      return;
+    }
+
+    JCMethodDecl method = (JCMethodDecl) methodNode.get();
+    if ((method.mods.flags & Flags.ABSTRACT) != 0) {
+      annotationNode.addError("@Timed is legal only on concrete methods.");
+      return;
+    }
+    if (method.body == null) {
+      return;
+    }
+
+    JavacNode typeNode = methodNode.up();
+    String typeName = qualifiedTypeName(typeNode);
+    if (typeName == null) {
+      annotationNode.addError(
+          "@Timed is not supported in interfaces, inner classes, local classes or anonymous classes, which can not "
+              + "hold the static histogram field.");
+      return;
+    }
+
+    String histogramName = annotation.getInstance().value();
+    if (histogramName.isEmpty()) {
+      histogramName = typeName + "." + method.name;
+    }
+
+    JavacTreeMaker maker = methodNode.getTreeMaker().at(ast.pos);
+    Context context = methodNode.getContext();
+
+    // private static final LatencyHistogram $timed$method = LatencyHistogram.register("Type.method");
+    Name histogramFieldName = histogramFieldName(typeNode, method);
+    injectFieldAndMarkGenerated(typeNode, recursiveSetGeneratedBy(maker.VarDef(
+        maker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL),
+        histogramFieldName,
+        genTypeRef(typeNode, LATENCY_HISTOGRAM_CLASS_NAME),
+        maker.Apply(
+            List.<JCExpression>nil(),
+            genTypeRef(typeNode, LATENCY_HISTOGRAM_CLASS_NAME + ".register"),
+            List.<JCExpression>of(maker.Literal(histogramName))
+        )
+    ), ast, context));
+
+    List<JCStatement> statements = method.body.stats;
+    JCStatement constructorCall = null;
+    if (!statements.isEmpty() && isConstructorCall(statements.head)) {
+      constructorCall = statements.head;
+      statements = statements.tail;
+    }
+
+    // final long $start = System.nanoTime();
+    // try { body } finally { $timed$method.record(System.nanoTime() - $start); }
+    Name startName = methodNode.toName("$start");
+    JCStatement start = maker.VarDef(
+        maker.Modifiers(Flags.FINAL), startName, maker.TypeIdent(CTC_LONG), nanoTime(maker, methodNode));
+    JCStatement record = maker.Exec(maker.Apply(
+        List.<JCExpression>nil(),
+        maker.Select(maker.Ident(histogramFieldName), methodNode.toName("record")),
+        List.<JCExpression>of(maker.Binary(CTC_MINUS, nanoTime(maker, methodNode), maker.Ident(startName)))
+    ));
+    JCStatement timed = maker.Try(
+        maker.Block(0, statements), List.nil(), maker.Block(0, List.of(record)));
+
+    List<JCStatement> wrapped = List.of(
+        recursiveSetGeneratedBy(start, ast, context),
+        recursiveSetGeneratedBy(timed, ast, context)
+    );
+    method.body.stats = constructorCall == null ? wrapped : wrapped.prepend(constructorCall);
+    methodNode.rebuild();
+  }
+
+  /**
+   * Returns the qualified name of a type that can declare static fields, or {@code null} if it can not.
+   */
+  static String qualifiedTypeName(JavacNode typeNode) {
+    StringBuilder name = new StringBuilder();
+    JavacNode node = typeNode;
+    while (node != null && node.getKind() == Kind.TYPE) {
+      JCClassDecl classDecl = (JCClassDecl) node.get();
+      JavacNode parent = node.up();
+      boolean nested = parent != null && parent.getKind() == Kind.TYPE;
+      boolean implicitlyStatic = (classDecl.mods.flags & (Flags.INTERFACE | Flags.ENUM)) != 0
+          || nested && (((JCClassDecl) parent.get()).mods.flags & Flags.INTERFACE) != 0;
+      if (classDecl.name.isEmpty()
+          || parent != null && parent.getKind() != Kind.TYPE && parent.getKind() != Kind.COMPILATION_UNIT
+          || nested && !implicitlyStatic && (classDecl.mods.flags & Flags.STATIC) == 0) {
+        return null;
+      }
+      name.insert(0, name.length() == 0 ? classDecl.name.toString() : classDecl.name + ".");
+      node = parent;
+    }
+    if ((((JCClassDecl) typeNode.get()).mods.flags & Flags.INTERFACE) != 0) {
+      return null;
+    }
+    String packageName = typeNode.getPackageDeclaration();
+    return packageName == null ? name.toString() : packageName + "." + name;
+  }
+
+  /**
+   * Returns {@code $timed$<method>}, with a number appended for overloads.
+   */
+  private static Name histogramFieldName(JavacNode typeNode, JCMethodDecl method) {
+    String baseName = HISTOGRAM_FIELD_PREFIX + (method.name.contentEquals("<init>") ? "new" : method.name);
+    String fieldName = baseName;
+    for (int i = 1; fieldExists(fieldName, typeNode) != MemberExistsResult.NOT_EXISTS; i++) {
+      fieldName = baseName + "$" + i;
+    }
+    return typeNode.toName(fieldName);
+  }
+
+  private static JCExpression nanoTime(JavacTreeMaker maker, JavacNode node) {
+    return maker.Apply(
+        List.<JCExpression>nil(), genJavaLangTypeRef(node, "System", "nanoTime"), List.<JCExpression>nil());
+  }
+}
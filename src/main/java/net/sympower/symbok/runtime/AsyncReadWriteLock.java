@@ -0,0 +1,175 @@
+package net.sympower.symbok.runtime;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * A read/write lock for {@link net.sympower.symbok.ReadLock @ReadLock} and
+ * {@link net.sympower.symbok.WriteLock @WriteLock} methods that return a {@link CompletionStage}, created for
+ * {@code implementation = "async"}.
+ * <p>
+ * The lock is held from the start of the method until the stage it returns completes, and no thread ever waits for it:
+ * an action that can not take the lock is queued and run by the thread that releases it. Waiting actions are granted
+ * the lock in order, consecutive readers together, and new readers do not overtake a waiting writer. The lock is not
+ * reentrant.
+ */
+public final class AsyncReadWriteLock {
+
+  /**
+   * Actions granted the lock while this thread is already running granted actions, run once those have returned, so
+   * a long queue of stages that complete immediately does not grow the stack.
+   */
+  private static final ThreadLocal<ArrayDeque<Runnable>> GRANTED = new ThreadLocal<ArrayDeque<Runnable>>();
+
+  private final ArrayDeque<Waiter> waiters = new ArrayDeque<Waiter>();
+  private int readers;
+  private boolean writing;
+
+  private static final class Waiter {
+    final boolean write;
+    final Runnable action;
+
+    Waiter(boolean write, Runnable action) {
+      this.write = write;
+      this.action = action;
+    }
+  }
+
+  /**
+   * Runs {@code action} once the read lock is available, and holds it until the stage returned by the action
+   * completes.
+   *
+   * @return a future completed like the stage returned by {@code action}, after the lock was released
+   */
+  public <T> CompletableFuture<T> read(Supplier<? extends CompletionStage<T>> action) {
+    return acquire(false, action);
+  }
+
+  /**
+   * Runs {@code action} once the write lock is available, and holds it until the stage returned by the action
+   * completes.
+   *
+   * @return a future completed like the stage returned by {@code action}, after the lock was released
+   */
+  public <T> CompletableFuture<T> write(Supplier<? extends CompletionStage<T>> action) {
+    return acquire(true, action);
+  }
+
+  /**
+   * Returns whether the read or write lock is held, for monitoring.
+   */
+  public synchronized boolean isLocked() {
+    return this.writing || this.readers > 0;
+  }
+
+  /**
+   * Returns the number of actions waiting for the lock, for monitoring.
+   */
+  public synchronized int getQueueLength() {
+    return this.waiters.size();
+  }
+
+  private <T> CompletableFuture<T> acquire(final boolean write, final Supplier<? extends CompletionStage<T>> action) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    Runnable locked = () -> runLocked(write, action, result);
+    boolean acquired;
+    synchronized (this) {
+      acquired = this.waiters.isEmpty() && !this.writing && (!write || this.readers == 0);
+      if (acquired) {
+        if (write) {
+          this.writing = true;
+        }
+        else {
+          this.readers++;
+        }
+      }
+      else {
+        this.waiters.add(new Waiter(write, locked));
+      }
+    }
+    if (acquired) {
+      locked.run();
+    }
+    return result;
+  }
+
+  private <T> void runLocked(
+      final boolean write,
+      Supplier<? extends CompletionStage<T>> action,
+      final CompletableFuture<T> result
+  ) {
+    CompletionStage<T> stage;
+    try {
+      stage = action.get();
+      if (stage == null) {
+        throw new NullPointerException("The locked method returned null instead of a CompletionStage");
+      }
+    }
+    catch (Throwable ex) {
+      release(write);
+      result.completeExceptionally(ex);
+      return;
+    }
+    stage.whenComplete((value, failure) -> {
+      release(write);
+      if (failure != null) {
+        result.completeExceptionally(failure);
+      }
+      else {
+        result.complete(value);
+      }
+    });
+  }
+
+  private void release(boolean write) {
+    ArrayDeque<Runnable> granted = null;
+    synchronized (this) {
+      if (write) {
+        this.writing = false;
+      }
+      else {
+        this.readers--;
+      }
+      while (!this.waiters.isEmpty() && !this.writing) {
+        Waiter next = this.waiters.peek();
+        if (next.write) {
+          if (this.readers > 0) {
+            break;
+          }
+          this.writing = true;
+        }
+        else {
+          this.readers++;
+        }
+        this.waiters.poll();
+        if (granted == null) {
+          granted = new ArrayDeque<Runnable>();
+        }
+        granted.add(next.action);
+      }
+    }
+    if (granted != null) {
+      run(granted);
+    }
+  }
+
+  private static void run(ArrayDeque<Runnable> granted) {
+    ArrayDeque<Runnable> running = GRANTED.get();
+    if (running != null) {
+      running.addAll(granted);
+      return;
+    }
+    GRANTED.set(granted);
+    try {
+      Runnable action;
+      while ((action = granted.poll()) != null) {
+        action.run();
+      }
+    }
+    finally {
+      GRANTED.remove();
+    }
+  }
+}
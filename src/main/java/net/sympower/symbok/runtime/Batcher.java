@@ -0,0 +1,215 @@
+package net.sympower.symbok.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces concurrent calls of a {@link net.sympower.symbok.Batched @Batched} method into calls of its batch method.
+ * <p>
+ * The first caller that finds no open batch leads a new one: it waits until the batch is full or the linger time has
+ * passed, closes it, and runs the batch method for all items in its own thread, while the other callers of the batch
+ * wait for their result. No threads are started, and a batch closes as soon as it is full. Batches that closed run
+ * concurrently with each other and with the next batch filling up.
+ *
+ * @param <T> the type of the items
+ * @param <R> the type of the result of a single item, {@code Void} if there is none
+ */
+public final class Batcher<T, R> {
+
+  private final int maxSize;
+  private final long lingerNanos;
+  private final Results results;
+  private final BatchFunction<T, R> function;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition full = this.lock.newCondition();
+  private Batch<T, R> open;
+
+  /**
+   * Calls the batch method.
+   */
+  public interface BatchFunction<T, R> {
+
+    /**
+     * Processes the items of a batch.
+     *
+     * @return the results of the items, in the same order, or {@code null} if the items have no results
+     */
+    List<R> apply(List<T> items) throws Exception;
+  }
+
+  /**
+   * The results the batch method has to return.
+   */
+  public enum Results {
+    /**
+     * No results, or a result per item, for a {@code void} method.
+     */
+    OPTIONAL,
+    /**
+     * A result per item, which may be {@code null}.
+     */
+    REQUIRED,
+    /**
+     * A result per item that is not {@code null}, for a method returning a primitive.
+     */
+    NON_NULL
+  }
+
+  private static final class Batch<T, R> {
+    final List<T> items = new ArrayList<T>();
+    final CountDownLatch done = new CountDownLatch(1);
+    List<R> results;
+    Throwable failure;
+  }
+
+  /**
+   * @param maxSize maximum number of items in a batch
+   * @param lingerNanos maximum time the first caller of a batch waits for more items, in nanoseconds
+   * @param function calls the batch method
+   */
+  public Batcher(int maxSize, long lingerNanos, BatchFunction<T, R> function) {
+    this(maxSize, lingerNanos, Results.OPTIONAL, function);
+  }
+
+  /**
+   * @param maxSize maximum number of items in a batch
+   * @param lingerNanos maximum time the first caller of a batch waits for more items, in nanoseconds
+   * @param results the results the batch method has to return, which fails the batch if it does not
+   * @param function calls the batch method
+   */
+  public Batcher(int maxSize, long lingerNanos, Results results, BatchFunction<T, R> function) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("The maximum batch size must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.lingerNanos = lingerNanos;
+    this.results = results;
+    this.function = function;
+  }
+
+  /**
+   * Adds {@code item} to the open batch, and returns its result once the batch has been processed.
+   * <p>
+   * An exception thrown by the batch method is rethrown to every caller of the batch, including checked exceptions, and
+   * so is an {@link IllegalStateException} if the batch method does not return the required results. An interrupt does
+   * not stop the wait, as the item can not be withdrawn from the batch, but is restored afterwards.
+   */
+  public R call(T item) {
+    Batch<T, R> batch;
+    int index;
+    boolean leader;
+    this.lock.lock();
+    try {
+      batch = this.open;
+      leader = batch == null;
+      if (leader) {
+        batch = new Batch<T, R>();
+        this.open = batch;
+      }
+      index = batch.items.size();
+      batch.items.add(item);
+      if (batch.items.size() >= this.maxSize) {
+        this.open = null;
+        if (!leader) {
+          this.full.signalAll();
+        }
+      }
+    }
+    finally {
+      this.lock.unlock();
+    }
+
+    if (leader) {
+      linger(batch);
+      run(batch);
+    }
+    else {
+      awaitUninterruptibly(batch.done);
+    }
+
+    if (batch.failure != null) {
+      throw Batcher.<RuntimeException>sneakyThrow(batch.failure);
+    }
+    return batch.results == null ? null : batch.results.get(index);
+  }
+
+  /**
+   * Waits until the batch is full or the linger time has passed, and closes it.
+   */
+  private void linger(Batch<T, R> batch) {
+    boolean interrupted = false;
+    this.lock.lock();
+    try {
+      long remaining = this.lingerNanos;
+      while (this.open == batch && remaining > 0) {
+        try {
+          remaining = this.full.awaitNanos(remaining);
+        }
+        catch (InterruptedException ex) {
+          interrupted = true;
+          break;
+        }
+      }
+      if (this.open == batch) {
+        this.open = null;
+      }
+    }
+    finally {
+      this.lock.unlock();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run(Batch<T, R> batch) {
+    try {
+      List<R> results = this.function.apply(batch.items);
+      if (results == null) {
+        if (this.results != Results.OPTIONAL) {
+          throw new IllegalStateException(
+              "The batch method returned no results for " + batch.items.size() + " items");
+        }
+      }
+      else if (results.size() != batch.items.size()) {
+        throw new IllegalStateException(
+            "The batch method returned " + results.size() + " results for " + batch.items.size() + " items");
+      }
+      else if (this.results == Results.NON_NULL && results.contains(null)) {
+        throw new IllegalStateException(
+            "The batch method returned null at index " + results.indexOf(null) + " for a primitive result");
+      }
+      batch.results = results;
+    }
+    catch (Throwable ex) {
+      batch.failure = ex;
+    }
+    finally {
+      batch.done.countDown();
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      }
+      catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable ex) throws E {
+    throw (E) ex;
+  }
+}
@@ -0,0 +1,251 @@
+package net.sympower.symbok.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Durations of the calls of a {@link net.sympower.symbok.Timed @Timed} method, in nanoseconds.
+ * <p>
+ * Durations are counted in log-linear buckets: 8 buckets per power of two, so a percentile is reported at most 12.5%
+ * above the real value. All buckets are allocated up front and recording only increments one of them, without locks
+ * or allocation.
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+  private static final AtomicLongFieldUpdater<LatencyHistogram> MAX =
+      AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "max");
+
+  private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+
+  private static volatile MBeanServer mBeanServer;
+
+  private final String name;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private volatile long max;
+
+  private LatencyHistogram(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it if it does not exist yet.
+   */
+  public static LatencyHistogram register(String name) {
+    LatencyHistogram histogram = HISTOGRAMS.get(name);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram(name);
+      histogram = HISTOGRAMS.putIfAbsent(name, created);
+      if (histogram == null) {
+        histogram = created;
+        MBeanServer server = mBeanServer;
+        if (server != null) {
+          histogram.registerMBean(server);
+        }
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns the histogram with the given name, or {@code null} if no {@code @Timed} method uses it, or its class has
+   * not been initialized yet.
+   */
+  public static LatencyHistogram get(String name) {
+    return HISTOGRAMS.get(name);
+  }
+
+  /**
+   * Returns all histograms created so far.
+   */
+  public static Collection<LatencyHistogram> all() {
+    return Collections.unmodifiableCollection(HISTOGRAMS.values());
+  }
+
+  /**
+   * Registers all histograms, and those created later, with the platform MBean server as
+   * {@code net.sympower.symbok:type=LatencyHistogram,name=<name>}.
+   */
+  public static synchronized void registerMBeans() {
+    if (mBeanServer != null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    mBeanServer = server;
+    for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+      histogram.registerMBean(server);
+    }
+  }
+
+  /**
+   * Records the duration of one call. Negative durations, from a clock adjustment, are counted as zero.
+   */
+  public void record(long nanos) {
+    if (nanos < 0L) {
+      nanos = 0L;
+    }
+    this.buckets.getAndIncrement(bucketOf(nanos));
+    long max;
+    while (nanos > (max = this.max) && !MAX.compareAndSet(this, max, nanos)) {
+      // retry until this duration is recorded or a longer one won
+    }
+  }
+
+  /**
+   * Returns a copy of the current counts. Calls recorded while the snapshot is taken may or may not be included.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long count = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets.get(i);
+      count += counts[i];
+    }
+    return new Snapshot(counts, count, this.max);
+  }
+
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Override
+  public long getCount() {
+    return snapshot().getCount();
+  }
+
+  @Override
+  public long getMax() {
+    return this.max;
+  }
+
+  @Override
+  public long getMedian() {
+    return snapshot().getValueAtPercentile(50.0);
+  }
+
+  @Override
+  public long get99thPercentile() {
+    return snapshot().getValueAtPercentile(99.0);
+  }
+
+  @Override
+  public long get999thPercentile() {
+    return snapshot().getValueAtPercentile(99.9);
+  }
+
+  /**
+   * Clears all counts. Calls recorded concurrently may be lost.
+   */
+  @Override
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets.set(i, 0L);
+    }
+    this.max = 0L;
+  }
+
+  @Override
+  public String toString() {
+    Snapshot snapshot = snapshot();
+    return this.name + " count=" + snapshot.getCount() + " p50=" + snapshot.getValueAtPercentile(50.0) + "ns p99="
+        + snapshot.getValueAtPercentile(99.0) + "ns p999=" + snapshot.getValueAtPercentile(99.9) + "ns max="
+        + snapshot.getMax() + "ns";
+  }
+
+  private void registerMBean(MBeanServer server) {
+    try {
+      server.registerMBean(
+          this, new ObjectName("net.sympower.symbok:type=LatencyHistogram,name=" + ObjectName.quote(this.name)));
+    }
+    catch (JMException ex) {
+      throw new IllegalStateException("Could not register the MBean of " + this.name, ex);
+    }
+  }
+
+  /**
+   * Values below {@code SUB_BUCKETS} have a bucket each, larger ones share {@code SUB_BUCKETS} buckets per power of
+   * two.
+   */
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the highest value counted in a bucket.
+   */
+  private static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1L;
+  }
+
+  /**
+   * The counts of a {@link LatencyHistogram} at one point in time.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.max = max;
+    }
+
+    /**
+     * Returns the number of recorded calls.
+     */
+    public long getCount() {
+      return this.count;
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     */
+    public long getMax() {
+      return this.max;
+    }
+
+    /**
+     * Returns the duration that {@code percentile} percent of the calls did not exceed, e.g. {@code 99.9}, or
+     * {@code 0} if no calls were recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (this.count == 0L) {
+        return 0L;
+      }
+      long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * this.count));
+      long seen = 0L;
+      for (int i = 0; i < this.counts.length; i++) {
+        seen += this.counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValueOf(i), this.max);
+        }
+      }
+      return this.max;
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package net.sympower.symbok.runtime;
+
+/**
+ * JMX view of a {@link LatencyHistogram}, registered by {@link LatencyHistogram#registerMBeans()}. All times are in
+ * nanoseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+  String getName();
+
+  long getCount();
+
+  long getMax();
+
+  long getMedian();
+
+  long get99thPercentile();
+
+  long get999thPercentile();
+
+  void reset();
+}
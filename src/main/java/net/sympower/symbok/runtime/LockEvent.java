@@ -0,0 +1,45 @@
+package net.sympower.symbok.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event emitted by {@link net.sympower.symbok.ReadLock @ReadLock} and
+ * {@link net.sympower.symbok.WriteLock @WriteLock} methods if {@code symbok.readWriteLock.flightRecorder} is enabled.
+ * <p>
+ * The generated code creates the event, calls {@link #begin()} and finally {@link #commit(Class, String, String, String)},
+ * which only fills in the fields if the event is enabled and exceeds its threshold. Like any other JFR event it costs
+ * next to nothing while no recording is running.
+ */
+@Category({ "Symbok", "Locks" })
+@StackTrace(false)
+public abstract class LockEvent extends jdk.jfr.Event {
+
+  @Label("Owner Class")
+  @Description("Class declaring the annotated method")
+  Class<?> ownerClass;
+
+  @Label("Method")
+  @Description("Name of the annotated method")
+  String method;
+
+  @Label("Lock Field")
+  @Description("Name of the lock field")
+  String lockField;
+
+  @Label("Access")
+  @Description("read or write")
+  String access;
+
+  public void commit(Class<?> ownerClass, String method, String lockField, String access) {
+    if (shouldCommit()) {
+      this.ownerClass = ownerClass;
+      this.method = method;
+      this.lockField = lockField;
+      this.access = access;
+      commit();
+    }
+  }
+}
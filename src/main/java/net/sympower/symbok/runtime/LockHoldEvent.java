@@ -0,0 +1,14 @@
+package net.sympower.symbok.runtime;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time a lock has been held, see {@link LockEvent}.
+ */
+@Name("net.sympower.symbok.LockHold")
+@Label("Lock Hold")
+@Description("Time the lock of a @ReadLock or @WriteLock method has been held")
+public class LockHoldEvent extends LockEvent {
+}
@@ -0,0 +1,14 @@
+package net.sympower.symbok.runtime;
+
+/**
+ * Thrown by {@link net.sympower.symbok.ReadLock @ReadLock} and {@link net.sympower.symbok.WriteLock @WriteLock}
+ * methods when the lock could not be acquired within the {@code timeout}.
+ */
+public class LockTimeoutException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public LockTimeoutException(String message) {
+    super(message);
+  }
+}
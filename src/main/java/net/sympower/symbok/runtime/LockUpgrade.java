@@ -0,0 +1,23 @@
+package net.sympower.symbok.runtime;
+
+/**
+ * Marks where a {@link net.sympower.symbok.ReadLock @ReadLock} method in
+ * {@link net.sympower.symbok.LockMode#UPGRADABLE UPGRADABLE} mode promotes its read lock to the write lock.
+ */
+public final class LockUpgrade {
+
+  private LockUpgrade() {
+  }
+
+  /**
+   * Promotes the read lock of the enclosing {@code @ReadLock(mode = UPGRADABLE)} method to the write lock. Calls are
+   * replaced at compile time, and have to be made as {@code LockUpgrade.toWriteLock()} directly in the method body, not
+   * in lambdas or nested classes.
+   *
+   * @throws IllegalStateException if the call has not been replaced, because it is not made in such a method
+   */
+  public static void toWriteLock() {
+    throw new IllegalStateException(
+        "LockUpgrade.toWriteLock() can only be called directly in a @ReadLock(mode = UPGRADABLE) method");
+  }
+}
@@ -0,0 +1,14 @@
+package net.sympower.symbok.runtime;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time spent waiting to acquire a lock, see {@link LockEvent}.
+ */
+@Name("net.sympower.symbok.LockWait")
+@Label("Lock Wait")
+@Description("Time spent acquiring the lock of a @ReadLock or @WriteLock method")
+public class LockWaitEvent extends LockEvent {
+}
@@ -0,0 +1,346 @@
+package net.sympower.symbok.runtime;
+
+import net.sympower.symbok.EvictionPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of the results of a {@link net.sympower.symbok.Memoize @Memoize} method.
+ * <p>
+ * Lookups take no lock: the table never grows, and entries are chained in buckets that are only ever changed under the
+ * lock of the cache. A hit does write to the entry it found, without synchronization, as the access time and frequency
+ * used for eviction are approximate: the access time once per added result, and with {@code LFU} the frequency on
+ * every hit until it saturates. It also counts the hit. Adding a result takes the lock, which is cheap next to
+ * computing it.
+ * <p>
+ * The table, of two to four times {@code maxSize} slots, is only allocated when the first result is added, so a cache
+ * of an instance whose method is never called costs the cache object and its two uncontended counters.
+ *
+ * @param <V> the type of the cached results
+ */
+public final class MemoCache<V> {
+
+  /**
+   * Number of entries compared to find one to evict.
+   */
+  private static final int SAMPLE_SIZE = 8;
+
+  /**
+   * Frequencies saturate here, so hot entries stop writing to their frequency.
+   */
+  private static final int MAX_FREQUENCY = 15;
+
+  private static final Object NULL_KEY = new Object();
+
+  /**
+   * The buckets, {@code null} until the first result is added.
+   */
+  private volatile AtomicReferenceArray<Entry<V>> table;
+  private final int mask;
+  private final int maxSize;
+  private final boolean lfu;
+  private final long ttlNanos;
+  private final StripedCounter hits = new StripedCounter(0, true);
+  private final StripedCounter misses = new StripedCounter(0, true);
+
+  /**
+   * Number of results added so far, stamped on entries when they are read, so an entry is written once per added
+   * result at most.
+   */
+  private volatile long tick;
+  private int size;
+  private int hand;
+
+  /**
+   * A cached result.
+   */
+  public abstract static class Entry<V> {
+    final int hash;
+    final V value;
+    final long expiresAt;
+    volatile Entry<V> next;
+    long accessed;
+    int frequency;
+
+    Entry(int hash, V value, long expiresAt) {
+      this.hash = hash;
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    public V getValue() {
+      return this.value;
+    }
+
+    abstract boolean hasKeyOf(Entry<V> other);
+  }
+
+  private static final class ObjectEntry<V> extends Entry<V> {
+    final Object key;
+
+    ObjectEntry(Object key, int hash, V value, long expiresAt) {
+      super(hash, value, expiresAt);
+      this.key = key;
+    }
+
+    @Override
+    boolean hasKeyOf(Entry<V> other) {
+      return other instanceof ObjectEntry && this.key.equals(((ObjectEntry<V>) other).key);
+    }
+  }
+
+  private static final class LongEntry<V> extends Entry<V> {
+    final long key;
+
+    LongEntry(long key, int hash, V value, long expiresAt) {
+      super(hash, value, expiresAt);
+      this.key = key;
+    }
+
+    @Override
+    boolean hasKeyOf(Entry<V> other) {
+      return other instanceof LongEntry && this.key == ((LongEntry<V>) other).key;
+    }
+  }
+
+  /**
+   * The key of a method with several parameters, equal to the key of another call with equal arguments.
+   */
+  private static final class ArgumentsKey {
+    private final Object[] arguments;
+    private final int hash;
+
+    ArgumentsKey(Object[] arguments) {
+      this.arguments = arguments;
+      this.hash = Arrays.hashCode(arguments);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof ArgumentsKey && Arrays.equals(this.arguments, ((ArgumentsKey) other).arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  /**
+   * @param maxSize maximum number of cached results
+   * @param eviction which entry to evict when the cache is full
+   * @param ttlNanos nanoseconds after which a result expires, or {@code 0} to keep results until they are evicted
+   */
+  public MemoCache(int maxSize, EvictionPolicy eviction, long ttlNanos) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+    }
+    // at most half full, so chains stay short and the eviction finds its sample in a few buckets
+    int capacity = Integer.highestOneBit(Math.min(Math.max(maxSize, 2), 1 << 29) - 1) << 2;
+    this.mask = capacity - 1;
+    this.maxSize = maxSize;
+    this.lfu = eviction == EvictionPolicy.LFU;
+    this.ttlNanos = ttlNanos;
+  }
+
+  /**
+   * Returns the key of a call with several arguments.
+   */
+  public static Object key(Object... arguments) {
+    return new ArgumentsKey(arguments);
+  }
+
+  /**
+   * Returns the entry cached for {@code key}, which may be {@code null}, or {@code null} if there is none.
+   */
+  public Entry<V> get(Object key) {
+    Object nonNullKey = key == null ? NULL_KEY : key;
+    int hash = spread(nonNullKey.hashCode());
+    AtomicReferenceArray<Entry<V>> table = this.table;
+    Entry<V> entry = table == null ? null : table.get(hash & this.mask);
+    for (; entry != null; entry = entry.next) {
+      if (entry.hash == hash && entry instanceof ObjectEntry && nonNullKey.equals(((ObjectEntry<V>) entry).key)) {
+        return hit(entry);
+      }
+    }
+    this.misses.increment();
+    return null;
+  }
+
+  /**
+   * Returns the entry cached for the primitive {@code key}, or {@code null} if there is none.
+   */
+  public Entry<V> getLong(long key) {
+    int hash = spread(Long.hashCode(key));
+    AtomicReferenceArray<Entry<V>> table = this.table;
+    Entry<V> entry = table == null ? null : table.get(hash & this.mask);
+    for (; entry != null; entry = entry.next) {
+      if (entry.hash == hash && entry instanceof LongEntry && ((LongEntry<V>) entry).key == key) {
+        return hit(entry);
+      }
+    }
+    this.misses.increment();
+    return null;
+  }
+
+  /**
+   * Caches {@code value} for {@code key}, unless another thread has just cached a result for it.
+   */
+  public void put(Object key, V value) {
+    Object nonNullKey = key == null ? NULL_KEY : key;
+    add(new ObjectEntry<V>(nonNullKey, spread(nonNullKey.hashCode()), value, expiresAt()));
+  }
+
+  /**
+   * Caches {@code value} for the primitive {@code key}, unless another thread has just cached a result for it.
+   */
+  public void putLong(long key, V value) {
+    add(new LongEntry<V>(key, spread(Long.hashCode(key)), value, expiresAt()));
+  }
+
+  /**
+   * Returns the number of lookups that found a result.
+   */
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups that found no result, or an expired one.
+   */
+  public long misses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Returns the number of cached results, including expired ones that have not been evicted yet.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Removes all cached results, and releases the table until a result is added again.
+   */
+  public synchronized void clear() {
+    this.table = null;
+    this.size = 0;
+    this.hand = 0;
+  }
+
+  private Entry<V> hit(Entry<V> entry) {
+    if (this.ttlNanos > 0 && entry.expiresAt - System.nanoTime() <= 0) {
+      this.misses.increment();
+      return null;
+    }
+    long tick = this.tick;
+    if (entry.accessed != tick) {
+      entry.accessed = tick;
+    }
+    if (this.lfu) {
+      int frequency = entry.frequency;
+      if (frequency < MAX_FREQUENCY) {
+        entry.frequency = frequency + 1;
+      }
+    }
+    this.hits.increment();
+    return entry;
+  }
+
+  private synchronized void add(Entry<V> added) {
+    AtomicReferenceArray<Entry<V>> table = this.table;
+    if (table == null) {
+      table = new AtomicReferenceArray<Entry<V>>(this.mask + 1);
+      this.table = table;
+    }
+    int index = added.hash & this.mask;
+    for (Entry<V> entry = table.get(index); entry != null; entry = entry.next) {
+      if (entry.hash == added.hash && entry.hasKeyOf(added)) {
+        if (!isExpired(entry, System.nanoTime())) {
+          return;
+        }
+        unlink(entry, index);
+        break;
+      }
+    }
+    if (this.size >= this.maxSize) {
+      evict();
+    }
+    this.tick++;
+    added.accessed = this.tick;
+    added.next = table.get(index);
+    table.set(index, added);
+    this.size++;
+  }
+
+  /**
+   * Evicts the coldest of the next {@link #SAMPLE_SIZE} entries, continuing through the table from where the previous
+   * eviction stopped.
+   */
+  private void evict() {
+    long now = this.ttlNanos > 0 ? System.nanoTime() : 0L;
+    Entry<V> victim = null;
+    int victimIndex = 0;
+    int victimFrequency = 0;
+    int sampled = 0;
+    for (int scanned = 0; scanned <= this.mask && sampled < SAMPLE_SIZE; scanned++) {
+      int index = this.hand;
+      this.hand = (index + 1) & this.mask;
+      for (Entry<V> entry = this.table.get(index); entry != null; entry = entry.next) {
+        int frequency = entry.frequency;
+        if (victim == null || isColder(entry, frequency, victim, victimFrequency, now)) {
+          victim = entry;
+          victimIndex = index;
+          victimFrequency = frequency;
+        }
+        if (this.lfu) {
+          entry.frequency = frequency >>> 1;
+        }
+        sampled++;
+      }
+    }
+    if (victim != null) {
+      unlink(victim, victimIndex);
+    }
+  }
+
+  private boolean isColder(Entry<V> entry, int frequency, Entry<V> than, int thanFrequency, long now) {
+    if (isExpired(entry, now) != isExpired(than, now)) {
+      return isExpired(entry, now);
+    }
+    if (this.lfu && frequency != thanFrequency) {
+      return frequency < thanFrequency;
+    }
+    return entry.accessed < than.accessed;
+  }
+
+  private boolean isExpired(Entry<V> entry, long now) {
+    return this.ttlNanos > 0 && entry.expiresAt - now <= 0;
+  }
+
+  /**
+   * Removes an entry from its bucket. Lookups that are at the entry continue with its next entry.
+   */
+  private void unlink(Entry<V> removed, int index) {
+    Entry<V> entry = this.table.get(index);
+    if (entry == removed) {
+      this.table.set(index, removed.next);
+    }
+    else {
+      while (entry.next != removed) {
+        entry = entry.next;
+      }
+      entry.next = removed.next;
+    }
+    this.size--;
+  }
+
+  private long expiresAt() {
+    return this.ttlNanos > 0 ? System.nanoTime() + this.ttlNanos : 0L;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
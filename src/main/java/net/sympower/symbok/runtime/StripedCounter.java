@@ -0,0 +1,130 @@
+package net.sympower.symbok.runtime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A {@code long} counter of {@link net.sympower.symbok.Counter @Counter} fields, striped over cells on separate cache
+ * lines like {@link java.util.concurrent.atomic.LongAdder}, but with a fixed number of stripes.
+ * <p>
+ * A lazy counter only has a single {@code long} until two threads update it at the same time, and allocates its cells
+ * then.
+ */
+public final class StripedCounter {
+
+  /**
+   * Cells are this many {@code long}s apart, so no two cells share a 64 byte cache line.
+   */
+  private static final int CELL_SPACING = 8;
+
+  private static final AtomicLongFieldUpdater<StripedCounter> BASE =
+      AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "base");
+
+  private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> CELLS =
+      AtomicReferenceFieldUpdater.newUpdater(StripedCounter.class, AtomicLongArray.class, "cells");
+
+  /**
+   * Per-thread hash selecting the stripe, changed when the thread collides with another one on its stripe.
+   */
+  private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      long id = Thread.currentThread().getId();
+      return new int[] { (int) (id ^ (id >>> 32)) * 0x9E3779B9 | 1 };
+    }
+  };
+
+  private final int stripes;
+  private volatile long base;
+  private volatile AtomicLongArray cells;
+
+  /**
+   * @param stripes number of stripes, a power of two, or {@code 0} for the number of processors rounded up to a power
+   * of two
+   * @param lazy whether to allocate the cells only once the counter is contended
+   */
+  public StripedCounter(int stripes, boolean lazy) {
+    if (stripes == 0) {
+      stripes = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() * 2 - 1, 1));
+    }
+    else if (stripes < 0 || Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("The number of stripes must be a power of two: " + stripes);
+    }
+    this.stripes = stripes;
+    if (!lazy) {
+      this.cells = newCells(stripes);
+    }
+  }
+
+  public void increment() {
+    add(1L);
+  }
+
+  public void add(long delta) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long base = this.base;
+      if (BASE.compareAndSet(this, base, base + delta)) {
+        return;
+      }
+      cells = inflate();
+    }
+    int[] probe = PROBE.get();
+    int index = ((probe[0] & (this.stripes - 1)) + 1) * CELL_SPACING;
+    long value = cells.get(index);
+    if (!cells.compareAndSet(index, value, value + delta)) {
+      // move to another stripe for the next update, like LongAdder rehashes on contention
+      int hash = probe[0];
+      hash ^= hash << 13;
+      hash ^= hash >>> 17;
+      hash ^= hash << 5;
+      probe[0] = hash;
+      cells.getAndAdd(index, delta);
+    }
+  }
+
+  /**
+   * Returns the current total. Updates that happen concurrently may or may not be included.
+   */
+  public long sum() {
+    long sum = this.base;
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 1; i <= this.stripes; i++) {
+        sum += cells.get(i * CELL_SPACING);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the current total and resets the counter to zero. Updates that happen concurrently are either included or
+   * remain counted for the next call, none are lost.
+   */
+  public long sumThenReset() {
+    long sum = BASE.getAndSet(this, 0L);
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 1; i <= this.stripes; i++) {
+        sum += cells.getAndSet(i * CELL_SPACING, 0L);
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+
+  private AtomicLongArray inflate() {
+    CELLS.compareAndSet(this, null, newCells(this.stripes));
+    return this.cells;
+  }
+
+  private static AtomicLongArray newCells(int stripes) {
+    // one unused cell of padding on either side keeps the cells off the cache lines of the array header and neighbours
+    return new AtomicLongArray((stripes + 2) * CELL_SPACING);
+  }
+}
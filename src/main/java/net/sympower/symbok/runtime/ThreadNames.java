@@ -0,0 +1,45 @@
+package net.sympower.symbok.runtime;
+
+/**
+ * Logical thread names set by {@link net.sympower.symbok.ThreadNamed @ThreadNamed} methods in
+ * {@link net.sympower.symbok.ThreadNameMode#LOGICAL LOGICAL} mode.
+ */
+public final class ThreadNames {
+
+  private static final ThreadLocal<String> LOGICAL_NAME = new ThreadLocal<String>();
+
+  private ThreadNames() {
+  }
+
+  /**
+   * Returns the logical name of the current thread, or its real name if no logical name is set.
+   */
+  public static String current() {
+    String logicalName = LOGICAL_NAME.get();
+    return logicalName != null ? logicalName : Thread.currentThread().getName();
+  }
+
+  /**
+   * Returns the logical name of the current thread, or {@code null} if no logical name is set.
+   */
+  public static String logical() {
+    return LOGICAL_NAME.get();
+  }
+
+  /**
+   * Sets the logical name of the current thread and returns the previous one, to be passed to
+   * {@link #restore(String)}.
+   */
+  public static String enter(String name) {
+    String previousName = LOGICAL_NAME.get();
+    LOGICAL_NAME.set(name);
+    return previousName;
+  }
+
+  /**
+   * Restores the logical name returned by {@link #enter(String)}.
+   */
+  public static void restore(String previousName) {
+    LOGICAL_NAME.set(previousName);
+  }
+}
@@ -0,0 +1,56 @@
+package net.sympower.symbok.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bounded lock acquisition of {@link net.sympower.symbok.ReadLock @ReadLock} and
+ * {@link net.sympower.symbok.WriteLock @WriteLock} methods with a {@code timeout}, which treats an interrupt like a
+ * timeout and restores it. Calling it keeps the exception handler out of the locked method, so the method stays small
+ * enough to be inlined.
+ */
+public final class TimedLocks {
+
+  private TimedLocks() {
+  }
+
+  /**
+   * Returns whether {@code lock} was acquired within the timeout.
+   */
+  public static boolean tryLock(Lock lock, long timeout, TimeUnit unit) {
+    try {
+      return lock.tryLock(timeout, unit);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Returns the stamp of the read lock of {@code lock}, or {@code 0L} if it was not acquired within the timeout.
+   */
+  public static long tryReadLock(StampedLock lock, long timeout, TimeUnit unit) {
+    try {
+      return lock.tryReadLock(timeout, unit);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return 0L;
+    }
+  }
+
+  /**
+   * Returns the stamp of the write lock of {@code lock}, or {@code 0L} if it was not acquired within the timeout.
+   */
+  public static long tryWriteLock(StampedLock lock, long timeout, TimeUnit unit) {
+    try {
+      return lock.tryWriteLock(timeout, unit);
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return 0L;
+    }
+  }
+}
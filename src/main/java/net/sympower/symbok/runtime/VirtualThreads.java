@@ -0,0 +1,134 @@
+package net.sympower.symbok.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the body of {@link net.sympower.symbok.Async @Async} methods on another thread.
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  private static final class DefaultExecutor {
+    static final ExecutorService VIRTUAL = virtualThreadPerTaskExecutor();
+    static final ExecutorService INSTANCE = VIRTUAL != null ? VIRTUAL : daemonThreadPool();
+
+    /**
+     * Looks the executor up reflectively, as symbok is compiled for Java 8, and returns {@code null} if the runtime has
+     * no virtual threads, or only as a preview feature.
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+      try {
+        Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) factory.invoke(null);
+      }
+      catch (Exception ex) {
+        return null;
+      }
+    }
+
+    private static ExecutorService daemonThreadPool() {
+      final AtomicInteger count = new AtomicInteger();
+      return Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+          Thread thread = new Thread(task, "symbok-async-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the shared executor of {@code @Async} methods without an {@code executor}, which starts a virtual thread
+   * per task on Java 21 and later, or runs tasks on a cached pool of daemon threads on older runtimes.
+   */
+  public static ExecutorService executor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Returns whether {@link #executor()} starts virtual threads.
+   */
+  public static boolean isVirtual() {
+    return DefaultExecutor.VIRTUAL != null;
+  }
+
+  /**
+   * Runs {@code task} on the shared {@link #executor()}.
+   *
+   * @return a future completed like the stage returned by {@code task}, or exceptionally with the exception it throws
+   */
+  public static <T> CompletableFuture<T> submit(Callable<? extends CompletionStage<T>> task) {
+    return submit(DefaultExecutor.INSTANCE, task);
+  }
+
+  /**
+   * Runs {@code task} on {@code executor}.
+   *
+   * @return a future completed like the stage returned by {@code task}, or exceptionally with the exception it throws
+   */
+  public static <T> CompletableFuture<T> submit(Executor executor, final Callable<? extends CompletionStage<T>> task) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    executor.execute(() -> {
+      CompletionStage<T> stage;
+      try {
+        stage = task.call();
+        if (stage == null) {
+          throw new NullPointerException("The async method returned null instead of a CompletionStage");
+        }
+      }
+      catch (Throwable ex) {
+        result.completeExceptionally(ex);
+        return;
+      }
+      stage.whenComplete((value, failure) -> {
+        if (failure != null) {
+          result.completeExceptionally(failure);
+        }
+        else {
+          result.complete(value);
+        }
+      });
+    });
+    return result;
+  }
+
+  /**
+   * Runs {@code task} on the shared {@link #executor()} without waiting for it, see
+   * {@link #execute(Executor, Callable)}.
+   */
+  public static void execute(Callable<?> task) {
+    execute(DefaultExecutor.INSTANCE, task);
+  }
+
+  /**
+   * Runs {@code task} on {@code executor} without waiting for it. An exception thrown by {@code task}, including a
+   * checked exception, goes to the uncaught exception handler of the thread that runs it.
+   */
+  public static void execute(Executor executor, final Callable<?> task) {
+    executor.execute(() -> {
+      try {
+        task.call();
+      }
+      catch (Exception ex) {
+        throw VirtualThreads.<RuntimeException>sneakyThrow(ex);
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable ex) throws E {
+    throw (E) ex;
+  }
+}
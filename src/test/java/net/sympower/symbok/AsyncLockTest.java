@@ -0,0 +1,66 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncLockTest {
+
+  static class Account {
+    final List<CompletableFuture<Integer>> pending = new ArrayList<CompletableFuture<Integer>>();
+    private int balance;
+
+    @WriteLock(implementation = "async")
+    public CompletableFuture<Integer> deposit(int amount) {
+      int before = balance;
+      CompletableFuture<Integer> done = new CompletableFuture<Integer>();
+      pending.add(done);
+      return done.thenApply(ignored -> balance = before + amount);
+    }
+
+    @ReadLock(implementation = "async")
+    public CompletionStage<Integer> balance() {
+      return CompletableFuture.completedFuture(balance);
+    }
+
+    @WriteLock(implementation = "async")
+    public CompletionStage<Integer> fail() {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Test
+  void lockIsHeldUntilTheReturnedStageCompletes() {
+    Account account = new Account();
+    CompletableFuture<Integer> first = account.deposit(10);
+    CompletableFuture<Integer> second = account.deposit(5);
+    CompletableFuture<Integer> balance = account.balance().toCompletableFuture();
+    assertEquals(1, account.pending.size());
+
+    account.pending.get(0).complete(0);
+    assertEquals(10, (int) first.join());
+    assertEquals(2, account.pending.size());
+    assertFalse(balance.isDone());
+
+    account.pending.get(1).complete(0);
+    assertEquals(15, (int) second.join());
+    assertEquals(15, (int) balance.join());
+  }
+
+  @Test
+  void failureReleasesTheLock() {
+    Account account = new Account();
+    CompletableFuture<Integer> failed = account.fail().toCompletableFuture();
+    ExecutionException failure = assertThrows(ExecutionException.class, failed::get);
+    assertEquals(IllegalStateException.class, failure.getCause().getClass());
+    assertEquals(0, (int) account.balance().toCompletableFuture().join());
+  }
+}
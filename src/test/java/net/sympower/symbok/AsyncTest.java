@@ -0,0 +1,90 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTest {
+
+  static class Client {
+    final ExecutorService pool = Executors.newSingleThreadExecutor(task -> new Thread(task, "client-pool"));
+    final BlockingQueue<String> logged = new LinkedBlockingQueue<String>();
+
+    @Async
+    CompletableFuture<Thread> fetch(String url) throws IOException {
+      if (url.isEmpty()) {
+        throw new IOException("no url");
+      }
+      return CompletableFuture.completedFuture(Thread.currentThread());
+    }
+
+    @Async
+    static <T> CompletionStage<T> later(CompletionStage<T> stage) {
+      return stage;
+    }
+
+    @Async(executor = "pool")
+    void log(String line) {
+      logged.add(line + "@" + Thread.currentThread().getName());
+    }
+
+    @Async
+    @ThreadNamed("named-%s")
+    CompletableFuture<String> named(String name) {
+      return CompletableFuture.completedFuture(Thread.currentThread().getName());
+    }
+  }
+
+  @Test
+  void bodiesRunOnAnotherThread() throws Exception {
+    Client client = new Client();
+    assertNotEquals(Thread.currentThread(), client.fetch("x").get(10, TimeUnit.SECONDS));
+    client.log("line");
+    assertEquals("line@client-pool", client.logged.poll(10, TimeUnit.SECONDS));
+    client.pool.shutdown();
+  }
+
+  @Test
+  void futuresCompleteLikeTheBody() throws Exception {
+    Client client = new Client();
+    ExecutionException thrown =
+        assertThrows(ExecutionException.class, () -> client.fetch("").get(10, TimeUnit.SECONDS));
+    assertEquals(IOException.class, thrown.getCause().getClass());
+
+    CompletableFuture<String> stage = new CompletableFuture<String>();
+    CompletableFuture<String> result = Client.later(stage).toCompletableFuture();
+    Thread.sleep(20);
+    assertTrue(!result.isDone(), "completes with the stage of the body, not before");
+    stage.complete("done");
+    assertEquals("done", result.get(10, TimeUnit.SECONDS));
+
+    CompletableFuture<String> failing = new CompletableFuture<String>();
+    CompletableFuture<String> failed = Client.later(failing).toCompletableFuture();
+    failing.completeExceptionally(new IllegalStateException());
+    thrown = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+    assertEquals(IllegalStateException.class, thrown.getCause().getClass());
+    client.pool.shutdown();
+  }
+
+  @Test
+  void otherAnnotationsApplyToTheBody() throws Exception {
+    Client client = new Client();
+    String name = Thread.currentThread().getName();
+    assertEquals("named-a", client.named("a").get(10, TimeUnit.SECONDS));
+    assertEquals(name, Thread.currentThread().getName());
+    client.pool.shutdown();
+  }
+}
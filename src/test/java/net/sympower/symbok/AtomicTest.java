@@ -0,0 +1,75 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtomicTest {
+
+  static class Stats {
+    @Atomic
+    private long count;
+
+    @Atomic
+    private int hits = 3;
+
+    @Atomic
+    private String name = "a";
+
+    @Atomic
+    private List<String> tags = Collections.emptyList();
+  }
+
+  @Test
+  void accessorsUpdateTheField() {
+    Stats stats = new Stats();
+    assertEquals(0, stats.getAndIncrementCount());
+    assertEquals(5, stats.updateAndGetHits(hits -> hits + 2));
+    stats.setCount(10);
+    assertEquals(10, stats.getCount());
+    assertTrue(stats.compareAndSetName("a", "b"));
+    assertFalse(stats.compareAndSetName("a", "c"));
+    assertEquals("b", stats.getName());
+    stats.updateAndGetTags(tags -> {
+      List<String> copy = new ArrayList<String>(tags);
+      copy.add("t");
+      return copy;
+    });
+    assertEquals(Arrays.asList("t"), stats.getTags());
+  }
+
+  @Test
+  void fieldsBecomeVolatile() throws NoSuchFieldException {
+    assertTrue(Modifier.isVolatile(Stats.class.getDeclaredField("count").getModifiers()));
+    assertTrue(Modifier.isVolatile(Stats.class.getDeclaredField("tags").getModifiers()));
+  }
+
+  @Test
+  void concurrentUpdatesAreAtomic() throws InterruptedException {
+    Stats stats = new Stats();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 50_000; i++) {
+          stats.getAndIncrementCount();
+          stats.updateAndGetHits(hits -> hits + 2);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    assertEquals(200_000, stats.getCount());
+    assertEquals(3 + 400_000, stats.getHits());
+  }
+}
@@ -0,0 +1,109 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchedTest {
+
+  static class Store {
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<String> logged = Collections.synchronizedList(new ArrayList<String>());
+
+    @Batched(maxSize = 8, linger = 5)
+    int save(String item) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    List<Integer> saveAll(List<String> items) throws IOException {
+      batchSizes.add(items.size());
+      List<Integer> results = new ArrayList<Integer>();
+      for (String item : items) {
+        if (item.equals("fail")) {
+          throw new IOException(item);
+        }
+        results.add(item.length());
+      }
+      return results;
+    }
+
+    @Batched(value = "logLines", linger = 0)
+    void log(String line) {
+    }
+
+    void logLines(List<String> lines) {
+      logged.addAll(lines);
+    }
+
+    @Batched(linger = 0)
+    int count(String item) {
+      throw new UnsupportedOperationException();
+    }
+
+    List<Integer> countAll(List<String> items) {
+      return Arrays.asList((Integer) null);
+    }
+  }
+
+  @Test
+  void concurrentCallsAreCoalescedIntoBatches() throws InterruptedException {
+    Store store = new Store();
+    AtomicInteger wrong = new AtomicInteger();
+    Thread[] threads = new Thread[32];
+    for (int t = 0; t < threads.length; t++) {
+      String item = "item" + t;
+      threads[t] = new Thread(() -> {
+        try {
+          if (store.save(item) != item.length()) {
+            wrong.incrementAndGet();
+          }
+        }
+        catch (IOException ex) {
+          wrong.incrementAndGet();
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    assertEquals(0, wrong.get());
+    int items = 0;
+    for (int size : store.batchSizes) {
+      assertTrue(size <= 8);
+      items += size;
+    }
+    assertEquals(32, items);
+  }
+
+  @Test
+  void batchMethodExceptionsAreThrown() {
+    Store store = new Store();
+    assertThrows(IOException.class, () -> store.save("fail"));
+  }
+
+  @Test
+  void voidMethodsIgnoreResults() {
+    Store store = new Store();
+    store.log("a");
+    store.log("b");
+    assertEquals(Arrays.asList("a", "b"), store.logged);
+  }
+
+  @Test
+  void nullResultOfPrimitiveMethodFails() {
+    Store store = new Store();
+    assertThrows(IllegalStateException.class, () -> store.count("a"));
+  }
+}
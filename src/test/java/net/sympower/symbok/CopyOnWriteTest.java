@@ -0,0 +1,107 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CopyOnWriteTest {
+
+  @CopyOnWrite
+  static class Pair {
+    private int a;
+    private int b;
+
+    @ReadLock
+    public int sum() {
+      return a + b;
+    }
+
+    @WriteLock
+    public void setB(int b) {
+      this.b = b;
+    }
+
+    @WriteLock
+    public void setBoth(int value) {
+      a = value;
+      setB(value);
+    }
+
+    @WriteLock
+    public int setAThenSum(int value) {
+      a = value;
+      return sum();
+    }
+
+    @WriteLock
+    public void failAfter(int value) {
+      a = value;
+      setB(value);
+      throw new IllegalStateException();
+    }
+
+    @WriteLock
+    public void increment() {
+      a++;
+      setB(b + 1);
+    }
+
+    @ReadLock
+    public Runnable sumLater(int[] result) {
+      return () -> result[0] = a + b;
+    }
+  }
+
+  @Test
+  void nestedWriteIsPublishedWithTheOuterWrite() {
+    Pair pair = new Pair();
+    pair.setBoth(5);
+    assertEquals(10, pair.sum());
+  }
+
+  @Test
+  void nestedReadSeesTheCopy() {
+    Pair pair = new Pair();
+    pair.setB(5);
+    assertEquals(15, pair.setAThenSum(10));
+    assertEquals(15, pair.sum());
+  }
+
+  @Test
+  void failedWriteIsNotPublished() {
+    Pair pair = new Pair();
+    pair.setBoth(1);
+    assertThrows(IllegalStateException.class, () -> pair.failAfter(5));
+    assertEquals(2, pair.sum());
+  }
+
+  @Test
+  void readKeepsItsSnapshot() {
+    Pair pair = new Pair();
+    pair.setBoth(1);
+    int[] result = new int[1];
+    Runnable sum = pair.sumLater(result);
+    pair.setBoth(5);
+    sum.run();
+    assertEquals(2, result[0]);
+  }
+
+  @Test
+  void concurrentWritesAreNotLost() throws InterruptedException {
+    Pair pair = new Pair();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          pair.increment();
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(2 * threads.length * 10_000, pair.sum());
+  }
+}
@@ -0,0 +1,56 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CounterTest {
+
+  static class Requests {
+    @Counter
+    private long served;
+
+    @Counter(stripes = 2, lazy = true)
+    private long failed;
+
+    @Counter
+    private static long total;
+  }
+
+  @Test
+  void accessorsUpdateAndSumTheCounter() {
+    Requests requests = new Requests();
+    requests.incrementServed();
+    requests.addServed(4);
+    requests.addFailed(2);
+    assertEquals(5, requests.sumServed());
+    assertEquals(2, requests.sumFailed());
+    assertEquals(5, requests.sumThenResetServed());
+    assertEquals(0, requests.sumServed());
+  }
+
+  @Test
+  void concurrentUpdatesAreCounted() throws InterruptedException {
+    Requests requests = new Requests();
+    long totalBefore = Requests.sumTotal();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 50_000; i++) {
+          requests.incrementServed();
+          requests.incrementFailed();
+          Requests.incrementTotal();
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    assertEquals(200_000, requests.sumServed());
+    assertEquals(200_000, requests.sumFailed());
+    assertEquals(200_000, Requests.sumTotal() - totalBefore);
+  }
+}
@@ -0,0 +1,118 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class Getter2Test {
+
+  static class Lazy {
+    final AtomicInteger computed = new AtomicInteger();
+
+    @Getter2(lazy = true)
+    private final double value = compute();
+
+    @Getter2(lazy = true)
+    private final String missing = computeNull();
+
+    private double compute() {
+      computed.incrementAndGet();
+      return Math.PI;
+    }
+
+    private String computeNull() {
+      computed.incrementAndGet();
+      return null;
+    }
+  }
+
+  static class Guarded {
+    @Getter2(lock = "lock")
+    private long a;
+
+    @Getter2(lock = "lock")
+    private long b;
+
+    @Getter2(lock = "readWriteLock")
+    private String name = "initial";
+
+    @WriteLock(value = "lock", implementation = "stamped")
+    void set(long value) {
+      a = value;
+      b = value;
+    }
+
+    @WriteLock("readWriteLock")
+    void rename(String name) {
+      this.name = name;
+    }
+  }
+
+  @Test
+  void lazyValuesAreComputedOnceOnFirstAccess() {
+    Lazy lazy = new Lazy();
+    assertEquals(0, lazy.computed.get());
+    assertEquals(Math.PI, lazy.getValue());
+    assertEquals(Math.PI, lazy.getValue());
+    assertNull(lazy.getMissing());
+    assertNull(lazy.getMissing());
+    assertEquals(2, lazy.computed.get());
+  }
+
+  @Test
+  void lazyValuesAreComputedOnceUnderContention() throws Exception {
+    Lazy lazy = new Lazy();
+    CyclicBarrier start = new CyclicBarrier(8);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        }
+        catch (Exception ex) {
+          throw new IllegalStateException(ex);
+        }
+        lazy.getValue();
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    assertEquals(1, lazy.computed.get());
+  }
+
+  @Test
+  void guardedGettersReadUnderTheLock() {
+    Guarded guarded = new Guarded();
+    guarded.set(5);
+    guarded.rename("renamed");
+    assertEquals(5, guarded.getA());
+    assertEquals(5, guarded.getB());
+    assertEquals("renamed", guarded.getName());
+  }
+
+  @Test
+  void guardedGettersSeeConsistentWrites() throws InterruptedException {
+    Guarded guarded = new Guarded();
+    Thread writer = new Thread(() -> {
+      for (long i = 0; i < 200_000; i++) {
+        guarded.set(i);
+      }
+    });
+    writer.start();
+    long last = 0;
+    while (writer.isAlive()) {
+      long a = guarded.getA();
+      assertEquals(true, a >= last, "writes are seen in order");
+      last = a;
+    }
+    writer.join();
+    assertEquals(199_999, guarded.getA());
+  }
+}
@@ -0,0 +1,95 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoizeTest {
+
+  static class Calculator {
+    int calls;
+
+    @Memoize
+    long square(int value) {
+      calls++;
+      return (long) value * value;
+    }
+
+    @Memoize(maxSize = 4)
+    String join(String a, long b) {
+      calls++;
+      return a == null ? null : a + b;
+    }
+
+    @Memoize(ttl = 50, unit = TimeUnit.MILLISECONDS)
+    long now(String key) {
+      calls++;
+      return System.nanoTime();
+    }
+
+    @Memoize
+    int parse(String text) {
+      calls++;
+      return Integer.parseInt(text);
+    }
+  }
+
+  @Test
+  void resultsAreComputedOncePerArguments() {
+    Calculator calculator = new Calculator();
+    assertEquals(9, calculator.square(3));
+    assertEquals(9, calculator.square(3));
+    assertEquals(16, calculator.square(4));
+    assertEquals("a1", calculator.join("a", 1));
+    assertEquals("a1", calculator.join("a", 1));
+    assertNull(calculator.join(null, 1));
+    assertNull(calculator.join(null, 1));
+    assertEquals(4, calculator.calls);
+  }
+
+  @Test
+  void cachesArePerInstance() {
+    Calculator first = new Calculator();
+    Calculator second = new Calculator();
+    first.square(3);
+    second.square(3);
+    assertEquals(1, first.calls);
+    assertEquals(1, second.calls);
+  }
+
+  @Test
+  void evictedResultsAreComputedAgain() {
+    Calculator calculator = new Calculator();
+    for (int i = 0; i < 10; i++) {
+      calculator.join("a", i);
+    }
+    calculator.calls = 0;
+    for (int i = 0; i < 10; i++) {
+      calculator.join("a", i);
+    }
+    assertTrue(calculator.calls >= 6, "at most 4 of 10 results are cached");
+  }
+
+  @Test
+  void expiredResultsAreComputedAgain() throws InterruptedException {
+    Calculator calculator = new Calculator();
+    long first = calculator.now("a");
+    assertEquals(first, calculator.now("a"));
+    Thread.sleep(80);
+    assertTrue(calculator.now("a") != first);
+    assertEquals(2, calculator.calls);
+  }
+
+  @Test
+  void exceptionsAreNotCached() {
+    Calculator calculator = new Calculator();
+    assertThrows(NumberFormatException.class, () -> calculator.parse("x"));
+    assertThrows(NumberFormatException.class, () -> calculator.parse("x"));
+    assertEquals(2, calculator.calls);
+  }
+}
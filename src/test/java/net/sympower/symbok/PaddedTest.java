@@ -0,0 +1,61 @@
+package net.sympower.symbok;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaddedTest {
+
+  static class Hot {
+    private long cold;
+
+    @Padded
+    private volatile long hits;
+
+    @Padded
+    private int count;
+
+    @Padded
+    private Object last;
+
+    void hit(Object value) {
+      hits++;
+      count++;
+      last = value;
+    }
+  }
+
+  /**
+   * Counts the padding fields of {@code fieldName}, and checks they have the {@code type} of a field of its size.
+   */
+  private static int paddingOf(String fieldName, Class<?> type) {
+    int padding = 0;
+    for (Field field : Hot.class.getDeclaredFields()) {
+      if (field.getName().startsWith("$pad$" + fieldName + "$")) {
+        assertEquals(type, field.getType(), field.getName());
+        padding++;
+      }
+    }
+    return padding;
+  }
+
+  @Test
+  void fieldsArePaddedToACacheLineOnEitherSide() {
+    assertEquals(2 * 7, paddingOf("hits", long.class));
+    assertEquals(2 * 15, paddingOf("count", int.class));
+    assertEquals(2 * 15, paddingOf("last", Object.class));
+    assertEquals(0, paddingOf("cold", long.class));
+  }
+
+  @Test
+  void paddedFieldsKeepWorking() {
+    Hot hot = new Hot();
+    hot.hit("a");
+    hot.hit("b");
+    assertEquals(2, hot.hits);
+    assertEquals(2, hot.count);
+    assertEquals("b", hot.last);
+  }
+}
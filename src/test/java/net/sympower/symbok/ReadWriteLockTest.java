@@ -0,0 +1,192 @@
+package net.sympower.symbok;
+
+import net.sympower.symbok.runtime.LockTimeoutException;
+import net.sympower.symbok.runtime.LockUpgrade;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadWriteLockTest {
+
+  static final class Account {
+    private long balance;
+    private long mirror;
+    private final Map<String, Long> byKey = new HashMap<String, Long>();
+    private final Map<String, Integer> lengths = new HashMap<String, Integer>();
+    int computed;
+
+    @WriteLock(value = "stamped", implementation = "stamped")
+    void deposit(long amount) {
+      balance += amount;
+      mirror -= amount;
+    }
+
+    @WriteLock(value = "stamped", implementation = "stamped")
+    void depositTwice(long amount) {
+      deposit(amount);
+      deposit(amount);
+    }
+
+    @ReadLock(value = "stamped", implementation = "stamped")
+    long balance() {
+      return balance;
+    }
+
+    @ReadLock(value = "stamped", implementation = "stamped", mode = LockMode.OPTIMISTIC)
+    long optimisticSum() {
+      return balance + mirror;
+    }
+
+    @ReadLock(value = "stamped", implementation = "stamped", mode = LockMode.SEQUENCE)
+    long sequenceSum() {
+      return balance + mirror;
+    }
+
+    @WriteLock(value = "striped", stripeBy = "key", stripes = 4)
+    void add(String key, long amount) {
+      Long current = byKey.get(key);
+      byKey.put(key, current == null ? amount : current + amount);
+    }
+
+    @ReadLock(value = "striped", stripeBy = "key", stripes = 4)
+    long get(String key) {
+      Long current = byKey.get(key);
+      return current == null ? 0 : current;
+    }
+
+    @ReadLock(mode = LockMode.UPGRADABLE)
+    int length(String key) {
+      Integer length = lengths.get(key);
+      if (length != null) {
+        return length;
+      }
+      LockUpgrade.toWriteLock();
+      computed++;
+      lengths.put(key, key.length());
+      return key.length();
+    }
+
+    @WriteLock
+    void hold(CountDownLatch held, CountDownLatch release) throws InterruptedException {
+      held.countDown();
+      release.await();
+    }
+
+    @ReadLock(timeout = 20)
+    int throwing() {
+      return 1;
+    }
+
+    @ReadLock(timeout = 20, onTimeout = LockTimeoutPolicy.RETURN_DEFAULT)
+    int returningDefault() {
+      return 1;
+    }
+
+    @ReadLock(timeout = 20, onTimeout = LockTimeoutPolicy.FALLBACK, fallback = "fallback")
+    int fallingBack(int value) {
+      return value;
+    }
+
+    int fallback(int value) {
+      return -value;
+    }
+  }
+
+  private static void runConcurrently(int threadCount, Runnable task) throws InterruptedException {
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(task);
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+  }
+
+  @Test
+  void nestedCallsOnANonReentrantLockDoNotDeadlock() throws InterruptedException {
+    Account account = new Account();
+    runConcurrently(4, () -> {
+      for (int i = 0; i < 10_000; i++) {
+        account.depositTwice(1);
+      }
+    });
+    assertEquals(80_000, account.balance());
+  }
+
+  @Test
+  void optimisticAndSequenceReadsSeeConsistentState() throws InterruptedException {
+    Account account = new Account();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 200_000; i++) {
+        account.deposit(1);
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      assertEquals(0, account.optimisticSum());
+      assertEquals(0, account.sequenceSum());
+    }
+    writer.join();
+    assertEquals(200_000, account.balance());
+  }
+
+  @Test
+  void stripedLocksExcludeCallsForTheSameKey() throws InterruptedException {
+    Account account = new Account();
+    runConcurrently(4, () -> {
+      for (int i = 0; i < 10_000; i++) {
+        account.add("key-" + i % 8, 1);
+      }
+    });
+    long total = 0;
+    for (int k = 0; k < 8; k++) {
+      total += account.get("key-" + k);
+    }
+    assertEquals(40_000, total);
+  }
+
+  @Test
+  void upgradableReadsComputeOnce() throws InterruptedException {
+    Account account = new Account();
+    runConcurrently(4, () -> {
+      for (int i = 0; i < 1_000; i++) {
+        assertEquals(5, account.length("key-" + i % 10));
+      }
+    });
+    assertEquals(10, account.computed);
+  }
+
+  @Test
+  void timedOutCallsFollowTheirPolicy() throws InterruptedException {
+    Account account = new Account();
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      try {
+        account.hold(held, release);
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    holder.start();
+    held.await();
+
+    assertThrows(LockTimeoutException.class, account::throwing);
+    assertEquals(0, account.returningDefault());
+    assertEquals(-3, account.fallingBack(3));
+
+    release.countDown();
+    holder.join();
+    assertEquals(1, account.throwing());
+    assertEquals(1, account.returningDefault());
+    assertEquals(3, account.fallingBack(3));
+  }
+}
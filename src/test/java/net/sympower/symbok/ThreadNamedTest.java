@@ -0,0 +1,83 @@
+package net.sympower.symbok;
+
+import net.sympower.symbok.runtime.ThreadNames;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ThreadNamedTest {
+
+  static class Jobs {
+    String seen;
+
+    @ThreadNamed("job-%s-%d")
+    String rename(String name, int slot) {
+      return Thread.currentThread().getName();
+    }
+
+    @ThreadNamed("slot %2$s of %1$s, 100%%")
+    String positional(String name, int slot) {
+      return Thread.currentThread().getName();
+    }
+
+    @ThreadNamed("failing-%s")
+    void fail(String name) {
+      seen = Thread.currentThread().getName();
+      throw new IllegalStateException();
+    }
+
+    @ThreadNamed(value = "logical-%s", mode = ThreadNameMode.LOGICAL)
+    String logical(String name) {
+      return ThreadNames.current() + " in " + Thread.currentThread().getName() + ", then " + inner();
+    }
+
+    @ThreadNamed(value = "inner", mode = ThreadNameMode.LOGICAL)
+    String inner() {
+      return ThreadNames.current();
+    }
+
+    @ThreadNamed(value = "logical-failing", mode = ThreadNameMode.LOGICAL)
+    void failLogical() {
+      seen = ThreadNames.current();
+      throw new IllegalStateException();
+    }
+
+    @ThreadNamed("static-%s")
+    static String renameStatic(long id) {
+      return Thread.currentThread().getName();
+    }
+  }
+
+  @Test
+  void renamesTheThreadWhileTheMethodRuns() {
+    String name = Thread.currentThread().getName();
+    Jobs jobs = new Jobs();
+    assertEquals("job-a-3", jobs.rename("a", 3));
+    assertEquals("slot 3 of a, 100%", jobs.positional("a", 3));
+    assertEquals("static-7", Jobs.renameStatic(7));
+    assertEquals(name, Thread.currentThread().getName());
+  }
+
+  @Test
+  void restoresTheNameWhenTheMethodThrows() {
+    String name = Thread.currentThread().getName();
+    Jobs jobs = new Jobs();
+    assertThrows(IllegalStateException.class, () -> jobs.fail("x"));
+    assertEquals("failing-x", jobs.seen);
+    assertEquals(name, Thread.currentThread().getName());
+  }
+
+  @Test
+  void logicalNamesLeaveTheThreadName() {
+    String name = Thread.currentThread().getName();
+    Jobs jobs = new Jobs();
+    assertEquals("logical-a in " + name + ", then inner", jobs.logical("a"));
+    assertNull(ThreadNames.logical());
+
+    assertThrows(IllegalStateException.class, jobs::failLogical);
+    assertEquals("logical-failing", jobs.seen);
+    assertNull(ThreadNames.logical());
+  }
+}
@@ -0,0 +1,51 @@
+package net.sympower.symbok;
+
+import net.sympower.symbok.runtime.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimedTest {
+
+  static class Worker {
+    @Timed
+    Worker() {
+    }
+
+    @Timed
+    void sleep(long millis) throws InterruptedException {
+      Thread.sleep(millis);
+    }
+
+    @Timed("TimedTest.fail")
+    int fail() {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Test
+  void callsAreRecordedInTheHistogramOfTheMethod() throws InterruptedException {
+    Worker worker = new Worker();
+    LatencyHistogram sleep = LatencyHistogram.get(Worker.class.getName().replace('$', '.') + ".sleep");
+    long before = sleep.getCount();
+    worker.sleep(20);
+    worker.sleep(0);
+
+    assertEquals(before + 2, sleep.getCount());
+    assertTrue(sleep.getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(LatencyHistogram.get(Worker.class.getName().replace('$', '.') + ".<init>").getCount() >= 1);
+  }
+
+  @Test
+  void callsThatThrowAreRecorded() {
+    Worker worker = new Worker();
+    LatencyHistogram fail = LatencyHistogram.get("TimedTest.fail");
+    long before = fail.getCount();
+    assertThrows(IllegalStateException.class, worker::fail);
+    assertEquals(before + 1, fail.getCount());
+  }
+}
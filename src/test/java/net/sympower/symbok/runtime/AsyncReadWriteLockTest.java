@@ -0,0 +1,170 @@
+package net.sympower.symbok.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncReadWriteLockTest {
+
+  private final AsyncReadWriteLock lock = new AsyncReadWriteLock();
+  private final List<String> started = new ArrayList<String>();
+
+  /**
+   * Takes the lock with an action that records its start and holds the lock until the returned stage is completed.
+   */
+  private CompletableFuture<String> hold(boolean write, String name, CompletableFuture<String> stage) {
+    return write
+        ? this.lock.write(() -> {
+          this.started.add(name);
+          return stage;
+        })
+        : this.lock.read(() -> {
+          this.started.add(name);
+          return stage;
+        });
+  }
+
+  @Test
+  void writeIsHeldUntilTheStageCompletes() {
+    CompletableFuture<String> write = new CompletableFuture<String>();
+    CompletableFuture<String> result = hold(true, "w", write);
+    hold(false, "r", CompletableFuture.completedFuture("r"));
+
+    assertTrue(this.lock.isLocked());
+    assertEquals(1, this.lock.getQueueLength());
+    assertEquals(Arrays.asList("w"), this.started);
+
+    write.complete("done");
+    assertEquals("done", result.join());
+    assertEquals(Arrays.asList("w", "r"), this.started);
+    assertFalse(this.lock.isLocked());
+    assertEquals(0, this.lock.getQueueLength());
+  }
+
+  @Test
+  void waitersAreGrantedInOrderWithConsecutiveReadersTogether() {
+    CompletableFuture<String> w1 = new CompletableFuture<String>();
+    CompletableFuture<String> r1 = new CompletableFuture<String>();
+    CompletableFuture<String> r2 = new CompletableFuture<String>();
+    CompletableFuture<String> w2 = new CompletableFuture<String>();
+    hold(true, "w1", w1);
+    hold(false, "r1", r1);
+    hold(false, "r2", r2);
+    hold(true, "w2", w2);
+    hold(false, "r3", CompletableFuture.completedFuture("r3"));
+
+    w1.complete("w1");
+    assertEquals(Arrays.asList("w1", "r1", "r2"), this.started);
+    r1.complete("r1");
+    assertEquals(Arrays.asList("w1", "r1", "r2"), this.started);
+    r2.complete("r2");
+    assertEquals(Arrays.asList("w1", "r1", "r2", "w2"), this.started);
+    w2.complete("w2");
+    assertEquals(Arrays.asList("w1", "r1", "r2", "w2", "r3"), this.started);
+    assertFalse(this.lock.isLocked());
+  }
+
+  @Test
+  void newReaderDoesNotOvertakeWaitingWriter() {
+    CompletableFuture<String> r1 = new CompletableFuture<String>();
+    hold(false, "r1", r1);
+    hold(true, "w", CompletableFuture.completedFuture("w"));
+    hold(false, "r2", CompletableFuture.completedFuture("r2"));
+    assertEquals(Arrays.asList("r1"), this.started);
+
+    r1.complete("r1");
+    assertEquals(Arrays.asList("r1", "w", "r2"), this.started);
+  }
+
+  @Test
+  void failuresReleaseTheLock() {
+    CompletableFuture<String> thrown = this.lock.write(() -> {
+      throw new IllegalStateException();
+    });
+    CompletableFuture<String> nullStage = this.lock.write(() -> null);
+    CompletableFuture<String> failedStage = new CompletableFuture<String>();
+    failedStage.completeExceptionally(new IllegalArgumentException());
+    CompletableFuture<String> failed = this.lock.read(() -> failedStage);
+
+    assertEquals(IllegalStateException.class, failureOf(thrown));
+    assertEquals(NullPointerException.class, failureOf(nullStage));
+    assertEquals(IllegalArgumentException.class, failureOf(failed));
+    assertFalse(this.lock.isLocked());
+  }
+
+  private static Class<?> failureOf(CompletableFuture<?> future) {
+    return assertThrows(ExecutionException.class, future::get).getCause().getClass();
+  }
+
+  @Test
+  void resultCompletesAfterTheLockIsReleased() {
+    CompletableFuture<String> write = new CompletableFuture<String>();
+    boolean[] lockedWhenCompleted = {true};
+    hold(true, "w", write).thenRun(() -> lockedWhenCompleted[0] = this.lock.isLocked());
+    write.complete("w");
+    assertFalse(lockedWhenCompleted[0]);
+  }
+
+  @Test
+  void longQueueOfCompletedStagesDoesNotGrowTheStack() {
+    CompletableFuture<String> first = new CompletableFuture<String>();
+    hold(true, "first", first);
+    AtomicInteger runs = new AtomicInteger();
+    List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 100_000; i++) {
+      results.add(this.lock.write(() -> CompletableFuture.completedFuture(runs.incrementAndGet())));
+    }
+
+    first.complete("first");
+    assertEquals(100_000, runs.get());
+    assertEquals(100_000, (int) results.get(results.size() - 1).join());
+    assertFalse(this.lock.isLocked());
+  }
+
+  @Test
+  void writersExcludeReadersAndEachOther() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    AtomicInteger readers = new AtomicInteger();
+    AtomicInteger writers = new AtomicInteger();
+    AtomicInteger violations = new AtomicInteger();
+    List<CompletableFuture<Void>> results = new ArrayList<CompletableFuture<Void>>();
+    try {
+      for (int i = 0; i < 2_000; i++) {
+        boolean write = i % 5 == 0;
+        results.add(write
+                        ? this.lock.write(() -> CompletableFuture.runAsync(() -> {
+                          if (writers.incrementAndGet() != 1 || readers.get() != 0) {
+                            violations.incrementAndGet();
+                          }
+                          writers.decrementAndGet();
+                        }, executor))
+                        : this.lock.read(() -> CompletableFuture.runAsync(() -> {
+                          readers.incrementAndGet();
+                          if (writers.get() != 0) {
+                            violations.incrementAndGet();
+                          }
+                          readers.decrementAndGet();
+                        }, executor)));
+      }
+      CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertEquals(0, violations.get());
+    assertFalse(this.lock.isLocked());
+  }
+}
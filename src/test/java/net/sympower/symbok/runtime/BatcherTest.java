@@ -0,0 +1,209 @@
+package net.sympower.symbok.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatcherTest {
+
+  private static final long LONG_LINGER = TimeUnit.SECONDS.toNanos(30);
+
+  private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+
+  private List<Integer> doubled(List<Integer> items) {
+    this.batches.add(new ArrayList<Integer>(items));
+    List<Integer> results = new ArrayList<Integer>();
+    for (Integer item : items) {
+      results.add(item * 2);
+    }
+    return results;
+  }
+
+  /**
+   * Calls {@code batcher} with the items, each from its own thread started at once, and returns the results.
+   */
+  private static List<Integer> callConcurrently(Batcher<Integer, Integer> batcher, Integer... items)
+      throws InterruptedException {
+    Integer[] results = new Integer[items.length];
+    Thread[] threads = new Thread[items.length];
+    for (int i = 0; i < items.length; i++) {
+      int index = i;
+      threads[i] = new Thread(() -> results[index] = batcher.call(items[index]));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    return Arrays.asList(results);
+  }
+
+  @Test
+  void singleCallWithoutLingerRunsAlone() {
+    Batcher<Integer, Integer> batcher = new Batcher<Integer, Integer>(10, 0L, this::doubled);
+    assertEquals(6, (int) batcher.call(3));
+    assertEquals(Collections.singletonList(Collections.singletonList(3)), this.batches);
+  }
+
+  @Test
+  void fullBatchRunsWithoutWaitingForTheLinger() throws InterruptedException {
+    Batcher<Integer, Integer> batcher = new Batcher<Integer, Integer>(4, LONG_LINGER, this::doubled);
+    long start = System.nanoTime();
+    assertEquals(Arrays.asList(2, 4, 6, 8), callConcurrently(batcher, 1, 2, 3, 4));
+    assertTrue(System.nanoTime() - start < LONG_LINGER / 2);
+    assertEquals(1, this.batches.size());
+    assertEquals(4, this.batches.get(0).size());
+  }
+
+  @Test
+  void lingerClosesAPartialBatch() {
+    long linger = TimeUnit.MILLISECONDS.toNanos(20);
+    Batcher<Integer, Integer> batcher = new Batcher<Integer, Integer>(100, linger, this::doubled);
+    long start = System.nanoTime();
+    assertEquals(10, (int) batcher.call(5));
+    assertTrue(System.nanoTime() - start >= linger);
+  }
+
+  @Test
+  void failureIsThrownToEveryCallerOfTheBatch() throws InterruptedException {
+    Batcher<Integer, Integer> batcher = new Batcher<Integer, Integer>(3, LONG_LINGER, items -> {
+      throw new IOException("batch failed");
+    });
+    AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[3];
+    for (int i = 0; i < threads.length; i++) {
+      int item = i;
+      threads[i] = new Thread(() -> {
+        try {
+          batcher.call(item);
+        }
+        catch (Exception ex) {
+          if (ex instanceof IOException) {
+            failures.incrementAndGet();
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    assertEquals(3, failures.get());
+  }
+
+  @Test
+  void missingResultsFailTheBatchUnlessOptional() {
+    Batcher<Integer, Integer> optional = new Batcher<Integer, Integer>(1, 0L, items -> null);
+    assertNull(optional.call(1));
+
+    Batcher<Integer, Integer> required =
+        new Batcher<Integer, Integer>(1, 0L, Batcher.Results.REQUIRED, items -> null);
+    assertThrows(IllegalStateException.class, () -> required.call(1));
+
+    Batcher<Integer, Integer> tooFew =
+        new Batcher<Integer, Integer>(1, 0L, Batcher.Results.REQUIRED, items -> Collections.<Integer>emptyList());
+    assertThrows(IllegalStateException.class, () -> tooFew.call(1));
+
+    Batcher<Integer, Integer> nullable = new Batcher<Integer, Integer>(
+        1, 0L, Batcher.Results.REQUIRED, items -> Collections.<Integer>singletonList(null));
+    assertNull(nullable.call(1));
+
+    Batcher<Integer, Integer> nonNull = new Batcher<Integer, Integer>(
+        1, 0L, Batcher.Results.NON_NULL, items -> Collections.<Integer>singletonList(null));
+    assertThrows(IllegalStateException.class, () -> nonNull.call(1));
+  }
+
+  @Test
+  void followerKeepsWaitingWhenInterrupted() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicReference<Thread> leader = new AtomicReference<Thread>();
+    Batcher<Integer, Integer> batcher = new Batcher<Integer, Integer>(2, LONG_LINGER, items -> {
+      leader.set(Thread.currentThread());
+      running.countDown();
+      release.await();
+      return doubled(items);
+    });
+    Integer[] results = new Integer[2];
+    boolean[] interrupted = new boolean[2];
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      int index = i;
+      threads[i] = new Thread(() -> {
+        results[index] = batcher.call(index + 1);
+        interrupted[index] = Thread.currentThread().isInterrupted();
+      });
+      threads[i].start();
+    }
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+    int follower = threads[0] == leader.get() ? 1 : 0;
+    threads[follower].interrupt();
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    assertEquals(Arrays.asList(2, 4), Arrays.asList(results));
+    assertTrue(interrupted[follower]);
+    assertFalse(interrupted[1 - follower]);
+  }
+
+  @Test
+  void rejectsNonPositiveSize() {
+    assertThrows(IllegalArgumentException.class, () -> new Batcher<Integer, Integer>(0, 0L, this::doubled));
+  }
+
+  @Test
+  void concurrentCallersGetTheirOwnResults() throws Exception {
+    Batcher<Integer, Integer> batcher =
+        new Batcher<Integer, Integer>(16, TimeUnit.MICROSECONDS.toNanos(100), this::doubled);
+    int threadCount = 8;
+    int callsPerThread = 2_000;
+    CyclicBarrier start = new CyclicBarrier(threadCount);
+    AtomicInteger wrong = new AtomicInteger();
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      int offset = t * callsPerThread;
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        }
+        catch (Exception ex) {
+          throw new IllegalStateException(ex);
+        }
+        for (int i = offset; i < offset + callsPerThread; i++) {
+          if (batcher.call(i) != i * 2) {
+            wrong.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    assertEquals(0, wrong.get());
+    int items = 0;
+    for (List<Integer> batch : this.batches) {
+      assertTrue(batch.size() <= 16);
+      items += batch.size();
+    }
+    assertEquals(threadCount * callsPerThread, items);
+    assertTrue(this.batches.size() < items, "some calls were coalesced");
+  }
+}
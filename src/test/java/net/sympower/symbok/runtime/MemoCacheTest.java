@@ -0,0 +1,188 @@
+package net.sympower.symbok.runtime;
+
+import net.sympower.symbok.EvictionPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoCacheTest {
+
+  @Test
+  void cachesResultsByKey() {
+    MemoCache<String> cache = new MemoCache<String>(16, EvictionPolicy.LRU, 0L);
+    assertNull(cache.get("a"));
+    cache.put("a", "A");
+    cache.put(null, null);
+    cache.putLong(7L, "seven");
+
+    assertEquals("A", cache.get("a").getValue());
+    assertNull(cache.get(null).getValue());
+    assertEquals("seven", cache.getLong(7L).getValue());
+    assertNull(cache.get(7L), "a boxed key is not the primitive key");
+    assertEquals(3, cache.size());
+    assertEquals(3, cache.hits());
+    assertEquals(2, cache.misses());
+  }
+
+  @Test
+  void keysOfSeveralArgumentsAreEqualForEqualArguments() {
+    MemoCache<String> cache = new MemoCache<String>(16, EvictionPolicy.LRU, 0L);
+    cache.put(MemoCache.key("a", 1), "a1");
+    assertEquals("a1", cache.get(MemoCache.key("a", 1)).getValue());
+    assertNull(cache.get(MemoCache.key("a", 2)));
+  }
+
+  @Test
+  void putKeepsTheResultOfAnEarlierPut() {
+    MemoCache<String> cache = new MemoCache<String>(16, EvictionPolicy.LRU, 0L);
+    cache.put("a", "first");
+    cache.put("a", "second");
+    assertEquals("first", cache.get("a").getValue());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void sizeStaysBounded() {
+    for (EvictionPolicy eviction : EvictionPolicy.values()) {
+      MemoCache<Integer> cache = new MemoCache<Integer>(16, eviction, 0L);
+      for (int i = 0; i < 1_000; i++) {
+        cache.putLong(i, i);
+        assertTrue(cache.size() <= 16);
+      }
+      assertEquals(16, cache.size());
+    }
+  }
+
+  @Test
+  void lruEvictsTheLeastRecentlyUsed() {
+    MemoCache<String> cache = new MemoCache<String>(4, EvictionPolicy.LRU, 0L);
+    cache.put("a", "a");
+    cache.put("b", "b");
+    cache.get("a");
+    cache.put("c", "c");
+    cache.get("a");
+    cache.put("d", "d");
+    cache.get("a");
+
+    cache.put("e", "e");
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("e"));
+  }
+
+  @Test
+  void lfuEvictsTheLeastFrequentlyUsed() {
+    MemoCache<String> cache = new MemoCache<String>(4, EvictionPolicy.LFU, 0L);
+    for (String key : new String[] {"a", "b", "c", "d"}) {
+      cache.put(key, key);
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.get("a");
+      cache.get("b");
+      cache.get("d");
+    }
+
+    cache.put("e", "e");
+    assertNull(cache.get("c"));
+    assertEquals(4, cache.size());
+  }
+
+  @Test
+  void expiredResultsAreMissedReplacedAndEvictedFirst() throws InterruptedException {
+    long ttl = TimeUnit.MILLISECONDS.toNanos(50);
+    MemoCache<String> cache = new MemoCache<String>(4, EvictionPolicy.LRU, ttl);
+    cache.put("a", "old");
+    cache.put("b", "b");
+    cache.put("c", "c");
+    Thread.sleep(80);
+    assertNull(cache.get("a"));
+
+    cache.put("a", "new");
+    assertEquals("new", cache.get("a").getValue());
+    assertEquals(3, cache.size());
+
+    cache.put("d", "d");
+    cache.put("e", "e");
+    cache.put("f", "f");
+    assertEquals(4, cache.size());
+    for (String fresh : new String[] {"a", "d", "e", "f"}) {
+      assertNotNull(cache.get(fresh), fresh);
+    }
+  }
+
+  @Test
+  void clearRemovesAllResults() {
+    MemoCache<String> cache = new MemoCache<String>(4, EvictionPolicy.LRU, 0L);
+    cache.put("a", "a");
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get("a"));
+    cache.put("a", "again");
+    assertEquals("again", cache.get("a").getValue());
+  }
+
+  @Test
+  void rejectsNonPositiveSize() {
+    assertThrows(IllegalArgumentException.class, () -> new MemoCache<String>(0, EvictionPolicy.LRU, 0L));
+  }
+
+  @Test
+  void lookupsFindTheirOwnResultsWhileEntriesAreEvicted() throws InterruptedException {
+    MemoCache<Long> cache = new MemoCache<Long>(64, EvictionPolicy.LFU, 0L);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicInteger wrong = new AtomicInteger();
+    AtomicInteger hits = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(6);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 6; t++) {
+      boolean writer = t < 2;
+      threads.add(new Thread(() -> {
+        try {
+          for (long i = 0; writer ? i < 200_000 : running.get(); i++) {
+            long key = i % 256;
+            if (writer) {
+              cache.putLong(key, key * 2);
+              cache.put(key, key * 3);
+            }
+            else {
+              MemoCache.Entry<Long> primitive = cache.getLong(key);
+              MemoCache.Entry<Long> boxed = cache.get(key);
+              if (primitive != null && primitive.getValue() != key * 2) {
+                wrong.incrementAndGet();
+              }
+              if (boxed != null && boxed.getValue() != key * 3) {
+                wrong.incrementAndGet();
+              }
+              if (primitive != null) {
+                hits.incrementAndGet();
+              }
+            }
+          }
+        }
+        finally {
+          done.countDown();
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    threads.get(0).join();
+    threads.get(1).join();
+    running.set(false);
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    assertEquals(0, wrong.get());
+    assertTrue(hits.get() > 0);
+    assertTrue(cache.size() <= 64);
+  }
+}
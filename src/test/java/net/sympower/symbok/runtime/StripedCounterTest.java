@@ -0,0 +1,110 @@
+package net.sympower.symbok.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StripedCounterTest {
+
+  private static final int THREADS = 8;
+  private static final int ADDS_PER_THREAD = 100_000;
+
+  /**
+   * Adds {@code delta} {@link #ADDS_PER_THREAD} times from each of {@link #THREADS} threads started together, while
+   * {@code during} runs in the calling thread until they are done.
+   */
+  private static void addConcurrently(StripedCounter counter, long delta, Runnable during) throws Exception {
+    CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+    AtomicInteger running = new AtomicInteger(THREADS);
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < ADDS_PER_THREAD; i++) {
+            counter.add(delta);
+          }
+        }
+        catch (Exception ex) {
+          throw new IllegalStateException(ex);
+        }
+        finally {
+          running.decrementAndGet();
+        }
+      });
+      threads[t].start();
+    }
+    start.await();
+    while (running.get() > 0) {
+      during.run();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+  }
+
+  private static Object cellsOf(StripedCounter counter) throws ReflectiveOperationException {
+    Field cells = StripedCounter.class.getDeclaredField("cells");
+    cells.setAccessible(true);
+    return cells.get(counter);
+  }
+
+  @Test
+  void countsInOneThread() {
+    StripedCounter counter = new StripedCounter(4, false);
+    counter.increment();
+    counter.add(10);
+    counter.add(-3);
+    assertEquals(8, counter.sum());
+    assertEquals("8", counter.toString());
+  }
+
+  @Test
+  void countsExactlyUnderContention() throws Exception {
+    for (int stripes : new int[] {0, 1, 4}) {
+      for (boolean lazy : new boolean[] {false, true}) {
+        StripedCounter counter = new StripedCounter(stripes, lazy);
+        addConcurrently(counter, 3, () -> {
+        });
+        assertEquals(3L * THREADS * ADDS_PER_THREAD, counter.sum(), stripes + " stripes, lazy " + lazy);
+      }
+    }
+  }
+
+  @Test
+  void lazyCounterDoesNotInflateWithoutContention() throws Exception {
+    StripedCounter counter = new StripedCounter(4, true);
+    for (int i = 0; i < 1_000; i++) {
+      counter.increment();
+    }
+    assertNull(cellsOf(counter));
+    assertEquals(1_000, counter.sumThenReset());
+    assertNull(cellsOf(counter));
+    assertNotNull(cellsOf(new StripedCounter(4, false)));
+  }
+
+  @Test
+  void sumThenResetLosesNoUpdates() throws Exception {
+    for (boolean lazy : new boolean[] {false, true}) {
+      StripedCounter counter = new StripedCounter(4, lazy);
+      long[] reset = {0};
+      addConcurrently(counter, 1, () -> reset[0] += counter.sumThenReset());
+      assertEquals((long) THREADS * ADDS_PER_THREAD, reset[0] + counter.sumThenReset(), "lazy " + lazy);
+      assertEquals(0, counter.sum());
+    }
+  }
+
+  @Test
+  void rejectsStripesThatAreNotAPowerOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> new StripedCounter(3, false));
+    assertThrows(IllegalArgumentException.class, () -> new StripedCounter(-4, false));
+  }
+}